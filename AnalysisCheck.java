@@ -0,0 +1,202 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+/**
+ * This class is part of the "World of Zuul" application.
+ * "World of Zuul" is a very simple, text based adventure game.
+ *
+ * AnalysisCheck makes a random world of one-way exits and then adds,
+ * changes and removes its exits one at a time. After every change it
+ * checks the world's GraphAnalysis, which is only brought up to date
+ * with each change, against a breadth-first search over the whole
+ * graph: which rooms can be reached from the start room, and which can
+ * get back to it. The world's TransportTable must offer exactly the
+ * rooms that can get back.
+ *
+ * Every so often it also makes a new analysis of the graph as it is and
+ * checks that the components and traps of the kept analysis are the
+ * same.
+ *
+ * Run the main method with an optional number of changes and seed, for
+ * example "java AnalysisCheck 3000 1".
+ *
+ * @author  Ryan Rutishauser
+ * @version 2026.10.18
+ */
+
+public class AnalysisCheck
+{
+    // Rooms in the world, the chance of a room having an exit in a
+    // direction, and the changes between checks of the components.
+    private static final int ROOMS = 3000;
+    private static final double EXIT_CHANCE = 0.25;
+    private static final int COMPONENTS_EVERY = 100;
+
+    /**
+     * Main method so that the check can be run outside of Bluej.
+     * @param args An optional number of changes, then an optional seed.
+     */
+    public static void main(String[] args)
+    {
+        int changes = args.length > 0 ? Integer.parseInt(args[0]) : 3000;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : 1;
+        SplittableRandom random = new SplittableRandom(seed);
+        List<Room> rooms = new ArrayList<>(ROOMS);
+        for(int i = 0; i < ROOMS; i++) {
+            rooms.add(new Room("in room " + i));
+        }
+        for(Room room : rooms) {
+            for(int d = 0; d < Direction.count(); d++) {
+                if(random.nextDouble() < EXIT_CHANCE) {
+                    room.setExit(Direction.fromOrdinal(d).toString(),
+                                 rooms.get(random.nextInt(ROOMS)));
+                }
+            }
+        }
+        World world = new World(rooms, rooms.get(0), null);
+        RoomGraph graph = world.getGraph();
+        GraphAnalysis analysis = world.getAnalysis();
+        TransportTable table = world.getTransportTable();
+        int start = world.getStartRoom().getId();
+
+        String problem = check(graph, start, analysis, table);
+        int componentChecks = 0;
+        for(int c = 1; c <= changes && problem == null; c++) {
+            graph.setExit(random.nextInt(ROOMS), Direction.fromOrdinal(random.nextInt(Direction.count())),
+                          random.nextInt(3) == 0 ? -1 : random.nextInt(ROOMS));
+            problem = check(graph, start, analysis, table);
+            if(problem == null && c % COMPONENTS_EVERY == 0) {
+                problem = checkComponents(analysis, GraphAnalysis.of(graph, start));
+                componentChecks++;
+            }
+            if(problem != null) {
+                problem = "after " + c + " changes, " + problem;
+            }
+        }
+
+        System.out.printf("%d rooms, %d changes: %d full passes, %d components and %d traps at the end%n",
+                          ROOMS, changes, analysis.getFullPassCount(),
+                          analysis.getComponentCount(), analysis.getTraps().size());
+        if(problem != null) {
+            System.out.println("FAILED: " + problem);
+        }
+        else {
+            System.out.println("OK: reachability matched after every change, and the components "
+                               + componentChecks + " times");
+        }
+        System.exit(problem == null ? 0 : 1);
+    }
+
+    /**
+     * Check which rooms the analysis says can be reached and can get
+     * back, and which the table offers.
+     * @return What was wrong, or null.
+     */
+    private static String check(RoomGraph graph, int start, GraphAnalysis analysis,
+                                TransportTable table)
+    {
+        int size = graph.size();
+        // The exits backwards: the rooms with an exit into "id" are
+        // source[first[id]] to source[first[id + 1] - 1].
+        int[] first = new int[size + 1];
+        for(int id = 0; id < size; id++) {
+            for(int n = 0; n < graph.exitCount(id); n++) {
+                first[graph.exitTarget(id, n) + 1]++;
+            }
+        }
+        for(int id = 0; id < size; id++) {
+            first[id + 1] += first[id];
+        }
+        int[] source = new int[first[size]];
+        int[] filled = Arrays.copyOf(first, size);
+        for(int id = 0; id < size; id++) {
+            for(int n = 0; n < graph.exitCount(id); n++) {
+                source[filled[graph.exitTarget(id, n)]++] = id;
+            }
+        }
+
+        BitSet reachable = new BitSet(size);
+        BitSet returning = new BitSet(size);
+        int[] queue = new int[size];
+        reachable.set(start);
+        queue[0] = start;
+        for(int head = 0, tail = 1; head < tail; head++) {
+            int id = queue[head];
+            for(int n = 0; n < graph.exitCount(id); n++) {
+                int next = graph.exitTarget(id, n);
+                if(!reachable.get(next)) {
+                    reachable.set(next);
+                    queue[tail++] = next;
+                }
+            }
+        }
+        returning.set(start);
+        queue[0] = start;
+        for(int head = 0, tail = 1; head < tail; head++) {
+            int id = queue[head];
+            for(int i = first[id]; i < first[id + 1]; i++) {
+                if(!returning.get(source[i])) {
+                    returning.set(source[i]);
+                    queue[tail++] = source[i];
+                }
+            }
+        }
+
+        for(int id = 0; id < size; id++) {
+            if(analysis.isReachable(id) != reachable.get(id)) {
+                return "room " + id + " is reachable: " + reachable.get(id)
+                    + ", but the analysis says " + analysis.isReachable(id);
+            }
+            if(analysis.canReturn(id) != returning.get(id)) {
+                return "room " + id + " can get back: " + returning.get(id)
+                    + ", but the analysis says " + analysis.canReturn(id);
+            }
+            if(table.isEligible(id) != returning.get(id)) {
+                return "room " + id + " can get back: " + returning.get(id)
+                    + ", but the transport table says " + table.isEligible(id);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Check that two analyses split the rooms into the same components
+     * and find the same traps.
+     * @return What was wrong, or null.
+     */
+    private static String checkComponents(GraphAnalysis kept, GraphAnalysis fresh)
+    {
+        if(kept.getComponentCount() != fresh.getComponentCount()) {
+            return kept.getComponentCount() + " components instead of " + fresh.getComponentCount();
+        }
+        // The components may be numbered differently, but must match one
+        // to one.
+        Map<Integer, Integer> same = new HashMap<>();
+        for(int id = 0; id < ROOMS; id++) {
+            Integer other = same.putIfAbsent(kept.getComponent(id), fresh.getComponent(id));
+            if(other != null && other != fresh.getComponent(id)) {
+                return "room " + id + " is in the wrong component";
+            }
+        }
+        Set<List<Integer>> traps = new HashSet<>();
+        for(int[] trap : fresh.getTraps()) {
+            traps.add(Arrays.stream(trap).boxed().toList());
+        }
+        for(int[] trap : kept.getTraps()) {
+            if(!traps.remove(Arrays.stream(trap).boxed().toList())) {
+                return "the trap " + Arrays.toString(trap) + " is not a trap";
+            }
+        }
+        if(!traps.isEmpty()) {
+            return "a trap was missed: " + traps.iterator().next();
+        }
+        return null;
+    }
+}
@@ -0,0 +1,314 @@
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+/**
+ * This class is part of the "World of Zuul" application.
+ * "World of Zuul" is a very simple, text based adventure game.
+ *
+ * A BatchRunner plays a game headless from a script of commands, one per
+ * line, as fast as it can. No prompts are printed. The script is read in
+ * large blocks and each line is handed to Parser.parseCommand in place,
+ * without being copied into a String first. Everything the game prints
+ * goes to an output sink: a buffered file, a buffer in memory, or
+ * nowhere. At the end the runner reports how many commands it ran and
+ * how many per second.
+ *
+ * Run its main method with these options, followed by the script file
+ * (or nothing to read the script from standard input):
+ *
+ *     -out &lt;file&gt;     write the game's output to a file
+ *     -buffer         collect the output in memory and report its size
+ *     -null           throw the output away (the default)
+ *     -world &lt;file&gt;   play a world file or .img image instead of the campus
+ *     -seed &lt;n&gt;       seed the game's random numbers
+ *     -journal &lt;file&gt; record the commands in a CommandJournal and print
+ *                     the state the game ends in
+ *
+ * @author  Ryan Rutishauser
+ * @version 2026.10.18
+ */
+
+public class BatchRunner
+{
+    private Game game;
+    private long commands;
+    private long time;
+
+    /**
+     * Main method so that scripts can be run outside of Bluej.
+     * @param args Options as described above, then an optional script file.
+     */
+    public static void main(String[] args) throws IOException
+    {
+        OutputStream sink = null;
+        ByteArrayOutputStream buffer = null;
+        World world = World.campus();
+        Long seed = null;
+        String script = null;
+        String journalFile = null;
+        for(int i = 0; i < args.length; i++) {
+            switch(args[i]) {
+                case "-out":
+                    sink = new BufferedOutputStream(new FileOutputStream(args[++i]), 256 * 1024);
+                    break;
+                case "-buffer":
+                    buffer = new ByteArrayOutputStream(1024 * 1024);
+                    sink = buffer;
+                    break;
+                case "-null":
+                    sink = null;
+                    break;
+                case "-world":
+                    world = openWorld(args[++i]);
+                    break;
+                case "-seed":
+                    seed = Long.parseLong(args[++i]);
+                    break;
+                case "-journal":
+                    journalFile = args[++i];
+                    break;
+                default:
+                    script = args[i];
+            }
+        }
+
+        PrintStream out;
+        if(sink == null) {
+            out = discardingOutput();
+        }
+        else {
+            out = new PrintStream(sink, false, StandardCharsets.UTF_8);
+        }
+        BatchRunner runner = new BatchRunner(world, out);
+        if(seed != null) {
+            runner.getGame().setRandomSeed(seed);
+        }
+        JournalWriter writer = null;
+        CommandJournal journal = null;
+        if(journalFile != null) {
+            writer = new JournalWriter(JournalWriter.DEFAULT_INTERVAL, false);
+            journal = writer.open(Paths.get(journalFile), world);
+            runner.getGame().setJournal(journal);
+        }
+        Reader in;
+        if(script == null) {
+            in = new InputStreamReader(System.in, StandardCharsets.UTF_8);
+        }
+        else {
+            in = Files.newBufferedReader(Paths.get(script), StandardCharsets.UTF_8);
+        }
+        try(in) {
+            runner.run(in);
+        }
+        out.flush();
+        out.close();
+        if(journal != null) {
+            journal.close();
+            writer.close();
+        }
+
+        System.err.println(runner.getReport());
+        if(journal != null) {
+            System.out.println(JournalReplay.describe(runner.getGame()));
+        }
+        if(buffer != null) {
+            System.err.println("Output: " + buffer.size() + " bytes");
+        }
+    }
+
+    /**
+     * Create a runner for a new game on the given world.
+     * @param world The world to play on.
+     * @param out The output sink the game writes to.
+     */
+    public BatchRunner(World world, PrintStream out)
+    {
+        game = new Game(world, InputStream.nullInputStream(), out);
+    }
+
+    /**
+     * @return The game this runner plays, for example to seed it.
+     */
+    public Game getGame()
+    {
+        return game;
+    }
+
+    /**
+     * @return An output sink that throws away everything written to it
+     * without encoding it first.
+     */
+    public static PrintStream discardingOutput()
+    {
+        return new DiscardingStream();
+    }
+
+    /**
+     * Run every command of a script until it ends or a command quits
+     * the game.
+     * @param script The commands, one per line.
+     */
+    public void run(Reader script) throws IOException
+    {
+        long start = System.nanoTime();
+        game.printWelcome();
+        char[] buffer = new char[64 * 1024];
+        Line line = new Line(buffer);
+        int length = 0;        // characters in the buffer
+        int lineStart = 0;     // start of the line being looked at
+        int scanned = 0;       // characters already searched for '\n'
+        boolean finished = false;
+        while(!finished) {
+            int read = script.read(buffer, length, buffer.length - length);
+            if(read < 0) {
+                if(lineStart < length) {
+                    line.set(lineStart, length);
+                    run(line);
+                }
+                break;
+            }
+            length += read;
+            for(int i = scanned; i < length && !finished; i++) {
+                if(buffer[i] == '\n') {
+                    int end = i > lineStart && buffer[i - 1] == '\r' ? i - 1 : i;
+                    line.set(lineStart, end);
+                    finished = run(line);
+                    lineStart = i + 1;
+                }
+            }
+            // Keep the unfinished line, moving it to the start of the buffer.
+            int rest = length - lineStart;
+            if(lineStart == 0 && rest == buffer.length) {
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                line = new Line(buffer);
+            }
+            else {
+                System.arraycopy(buffer, lineStart, buffer, 0, rest);
+            }
+            length = rest;
+            scanned = rest;
+            lineStart = 0;
+        }
+        time += System.nanoTime() - start;
+    }
+
+    /**
+     * @return The number of commands and commands per second so far.
+     */
+    public String getReport()
+    {
+        double seconds = time / 1e9;
+        return String.format("Ran %d commands in %.3f s (%.0f commands/s)",
+                             commands, seconds, commands / seconds);
+    }
+
+    /**
+     * @return The number of commands run so far.
+     */
+    public long getCommandCount()
+    {
+        return commands;
+    }
+
+    /**
+     * Run one line of the script.
+     * @return true if the command ended the game.
+     */
+    private boolean run(CharSequence line)
+    {
+        commands++;
+        return game.processCommand(game.getParser().parseCommand(line));
+    }
+
+    /**
+     * Open a world file, or a world image if the name ends in ".img".
+     */
+    static World openWorld(String name) throws IOException
+    {
+        if(name.endsWith(".img")) {
+            return WorldImage.openWorld(Paths.get(name));
+        }
+        return new WorldLoader().load(Paths.get(name));
+    }
+
+    /**
+     * One line of the script, read in place from the runner's buffer.
+     */
+    private static class Line implements CharSequence
+    {
+        private char[] buffer;
+        private int start;
+        private int end;
+
+        /**
+         * @param buffer The buffer the lines are read from.
+         */
+        Line(char[] buffer)
+        {
+            this.buffer = buffer;
+        }
+
+        /**
+         * Make this the line between two positions of the buffer.
+         */
+        void set(int start, int end)
+        {
+            this.start = start;
+            this.end = end;
+        }
+
+        public int length()
+        {
+            return end - start;
+        }
+
+        public char charAt(int index)
+        {
+            return buffer[start + index];
+        }
+
+        public CharSequence subSequence(int from, int to)
+        {
+            return new String(buffer, start + from, to - from);
+        }
+
+        public String toString()
+        {
+            return new String(buffer, start, end - start);
+        }
+    }
+
+    /**
+     * A PrintStream that throws everything away before it is encoded.
+     */
+    private static class DiscardingStream extends PrintStream
+    {
+        DiscardingStream()
+        {
+            super(OutputStream.nullOutputStream(), false, StandardCharsets.UTF_8);
+        }
+
+        public void write(int b) { }
+        public void write(byte[] bytes, int offset, int length) { }
+        public void print(String s) { }
+        public void print(char c) { }
+        public void print(int i) { }
+        public void print(Object o) { }
+        public void println() { }
+        public void println(String s) { }
+        public void println(int i) { }
+        public void println(Object o) { }
+        public void flush() { }
+    }
+}
@@ -0,0 +1,350 @@
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class is part of the "World of Zuul" application.
+ * "World of Zuul" is a very simple, text based adventure game.
+ *
+ * Benchmark measures how fast the game handles commands and how much
+ * memory it allocates while doing so. Each case is warmed up first and
+ * then timed; the report gives operations per second and the bytes
+ * allocated per operation, taken from the thread's allocation counter.
+ *
+ * The inventory is measured holding 50 000 items of 100 names, as bots
+ * collect them. The command path is measured on the campus world and on
+ * generated grid worlds of 10 000, 100 000 and 1 000 000 rooms. Run the main
+ * method with no arguments to measure everything, or give the room
+ * counts of the generated worlds to use (0 means the campus world), for
+ * example "java Benchmark 0 10000". Compare the numbers of two builds
+ * to catch a change that makes a command slower or allocate more. The
+ * walk with GO is also measured with CommandStats kept, to show what
+ * counting commands costs.
+ *
+ * @author  Ryan Rutishauser
+ * @version 2026.10.18
+ */
+
+public class Benchmark
+{
+    // Operations run before measuring, so that the code is compiled.
+    private static final int WARMUP = 1_000_000;
+    // Operations that are measured.
+    private static final int MEASURED = 2_000_000;
+    // World sizes measured when none are given; 0 is the campus world.
+    private static final int[] DEFAULT_SIZES = { 0, 10_000, 100_000, 1_000_000 };
+
+    // Results are added here so that the work cannot be optimised away.
+    private static long sink;
+
+    /**
+     * Main method so that the benchmarks can be run outside of Bluej.
+     * @param args Optional room counts of the worlds to measure.
+     */
+    public static void main(String[] args)
+    {
+        int[] sizes = DEFAULT_SIZES;
+        if(args.length > 0) {
+            sizes = new int[args.length];
+            for(int i = 0; i < args.length; i++) {
+                sizes[i] = Integer.parseInt(args[i]);
+            }
+        }
+
+        measureParser();
+        measureInventory();
+        for(int size : sizes) {
+            World world;
+            if(size == 0) {
+                world = World.campus();
+            }
+            else {
+                world = gridWorld(size);
+            }
+            System.out.println();
+            System.out.println("World with " + world.getRooms().size() + " rooms");
+            measureWorld(world);
+        }
+    }
+
+    /**
+     * Measure the parts of the command path that do not depend on the
+     * world: reading and parsing commands and looking up command words.
+     */
+    private static void measureParser()
+    {
+        String[] lines = { "go north", "look", "get", "go   west  now", "dance" };
+        Parser parser = new Parser(new RepeatingInput(lines), nullOutput());
+        CommandWords commandWords = new CommandWords();
+        CommandWord[] words = CommandWord.values();
+
+        measure("Parser.getCommand", i -> {
+            sink += parser.getCommand().getCommandWord().ordinal();
+        });
+        measure("Parser.parseCommand", i -> {
+            sink += parser.parseCommand(lines[i % lines.length]).getCommandWord().ordinal();
+        });
+        measure("CommandWords.getCommandWord", i -> {
+            sink += commandWords.getCommandWord(words[i % words.length].toString()).ordinal();
+        });
+    }
+
+    /**
+     * Measure the room operations and every command on one world.
+     * @param world The world to measure on.
+     */
+    private static void measureWorld(World world)
+    {
+        List<Room> rooms = world.getRooms();
+        String[] directions = { "north", "east", "south", "west" };
+
+        measure("  Room.getLongDescription", i -> {
+            sink += rooms.get(i % rooms.size()).getLongDescription().length();
+        });
+        measure("  Room.getExit", i -> {
+            Room exit = rooms.get(i % rooms.size()).getExit(directions[i & 3]);
+            sink += exit == null ? 0 : 1;
+        });
+
+        // Walk back and forth between the start room and one neighbour.
+        Room start = world.getStartRoom();
+        String there = null;
+        String back = null;
+        for(int d = 0; d < directions.length && there == null; d++) {
+            Room next = start.getExit(directions[d]);
+            if(next != null && next.getExit(directions[(d + 2) & 3]) == start) {
+                there = directions[d];
+                back = directions[(d + 2) & 3];
+            }
+        }
+        Command[] walk = { new Command(CommandWord.GO, there),
+                           new Command(CommandWord.GO, back) };
+        // The same walk with every command counted, to see what that costs.
+        // The two are measured in turns and the best of each is compared,
+        // so that a noisy moment does not decide it.
+        double plain = 0;
+        double counted = 0;
+        for(int round = 0; round < 3; round++) {
+            plain = Math.max(plain, measureCommand(world, "GO", i -> walk[i & 1], null));
+            counted = Math.max(counted, measureCommand(world, "GO with stats", i -> walk[i & 1],
+                                                       new CommandStats()));
+        }
+        System.out.printf("  Keeping statistics adds %.1f ns to each GO, %.0f%% of its time%n",
+                          1e9 / counted - 1e9 / plain, 100 * (plain / counted - 1));
+
+        // Go to the last room that has a way back, and back again.
+        RouteCache routes = world.getRouteCache();
+        Room far = start;
+        for(int id = rooms.size() - 1; id > 0 && far == start; id--) {
+            if(routes.route(start.getId(), id) != null && routes.route(id, start.getId()) != null) {
+                far = rooms.get(id);
+            }
+        }
+        Command[] trip = { new Command(CommandWord.GOTO, world.getRoomName(far)),
+                           new Command(CommandWord.GOTO, world.getRoomName(start)) };
+        measureCommand(world, "GOTO", i -> trip[i & 1], null);
+
+        for(CommandWord word : CommandWord.values()) {
+            if(word != CommandWord.GO && word != CommandWord.GOTO) {
+                Command command = new Command(word, null);
+                measureCommand(world, word.name(), i -> command, null);
+            }
+        }
+    }
+
+    /**
+     * Measure Game.processCommand for one kind of command on a fresh game.
+     * @param world The world the game is played on.
+     * @param name The name the result is reported under.
+     * @param commands Gives the command for each run.
+     * @param stats The statistics the game keeps, or null for none.
+     * @return The operations per second.
+     */
+    private static double measureCommand(World world, String name, CommandSource commands,
+                                         CommandStats stats)
+    {
+        Game game = new Game(world, InputStream.nullInputStream(), nullOutput());
+        game.setStats(stats, false);
+        return measure("  Game.processCommand " + name, i -> {
+            sink += game.processCommand(commands.get(i)) ? 1 : 0;
+        });
+    }
+
+    /**
+     * Measure taking items out of a large inventory by name and putting
+     * them back, next to the list the inventory used to be.
+     */
+    private static void measureInventory()
+    {
+        int size = 50_000;
+        int names = 100;
+        Inventory inventory = new Inventory();
+        ArrayList<Item> list = new ArrayList<>(size);
+        String[] nameOf = new String[names];
+        for(int i = 0; i < size; i++) {
+            Item item = new Item("This is a thing" + (i % names), 1);
+            nameOf[i % names] = item.getName();
+            inventory.add(item);
+            list.add(item);
+        }
+        System.out.println();
+        System.out.println("Inventory with " + size + " items");
+        measure("  Inventory.remove(name) and add", i -> {
+            inventory.add(inventory.remove(nameOf[i % names]));
+        });
+        measure("  Inventory.count(name)", i -> {
+            sink += inventory.count(nameOf[i % names]);
+        });
+        measure("  Inventory.getTotalWeight", i -> {
+            sink += inventory.getTotalWeight();
+        });
+        measure("  ArrayList.remove(0) and add (old)", i -> {
+            list.add(list.remove(0));
+        });
+    }
+
+    /**
+     * Create a square grid of rooms in which every room has exits to its
+     * neighbours to the north, east, south and west, and every tenth
+     * room holds an item.
+     * @param size The number of rooms wanted.
+     * @return The world.
+     */
+    public static World gridWorld(int size)
+    {
+        int width = (int) Math.ceil(Math.sqrt(size));
+        ArrayList<Room> rooms = new ArrayList<>(size);
+        for(int i = 0; i < size; i++) {
+            Room room = new Room("in room " + i);
+            if(i % 10 == 0) {
+                room.setItem(new Item("This is a pebble", 1));
+            }
+            rooms.add(room);
+        }
+        for(int i = 0; i < size; i++) {
+            Room room = rooms.get(i);
+            if(i >= width) {
+                room.setExit("north", rooms.get(i - width));
+            }
+            if(i + width < size) {
+                room.setExit("south", rooms.get(i + width));
+            }
+            if(i % width > 0) {
+                room.setExit("west", rooms.get(i - 1));
+            }
+            if(i % width < width - 1 && i + 1 < size) {
+                room.setExit("east", rooms.get(i + 1));
+            }
+        }
+        return new World(rooms, rooms.get(0), null);
+    }
+
+    /**
+     * One operation to be measured.
+     */
+    public interface Operation
+    {
+        /**
+         * Run the operation once.
+         * @param i The number of the run, for choosing varied input.
+         */
+        void run(int i);
+    }
+
+    /**
+     * Gives the command to be processed in each run.
+     */
+    private interface CommandSource
+    {
+        /**
+         * @param i The number of the run.
+         * @return The command to process in that run.
+         */
+        Command get(int i);
+    }
+
+    /**
+     * Warm up and then measure an operation, and print the result.
+     * @param name The name the result is reported under.
+     * @param operation The operation to measure.
+     * @return The operations per second.
+     */
+    public static double measure(String name, Operation operation)
+    {
+        for(int i = 0; i < WARMUP; i++) {
+            operation.run(i);
+        }
+        long allocatedBefore = allocatedBytes();
+        long start = System.nanoTime();
+        for(int i = 0; i < MEASURED; i++) {
+            operation.run(i);
+        }
+        long time = System.nanoTime() - start;
+        long allocated = allocatedBytes() - allocatedBefore;
+
+        double rate = MEASURED * 1e9 / time;
+        System.out.printf("%-40s %14.0f ops/s %10.1f B/op%n", name,
+                          rate, (double) allocated / MEASURED);
+        return rate;
+    }
+
+    /**
+     * @return The number of bytes allocated by the current thread so far.
+     */
+    private static long allocatedBytes()
+    {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+            .getCurrentThreadAllocatedBytes();
+    }
+
+    /**
+     * @return An output that throws away everything written to it.
+     */
+    private static PrintStream nullOutput()
+    {
+        return new PrintStream(OutputStream.nullOutputStream());
+    }
+
+    /**
+     * An input that repeats the same lines for ever.
+     */
+    private static class RepeatingInput extends InputStream
+    {
+        private byte[] bytes;
+        private int position;
+
+        /**
+         * @param lines The lines to repeat.
+         */
+        RepeatingInput(String[] lines)
+        {
+            bytes = (String.join("\n", lines) + "\n").getBytes(StandardCharsets.UTF_8);
+        }
+
+        /**
+         * @return The next byte of the input.
+         */
+        public int read()
+        {
+            int b = bytes[position];
+            position = (position + 1) % bytes.length;
+            return b;
+        }
+
+        /**
+         * Copy as many bytes as fit into the given array.
+         */
+        public int read(byte[] buffer, int offset, int length)
+        {
+            for(int i = 0; i < length; i++) {
+                buffer[offset + i] = bytes[position];
+                position = (position + 1) % bytes.length;
+            }
+            return length;
+        }
+    }
+}
@@ -0,0 +1,97 @@
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This class is part of the "World of Zuul" application.
+ * "World of Zuul" is a very simple, text based adventure game.
+ *
+ * A Checkpointer owns the threads that write the GameSnapshots of many
+ * sessions. A game checkpoints by copying its state on its own thread
+ * and handing the copy over; the encoding and file writing happen here,
+ * so saving thousands of sessions never holds up a command. The threads
+ * are a small fixed pool, as writing files is limited by the disk, not
+ * by the number of sessions.
+ *
+ * @author  Ryan Rutishauser
+ * @version 2026.10.18
+ */
+
+public class Checkpointer implements AutoCloseable
+{
+    private final ExecutorService threads;
+    private final boolean durable;
+
+    /**
+     * Create a checkpointer with two threads that force every checkpoint
+     * to the disk.
+     */
+    public Checkpointer()
+    {
+        this(2, true);
+    }
+
+    /**
+     * Create a checkpointer.
+     * @param threads The number of threads writing snapshot files.
+     * @param durable true to force every checkpoint to the disk, false to
+     *                leave that to the operating system.
+     */
+    public Checkpointer(int threads, boolean durable)
+    {
+        this.durable = durable;
+        AtomicInteger count = new AtomicInteger();
+        this.threads = Executors.newFixedThreadPool(threads, task -> {
+            Thread thread = new Thread(task, "zuul-checkpoint-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Create a snapshot whose checkpoints are written by this
+     * checkpointer.
+     * @param file The file to save to. It is only replaced by the first
+     *             checkpoint, so it can be restored from before that.
+     * @param world The world the game is played on.
+     * @return The snapshot, ready to be given to Game.setSnapshot.
+     */
+    public GameSnapshot open(Path file, World world)
+    {
+        return new GameSnapshot(file, world, this);
+    }
+
+    /**
+     * @return true if checkpoints are forced to the disk.
+     */
+    public boolean isDurable()
+    {
+        return durable;
+    }
+
+    /**
+     * Finish writing the checkpoints already handed over and stop the
+     * threads. Snapshots should be closed first.
+     */
+    public void close()
+    {
+        threads.shutdown();
+        try {
+            threads.awaitTermination(1, TimeUnit.MINUTES);
+        }
+        catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Run a snapshot's writing task on one of the threads.
+     * @param task The task.
+     */
+    void submit(Runnable task)
+    {
+        threads.execute(task);
+    }
+}
@@ -19,8 +19,8 @@
 
 public class Command
 {
-    private CommandWord commandWord;
-    private String secondWord;
+    private final CommandWord commandWord;
+    private final String secondWord;
 
     /**
      * Create a command object. First and second words must be supplied, but
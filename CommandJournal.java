@@ -0,0 +1,300 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * This class is part of the "World of Zuul" application.
+ * "World of Zuul" is a very simple, text based adventure game.
+ *
+ * A CommandJournal records the commands of one game in a compact binary
+ * file, so that the game can be rebuilt after a crash or replayed to
+ * reproduce what a player saw. A journal starts with a header, then
+ * holds one record per accepted command, one whenever the seed of the
+ * game's random numbers is set and one whenever time passes:
+ *
+ *     header   int magic, byte version, int number of rooms of the world
+ *     command  byte: the CommandWord's ordinal, plus HAS_WORD if a second
+ *              word follows as a length byte and its UTF-8 bytes
+ *     seed     byte SEED, then the seed as a long
+ *     time     byte TIME, then the number of ticks that passed as an int
+ *
+ * Recording a command only copies a few bytes into a buffer in memory.
+ * The buffer is written to the file later by a JournalWriter, which
+ * writes the journals of all sessions from one thread, so the file is
+ * never touched on the game's own thread. Once MAX_PENDING bytes wait to
+ * be written, recording waits for the writer to take them. JournalReplay
+ * reads a journal back.
+ *
+ * @author  Ryan Rutishauser
+ * @version 2026.10.18
+ */
+
+public class CommandJournal
+{
+    // The first bytes of every journal file: "ZJNL".
+    public static final int MAGIC = 0x5A4A4E4C;
+    public static final int VERSION = 2;
+    // Added to a command's ordinal when a second word follows.
+    static final int HAS_WORD = 0x40;
+    // Marks a seed record.
+    static final int SEED = 0xFF;
+    // Marks a time record.
+    static final int TIME = 0xFE;
+    // The longest second word kept; longer words are cut.
+    static final int MAX_WORD = 255;
+    // Unwritten bytes after which recording waits for the writer.
+    public static final int MAX_PENDING = 64 * 1024;
+    // How often a waiting record looks whether the writer still runs
+    // (milliseconds).
+    private static final long WAIT_CHECK = 100;
+
+    private final Path file;
+    private final JournalWriter writer;
+    private final FileChannel channel;
+    private final Object writeLock;
+    // Filled by the game; handed to the writer by swapping with "spare".
+    private byte[] buffer;
+    private int size;
+    private byte[] spare;
+    private boolean queued;
+    private boolean failed;
+
+    /**
+     * Create a new journal file and write its header. Journals are
+     * opened through JournalWriter.open.
+     * @param file The file to create or replace.
+     * @param world The world the recorded game is played on.
+     * @param writer The writer that writes this journal's records.
+     */
+    CommandJournal(Path file, World world, JournalWriter writer) throws IOException
+    {
+        this.file = file;
+        this.writer = writer;
+        channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                                   StandardOpenOption.TRUNCATE_EXISTING,
+                                   StandardOpenOption.WRITE);
+        writeLock = new Object();
+        buffer = new byte[512];
+        spare = new byte[512];
+        ByteBuffer header = ByteBuffer.allocate(9);
+        header.putInt(MAGIC).put((byte) VERSION).putInt(world.getGraph().size());
+        header.flip();
+        while(header.hasRemaining()) {
+            channel.write(header);
+        }
+    }
+
+    /**
+     * @return The file this journal is written to.
+     */
+    public Path getFile()
+    {
+        return file;
+    }
+
+    /**
+     * Record a command that the game accepted. Waits while MAX_PENDING
+     * bytes have not been written yet.
+     * @param command The command.
+     */
+    public synchronized void record(Command command)
+    {
+        if(failed) {
+            return;
+        }
+        int word = command.getCommandWord().ordinal();
+        String second = command.getSecondWord();
+        if(second == null) {
+            reserve(1);
+            buffer[size++] = (byte) word;
+        }
+        else {
+            reserve(2 + 3 * Math.min(second.length(), MAX_WORD));
+            buffer[size++] = (byte) (word | HAS_WORD);
+            putWord(second);
+        }
+        schedule();
+        awaitWriter();
+    }
+
+    /**
+     * Record the seed the game's random numbers were started from. Every
+     * draw after this record follows from it.
+     * @param seed The seed.
+     */
+    public synchronized void recordSeed(long seed)
+    {
+        if(failed) {
+            return;
+        }
+        reserve(9);
+        buffer[size++] = (byte) SEED;
+        for(int shift = 56; shift >= 0; shift -= 8) {
+            buffer[size++] = (byte) (seed >>> shift);
+        }
+        schedule();
+    }
+
+    /**
+     * Record that time passed in the game, as the TickScheduler makes it.
+     * @param ticks The number of ticks that passed.
+     */
+    public synchronized void recordTime(int ticks)
+    {
+        if(failed) {
+            return;
+        }
+        reserve(5);
+        buffer[size++] = (byte) TIME;
+        for(int shift = 24; shift >= 0; shift -= 8) {
+            buffer[size++] = (byte) (ticks >>> shift);
+        }
+        schedule();
+    }
+
+    /**
+     * Write everything recorded so far and close the file. Records made
+     * afterwards are ignored.
+     */
+    public void close() throws IOException
+    {
+        synchronized(writeLock) {
+            if(!channel.isOpen()) {
+                return;
+            }
+            try {
+                commit(writer.isDurable());
+            }
+            finally {
+                synchronized(this) {
+                    failed = true;
+                }
+                channel.close();
+            }
+        }
+    }
+
+    /**
+     * Write the records made since the last commit to the file, and
+     * force them to the disk if asked to. Called by the JournalWriter's
+     * thread, or by close.
+     * @param force true to wait until the records are on the disk.
+     */
+    void commit(boolean force) throws IOException
+    {
+        synchronized(writeLock) {
+            if(!channel.isOpen()) {
+                return;
+            }
+            byte[] pending;
+            int length;
+            synchronized(this) {
+                pending = buffer;
+                length = size;
+                buffer = spare;
+                size = 0;
+                spare = pending;
+                queued = false;
+                notifyAll();
+            }
+            if(length == 0) {
+                return;
+            }
+            ByteBuffer bytes = ByteBuffer.wrap(pending, 0, length);
+            while(bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+            if(force) {
+                channel.force(false);
+            }
+        }
+    }
+
+    /**
+     * Stop recording after the file could not be written.
+     * @param e What went wrong.
+     */
+    void fail(IOException e)
+    {
+        synchronized(this) {
+            failed = true;
+            size = 0;
+            notifyAll();
+        }
+        System.err.println("Journal " + file + " stopped: " + e.getMessage());
+        try {
+            channel.close();
+        }
+        catch(IOException closing) {
+            // Nothing more can be done with this file.
+        }
+    }
+
+    /**
+     * Wait, with this journal's lock given up, until the writer has taken
+     * the buffer if it holds MAX_PENDING bytes or more. A closed writer
+     * takes nothing more, so then the records stay until close.
+     */
+    private void awaitWriter()
+    {
+        while(size >= MAX_PENDING && !failed && writer.isRunning()) {
+            try {
+                wait(WAIT_CHECK);
+            }
+            catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Hand the buffer to the writer, unless it already waits for it.
+     */
+    private void schedule()
+    {
+        if(!queued) {
+            queued = true;
+            writer.schedule(this);
+        }
+    }
+
+    /**
+     * Make room for the given number of bytes in the buffer.
+     */
+    private void reserve(int bytes)
+    {
+        if(size + bytes > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + bytes));
+        }
+    }
+
+    /**
+     * Append a second word as a length byte and its UTF-8 bytes. Plain
+     * ASCII words, which is nearly all of them, are copied char by char.
+     */
+    private void putWord(String word)
+    {
+        int lengthAt = size++;
+        int limit = Math.min(word.length(), MAX_WORD);
+        int start = size;
+        for(int i = 0; i < limit; i++) {
+            char c = word.charAt(i);
+            if(c >= 0x80) {
+                size = start;
+                byte[] bytes = word.substring(0, limit).getBytes(StandardCharsets.UTF_8);
+                int length = Math.min(bytes.length, MAX_WORD);
+                System.arraycopy(bytes, 0, buffer, size, length);
+                size += length;
+                buffer[lengthAt] = (byte) length;
+                return;
+            }
+            buffer[size++] = (byte) c;
+        }
+        buffer[lengthAt] = (byte) limit;
+    }
+}
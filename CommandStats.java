@@ -0,0 +1,402 @@
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLongArray;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * This class is part of the "World of Zuul" application.
+ * "World of Zuul" is a very simple, text based adventure game.
+ *
+ * CommandStats counts the commands of many games by CommandWord and
+ * keeps a histogram of how long they took, from which the median and
+ * the 99th and 99.9th percentiles are read, and the bytes a command
+ * allocated, from the thread's allocation counter.
+ *
+ * Recording a command takes no lock and allocates nothing, so keeping
+ * statistics does not change what is measured. Every command is counted,
+ * but reading the clock twice takes about as long as a short command, and
+ * reading the allocation counter takes longer, so the time is measured
+ * for one command in TIME_SAMPLE and the allocation for one in
+ * ALLOCATION_SAMPLE, never both for the same command: a command whose
+ * allocation is measured would otherwise mostly time the counter. The
+ * first commands of each word are all timed, so rare commands are not
+ * missed.
+ *
+ * Each number is an element of an AtomicLongArray. The threads are spread
+ * over STRIPES copies of the numbers by thread id, so threads seldom
+ * update the same element; the copies are only added up when the numbers
+ * are read.
+ *
+ * The histograms have SUB_BUCKETS buckets for every power of two of
+ * nanoseconds, so a percentile is within about 6% of the real value.
+ *
+ * The numbers can be printed with the "stats" command of a game that
+ * is allowed to show them, and read over JMX, one MXBean per command
+ * word.
+ *
+ * @author  Ryan Rutishauser
+ * @version 2026.10.18
+ */
+
+public class CommandStats
+{
+    // One command of a word in this many is timed, and one in this many
+    // has its allocation measured.
+    public static final int TIME_SAMPLE = 16;
+    public static final int ALLOCATION_SAMPLE = 256;
+    // Buckets per power of two; must be a power of two.
+    private static final int SUB_BUCKETS = 16;
+    private static final int SUB_BITS = 4;
+    // Durations of 2^MAX_BITS ns (about 18 minutes) and more share a bucket.
+    private static final int MAX_BITS = 40;
+    private static final int BUCKETS = (MAX_BITS - SUB_BITS + 2) * SUB_BUCKETS;
+    // Fields of each stripe of a command word, before its buckets.
+    private static final int COUNT = 0;
+    private static final int TIMED = 1;
+    private static final int TOTAL_TIME = 2;
+    private static final int WEIGHED = 3;
+    private static final int TOTAL_BYTES = 4;
+    private static final int MAX_BYTES = 5;
+    private static final int FIELDS = 6;
+    private static final int STRIDE = FIELDS + BUCKETS;
+    private static final int STRIPES = stripes();
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private final CommandWord[] words;
+    // For stripe s and word w, the fields and then the buckets start at
+    // (s * words.length + w) * STRIDE.
+    private final AtomicLongArray numbers;
+    private final boolean allocationCounted;
+
+    /**
+     * Create empty statistics.
+     */
+    public CommandStats()
+    {
+        words = CommandWord.values();
+        numbers = new AtomicLongArray(STRIPES * words.length * STRIDE);
+        allocationCounted = THREADS.isThreadAllocatedMemorySupported()
+                            && THREADS.isThreadAllocatedMemoryEnabled();
+    }
+
+    /**
+     * @return The number of bytes the current thread has allocated so
+     * far, or 0 if the JVM does not count them.
+     */
+    public long allocatedBytes()
+    {
+        return allocationCounted ? THREADS.getCurrentThreadAllocatedBytes() : 0;
+    }
+
+    /**
+     * Count one command that is about to be run.
+     * @param word The command word.
+     * @return The number of commands of the word counted before it, as
+     * far as this thread can tell; pass it to measuresTime and
+     * measuresAllocation to learn what to measure of the command.
+     */
+    public long count(CommandWord word)
+    {
+        return numbers.getAndIncrement(base(stripe(), word) + COUNT);
+    }
+
+    /**
+     * @param number What count returned for a command.
+     * @return true if the bytes the command allocates are to be measured
+     * and given to recordAllocation: for the second command of a word and
+     * one in ALLOCATION_SAMPLE after that.
+     */
+    public static boolean measuresAllocation(long number)
+    {
+        return number % ALLOCATION_SAMPLE == 1;
+    }
+
+    /**
+     * @param number What count returned for a command.
+     * @return true if the time the command takes is to be measured and
+     * given to recordTime: for the first TIME_SAMPLE commands of a word
+     * and one in TIME_SAMPLE after that, unless measuresAllocation is
+     * true for it.
+     */
+    public static boolean measuresTime(long number)
+    {
+        return !measuresAllocation(number)
+               && (number < TIME_SAMPLE || number % TIME_SAMPLE == 0);
+    }
+
+    /**
+     * Record how long one counted command took.
+     * @param word The command word.
+     * @param nanos How long the command took.
+     */
+    public void recordTime(CommandWord word, long nanos)
+    {
+        int base = base(stripe(), word);
+        numbers.getAndIncrement(base + TIMED);
+        numbers.getAndAdd(base + TOTAL_TIME, nanos);
+        numbers.getAndIncrement(base + FIELDS + bucket(nanos));
+    }
+
+    /**
+     * Record how many bytes one counted command allocated.
+     * @param word The command word.
+     * @param bytes How many bytes it allocated.
+     */
+    public void recordAllocation(CommandWord word, long bytes)
+    {
+        int base = base(stripe(), word);
+        numbers.getAndIncrement(base + WEIGHED);
+        numbers.getAndAdd(base + TOTAL_BYTES, bytes);
+        long max = numbers.get(base + MAX_BYTES);
+        while(bytes > max && !numbers.weakCompareAndSetVolatile(base + MAX_BYTES, max, bytes)) {
+            max = numbers.get(base + MAX_BYTES);
+        }
+    }
+
+    /**
+     * @param word A command word.
+     * @return The number of such commands recorded.
+     */
+    public long getCount(CommandWord word)
+    {
+        return sum(word, COUNT);
+    }
+
+    /**
+     * @param word A command word.
+     * @return The mean time such a command took, in nanoseconds, over
+     * the commands that were timed.
+     */
+    public double getMeanTime(CommandWord word)
+    {
+        long count = sum(word, TIMED);
+        return count == 0 ? 0 : (double) sum(word, TOTAL_TIME) / count;
+    }
+
+    /**
+     * @param word A command word.
+     * @return The mean number of bytes such a command allocated, over
+     * the commands whose allocation was measured.
+     */
+    public double getMeanBytes(CommandWord word)
+    {
+        long count = sum(word, WEIGHED);
+        return count == 0 ? 0 : (double) sum(word, TOTAL_BYTES) / count;
+    }
+
+    /**
+     * @param word A command word.
+     * @return The most bytes one such command allocated.
+     */
+    public long getMaxBytes(CommandWord word)
+    {
+        long max = 0;
+        for(int stripe = 0; stripe < STRIPES; stripe++) {
+            max = Math.max(max, numbers.get(base(stripe, word) + MAX_BYTES));
+        }
+        return max;
+    }
+
+    /**
+     * @param word A command word.
+     * @param fraction The fraction of commands, such as 0.99.
+     * @return The time within which that fraction of such commands
+     * finished, in nanoseconds, or 0 if none were recorded.
+     */
+    public long getPercentile(CommandWord word, double fraction)
+    {
+        long[] counts = new long[BUCKETS];
+        long total = 0;
+        for(int stripe = 0; stripe < STRIPES; stripe++) {
+            int base = base(stripe, word) + FIELDS;
+            for(int b = 0; b < BUCKETS; b++) {
+                long count = numbers.get(base + b);
+                counts[b] += count;
+                total += count;
+            }
+        }
+        if(total == 0) {
+            return 0;
+        }
+        long wanted = (long) Math.ceil(fraction * total);
+        long seen = 0;
+        for(int b = 0; b < BUCKETS; b++) {
+            seen += counts[b];
+            if(seen >= wanted) {
+                return upperBound(b);
+            }
+        }
+        return upperBound(BUCKETS - 1);
+    }
+
+    /**
+     * Print a table of the statistics of every command word used.
+     * @param out Where the table is printed.
+     */
+    public void print(PrintStream out)
+    {
+        out.printf("%-10s %10s %10s %10s %10s %12s%n",
+                   "command", "count", "p50 us", "p99 us", "p999 us", "bytes/cmd");
+        for(CommandWord word : words) {
+            long count = getCount(word);
+            if(count > 0) {
+                out.printf("%-10s %10d %10.1f %10.1f %10.1f %12.0f%n", word, count,
+                           getPercentile(word, 0.50) / 1e3, getPercentile(word, 0.99) / 1e3,
+                           getPercentile(word, 0.999) / 1e3, getMeanBytes(word));
+            }
+        }
+    }
+
+    /**
+     * Make the statistics of every command word readable over JMX, as
+     * "zuul:type=CommandStats,command=&lt;word&gt;".
+     */
+    public void registerMBeans() throws JMException
+    {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for(CommandWord word : words) {
+            ObjectName name = new ObjectName("zuul:type=CommandStats,command=" + word.name());
+            if(server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+            server.registerMBean(new WordView(word), name);
+        }
+    }
+
+    /**
+     * @return The sum of one field of a word over all stripes.
+     */
+    private long sum(CommandWord word, int field)
+    {
+        long sum = 0;
+        for(int stripe = 0; stripe < STRIPES; stripe++) {
+            sum += numbers.get(base(stripe, word) + field);
+        }
+        return sum;
+    }
+
+    /**
+     * @return The stripe of the current thread.
+     */
+    private static int stripe()
+    {
+        return (int) Thread.currentThread().threadId() & (STRIPES - 1);
+    }
+
+    /**
+     * @return Where the numbers of a word in a stripe start.
+     */
+    private int base(int stripe, CommandWord word)
+    {
+        return (stripe * words.length + word.ordinal()) * STRIDE;
+    }
+
+    /**
+     * @return The bucket of a duration: values below SUB_BUCKETS have a
+     * bucket each, larger ones share a bucket with the values that have
+     * the same highest SUB_BITS + 1 bits.
+     */
+    private static int bucket(long nanos)
+    {
+        if(nanos < SUB_BUCKETS) {
+            return (int) Math.max(nanos, 0);
+        }
+        int bits = 64 - Long.numberOfLeadingZeros(nanos);
+        if(bits > MAX_BITS) {
+            return BUCKETS - 1;
+        }
+        int shift = bits - SUB_BITS - 1;
+        int sub = (int) (nanos >>> shift) & (SUB_BUCKETS - 1);
+        return (shift + 1) * SUB_BUCKETS + sub;
+    }
+
+    /**
+     * @return The largest duration that falls in a bucket.
+     */
+    private static long upperBound(int bucket)
+    {
+        if(bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        long sub = bucket % SUB_BUCKETS + SUB_BUCKETS;
+        return ((sub + 1) << shift) - 1;
+    }
+
+    /**
+     * @return The number of stripes: a power of two of at least the
+     * number of processors.
+     */
+    private static int stripes()
+    {
+        int processors = Runtime.getRuntime().availableProcessors();
+        return Integer.highestOneBit(Math.max(1, processors * 2 - 1));
+    }
+
+    /**
+     * The statistics of one command word, as JMX shows them.
+     */
+    public interface WordStatsMXBean
+    {
+        // Times are in microseconds.
+        long getCount();
+        double getMeanMicros();
+        double getP50Micros();
+        double getP99Micros();
+        double getP999Micros();
+        double getMeanBytes();
+        long getMaxBytes();
+    }
+
+    /**
+     * The statistics of one command word, read when JMX asks for them.
+     */
+    private class WordView implements WordStatsMXBean
+    {
+        private final CommandWord word;
+
+        WordView(CommandWord word)
+        {
+            this.word = word;
+        }
+
+        public long getCount()
+        {
+            return CommandStats.this.getCount(word);
+        }
+
+        public double getMeanMicros()
+        {
+            return getMeanTime(word) / 1e3;
+        }
+
+        public double getP50Micros()
+        {
+            return getPercentile(word, 0.50) / 1e3;
+        }
+
+        public double getP99Micros()
+        {
+            return getPercentile(word, 0.99) / 1e3;
+        }
+
+        public double getP999Micros()
+        {
+            return getPercentile(word, 0.999) / 1e3;
+        }
+
+        public double getMeanBytes()
+        {
+            return CommandStats.this.getMeanBytes(word);
+        }
+
+        public long getMaxBytes()
+        {
+            return CommandStats.this.getMaxBytes(word);
+        }
+    }
+}
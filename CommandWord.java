@@ -10,7 +10,8 @@ public enum CommandWord
     // A value for each command word along with its
     // corresponding user interface string.
     GO("go"), QUIT("quit"), HELP("help"), UNKNOWN("?"), LOOK("look"), 
-    GET("get"), EAT("eat"), TRANSPORT("transport");
+    GET("get"), EAT("eat"), TRANSPORT("transport"), DROP("drop"), STATS("stats"),
+    GOTO("goto");
     
     // The command string.
     private String commandString;
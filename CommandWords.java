@@ -1,3 +1,4 @@
+import java.io.PrintStream;
 import java.util.HashMap;
 
 /**
@@ -16,6 +17,9 @@ public class CommandWords
     // A mapping between a command word and the CommandWord
     // associated with it.
     private HashMap<String, CommandWord> validCommands;
+    // The same command words as an array, for lookups that do not
+    // create a String first.
+    private CommandWord[] words;
 
     /**
      * Constructor - initialise the command words.
@@ -28,6 +32,7 @@ public class CommandWords
                 validCommands.put(command.toString(), command);
             }
         }
+        words = validCommands.values().toArray(new CommandWord[0]);
     }
 
     /**
@@ -47,6 +52,40 @@ public class CommandWords
         }
     }
     
+    /**
+     * Find the CommandWord spelled by part of a line of text, without
+     * copying that part into a new String.
+     * @param text The text holding the word.
+     * @param start The index of the first character of the word.
+     * @param end The index just after the last character of the word.
+     * @return The CommandWord spelled there, or UNKNOWN if it is not a
+     *         valid command word.
+     */
+    public CommandWord getCommandWord(CharSequence text, int start, int end)
+    {
+        int length = end - start;
+        for(CommandWord command : words) {
+            String word = command.toString();
+            if(word.length() == length && matches(word, text, start)) {
+                return command;
+            }
+        }
+        return CommandWord.UNKNOWN;
+    }
+
+    /**
+     * @return true if "text" holds all characters of "word" from "start".
+     */
+    private static boolean matches(String word, CharSequence text, int start)
+    {
+        for(int i = 0; i < word.length(); i++) {
+            if(word.charAt(i) != text.charAt(start + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     /**
      * Check whether a given String is a valid command word. 
      * @return true if it is, false if it isn't.
@@ -57,14 +96,15 @@ public class CommandWords
     }
 
     /**
-     * Print all valid commands to System.out.
+     * Print all valid commands to the given output.
+     * @param out Where the command list is printed.
      */
-    public void showAll() 
+    public void showAll(PrintStream out) 
     {
         for(String command : validCommands.keySet()) {
-            System.out.print(command + "  ");
+            out.print(command + "  ");
         }
-        System.out.println();
+        out.println();
     }
     
 }
@@ -0,0 +1,90 @@
+/**
+ * Representations for all the directions an exit can lead in, along
+ * with the word a player types for each.
+ *
+ * This class is part of the "World of Zuul" application.
+ * "World of Zuul" is a very simple, text based adventure game.
+ *
+ * @author  Ryan Rutishauser
+ * @version 2026.10.18
+ */
+public enum Direction
+{
+    // A value for each direction along with its
+    // corresponding user interface string.
+    NORTH("north"), EAST("east"), SOUTH("south"), WEST("west"),
+    UP("up"), DOWN("down");
+
+    // All directions, kept so that lookups do not copy values().
+    private static final Direction[] ALL = values();
+
+    // The direction string.
+    private String directionString;
+
+    /**
+     * Initialise with the corresponding direction string.
+     * @param directionString The direction string.
+     */
+    Direction(String directionString)
+    {
+        this.directionString = directionString;
+    }
+
+    /**
+     * Find the direction a word stands for.
+     * @param word The word to look up, for example "north".
+     * @return The direction, or null if the word is not a direction.
+     */
+    public static Direction fromString(String word)
+    {
+        if(word == null) {
+            return null;
+        }
+        for(Direction direction : ALL) {
+            if(direction.directionString.equals(word)) {
+                return direction;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @param ordinal The ordinal of a direction.
+     * @return The direction with that ordinal.
+     */
+    public static Direction fromOrdinal(int ordinal)
+    {
+        return ALL[ordinal];
+    }
+
+    /**
+     * @return The number of directions.
+     */
+    public static int count()
+    {
+        return ALL.length;
+    }
+
+    /**
+     * @return The direction that leads back, for example SOUTH for NORTH.
+     */
+    public Direction opposite()
+    {
+        switch(this) {
+            case NORTH: return SOUTH;
+            case EAST:  return WEST;
+            case SOUTH: return NORTH;
+            case WEST:  return EAST;
+            case UP:    return DOWN;
+            default:    return UP;
+        }
+    }
+
+    /**
+     * @return The direction as a string.
+     */
+    public String toString()
+    {
+        return directionString;
+    }
+}
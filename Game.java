@@ -1,5 +1,17 @@
-import java.util.ArrayList;
-import java.util.Random;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.ReentrantLock;
 /**
  *  This class is the main class of the "World of Zuul" application. 
  *  "World of Zuul" is a very simple, text based adventure game.  Users 
@@ -9,9 +21,9 @@ import java.util.Random;
  *  To play this game, create an instance of this class and call the "play"
  *  method.
  * 
- *  This main class creates and initialises all the others: it creates all
- *  rooms, creates the parser and starts the game.  It also evaluates and
- *  executes the commands that the parser returns.
+ *  This main class creates and initialises all the others: it starts the
+ *  player in the shared World, creates the parser and starts the game.
+ *  It also evaluates and executes the commands that the parser returns.
  * 
  * @author  Ryan Rutishauser
  * @version 2022.03.19
@@ -19,134 +31,179 @@ import java.util.Random;
 
 public class Game 
 {
+    // Ticks between losing a point of health to hunger.
+    public static final int HUNGER_TICKS = 30;
+    // Ticks between putting the food of respawning rooms back.
+    public static final int RESPAWN_TICKS = 60;
+    // Ticks a player stays locked in before breaking out.
+    public static final int ESCAPE_TICKS = 20;
+    // Routes with more steps than this are not spelled out by "goto".
+    private static final int MAX_DESCRIBED_ROUTE = 12;
+
     private Parser parser;
     private Room currentRoom;
-    private Random randomizer;
-    private ArrayList<Item> inventory;
+    private SplittableRandom randomizer;
+    private long seed;
+    private Inventory inventory;
     private int health;
-    private ArrayList<Room> rooms;
-    private Room locker;
+    private World world;
+    private RoomItems items;
+    private PrintStream out;
+    private CommandJournal journal;
+    private GameSnapshot snapshot;
+    private int checkpointInterval;
+    private int sinceCheckpoint;
+    private RoomEvents.Occupant occupant;
+    private CommandStats stats;
+    private boolean statsShown;
+    // Where passing time prints, if not straight to "out".
+    private QueuedOutput timeOutput;
+    // Held while a command runs or time passes, which may happen on
+    // different threads.
+    private final ReentrantLock lock = new ReentrantLock();
+    private Room previousRoom;
+    private int hungerTicks;
+    private int respawnTicks;
+    private int lockedTicks;
     
     /**
      * Main method so that game can be run outside of Bluej.
+     * @param args An optional world file, or world image ending in
+     *             ".img", to play instead of the campus, or "-generated"
+     *             and a seed to play in an endless GeneratedWorld, or
+     *             "-synthetic" with a shape, a number of rooms and a seed
+     *             to play in a world of a WorldGenerator. With
+     *             "-snapshot &lt;file&gt;" the game is saved to the file
+     *             after every command, and continued from it if it
+     *             already exists.
      */
-    public static void main(String[] args){
-        Game game = new Game();
-        game.play();
+    public static void main(String[] args) throws IOException {
+        String worldName = null;
+        Path saveFile = null;
+        World generated = null;
+        for(int i = 0; i < args.length; i++){
+            if(args[i].equals("-snapshot")){
+                saveFile = Paths.get(args[++i]);
+            }
+            else if(args[i].equals("-generated")){
+                long seed = Long.parseLong(args[++i]);
+                generated = GeneratedWorld.create(seed, GeneratedWorld.DEFAULT_CACHE);
+            }
+            else if(args[i].equals("-synthetic")){
+                WorldGenerator.Shape shape = WorldGenerator.Shape.fromString(args[++i]);
+                int rooms = Integer.parseInt(args[++i]);
+                long seed = Long.parseLong(args[++i]);
+                generated = new WorldGenerator(shape, rooms, seed).build();
+            }
+            else{
+                worldName = args[i];
+            }
+        }
+        Game game;
+        if(generated != null){
+            game = new Game(generated, System.in, System.out);
+        }
+        else if(worldName != null && worldName.endsWith(".img")){
+            game = new Game(WorldImage.openWorld(Paths.get(worldName)), System.in, System.out);
+        }
+        else if(worldName != null){
+            WorldLoader loader = new WorldLoader();
+            World world = loader.load(Paths.get(worldName));
+            System.out.println(loader.getReport(world));
+            game = new Game(world, System.in, System.out);
+        }
+        else{
+            game = new Game();
+        }
+        if(saveFile == null){
+            game.play();
+            return;
+        }
+        if(Files.exists(saveFile)){
+            GameSnapshot.restore(saveFile, game);
+            System.out.println("Your saved game was restored.");
+        }
+        try(Checkpointer checkpointer = new Checkpointer(1, true)){
+            GameSnapshot snapshot = checkpointer.open(saveFile, game.getWorld());
+            game.setSnapshot(snapshot, 1);
+            game.play();
+            game.checkpoint();
+            snapshot.close();
+        }
     }
     /**
      * Create the game and initialise its internal map.
      */
     public Game() 
     {
-        createRooms();
-        parser = new Parser();
-        inventory = new ArrayList<>();
+        this(System.in, System.out);
+    }
+
+    /**
+     * Create a game whose commands are read from "in" and whose output
+     * is written to "out". Each session of a server gets its own pair
+     * of streams so that sessions never share the process console.
+     * @param in The source of the player's commands.
+     * @param out Where all of the game's output is written.
+     */
+    public Game(InputStream in, PrintStream out)
+    {
+        this(World.campus(), in, out);
+    }
+
+    /**
+     * Create a game played on the given world. The world is shared and
+     * never changed; what this game changes is kept in its own overlay.
+     * @param world The world to play on.
+     * @param in The source of the player's commands.
+     * @param out Where all of the game's output is written.
+     */
+    public Game(World world, InputStream in, PrintStream out)
+    {
+        this(world, new ItemOverlay(), in, out);
+    }
+
+    /**
+     * Create a game played on the given world, seeing the items of its
+     * rooms through "items". Games given the same SharedItems play in
+     * one shared world: what one player takes is gone for the others.
+     * @param world The world to play on.
+     * @param items The items of the rooms as this game sees them.
+     * @param in The source of the player's commands.
+     * @param out Where all of the game's output is written.
+     */
+    public Game(World world, RoomItems items, InputStream in, PrintStream out)
+    {
+        this.world = world;
+        this.out = out;
+        this.items = items;
+        currentRoom = world.getStartRoom();  // start game outside
+        setRandomSeed(ThreadLocalRandom.current().nextLong());
+        parser = new Parser(in, out);
+        inventory = new Inventory();
         health = 0;
     }
 
     /**
-     * Create all the rooms and link their exits together.
-     * Also creates all items and links them to rooms.
-     */
-    private void createRooms()
-    {
-        rooms = new ArrayList<>();
-        
-        Room outside, theater, pub, lab, office, cafeteria, water_closet,
-        janitor_closet, kitchen, hallway, parking_lot, gymnasium, 
-        auditorium, locker_room;
-        
-        Item apple, orange, banana;
-      
-        // create the rooms
-        outside = new Room("outside the main entrance of the university");
-        rooms.add(outside);
-        theater = new Room("in a lecture theater");
-        rooms.add(theater);
-        pub = new Room("in the campus pub");
-        rooms.add(pub);
-        lab = new Room("in a computing lab");
-        rooms.add(lab);
-        office = new Room("in the computing admin office");
-        rooms.add(office);
-        cafeteria = new Room("in the cafeteria");
-        rooms.add(cafeteria);
-        water_closet = new Room("in the water closet");
-        rooms.add(water_closet);
-        janitor_closet = new Room("in the janitor closet");
-        rooms.add(janitor_closet);
-        kitchen = new Room("in the kitchen");
-        rooms.add(kitchen);
-        parking_lot = new Room("in the parking lot");
-        rooms.add(parking_lot);
-        hallway = new Room("in the hallway");
-        rooms.add(hallway);
-        gymnasium = new Room("in the gymnasium");
-        rooms.add(gymnasium);
-        auditorium = new Room("in the auditorium");
-        rooms.add(auditorium);
-        locker_room = new Room("in the locker room");
-        rooms.add(locker_room);
-        locker = new Room("locked in a locker");
-        rooms.add(locker);
-        
-        apple = new Item("This is an apple. This can be eaten to improve your health", 1);
-        orange = new Item("This is an orange. This can be eaten to improve your health", 1);
-        banana = new Item("This is a banana. This can be eaten to improve your health", 1);
-        
-        // initialise room exits
-        outside.setExit("east", theater);
-        outside.setExit("south", lab);
-        outside.setExit("west", pub);
-        outside.setExit("north", parking_lot);
-        
-        parking_lot.setExit("south", outside);
-
-        theater.setExit("west", outside);
-
-        pub.setExit("east", outside);
-
-        lab.setExit("north", outside);
-        lab.setExit("east", office);
-        lab.setExit("west", cafeteria);
-        lab.setExit("south", hallway);
-        
-        hallway.setExit("north", lab);
-        hallway.setExit("west", water_closet);
-        hallway.setExit("south", gymnasium);
-        hallway.setExit("east", auditorium);
-
-        office.setExit("west", lab);
-        
-        cafeteria.setExit("west", kitchen);
-        cafeteria.setExit("south", water_closet);
-        cafeteria.setExit("east", lab);
-        cafeteria.setItem(orange);
-        cafeteria.setItem(banana);
-        
-        kitchen.setExit("east", cafeteria);
-        kitchen.setExit("south", janitor_closet);
-        
-        janitor_closet.setExit("north", kitchen);
-        janitor_closet.setExit("east", water_closet);
-        janitor_closet.setItem(apple);
-        
-        water_closet.setExit("west", janitor_closet);
-        water_closet.setExit("north", cafeteria);
-        water_closet.setExit("east", hallway);
-        
-        gymnasium.setExit("north", hallway);
-        gymnasium.setExit("east", locker_room);
-        
-        auditorium.setExit("west", hallway);
-        
-        locker_room.setExit("west", gymnasium);
-        locker_room.setExit("east", locker);
-
-        currentRoom = outside;  // start game outside
+     * Create a game that is driven from outside: the caller reads input
+     * itself and passes each command to processCommand. All output is
+     * written to "out".
+     * @param out Where all of the game's output is written.
+     */
+    public Game(PrintStream out)
+    {
+        this(InputStream.nullInputStream(), out);
     }
-    
+
+    /**
+     * @return The parser used by this game, so that input read elsewhere
+     * can be turned into commands with parseCommand.
+     */
+    public Parser getParser()
+    {
+        return parser;
+    }
+
     /**
      *  Main play routine.  Loops until end of play.
      */
@@ -162,20 +219,32 @@ public class Game
             Command command = parser.getCommand();
             finished = processCommand(command);
         }
-        System.out.println("Thank you for playing.  Good bye.");
+        lock.lock();
+        try {
+            out.println("Thank you for playing.  Good bye.");
+        }
+        finally {
+            lock.unlock();
+        }
     }
 
     /**
      * Print out the opening message for the player.
      */
-    private void printWelcome()
+    public void printWelcome()
     {
-        System.out.println();
-        System.out.println("Welcome to the World of Zuul!");
-        System.out.println("World of Zuul is a new, incredibly boring adventure game.");
-        System.out.println("Type '" + CommandWord.HELP + "' if you need help.");
-        System.out.println();
-        System.out.println(currentRoom.getLongDescription());
+        lock.lock();
+        try {
+            out.println();
+            out.println("Welcome to the World of Zuul!");
+            out.println("World of Zuul is a new, incredibly boring adventure game.");
+            out.println("Type '" + CommandWord.HELP + "' if you need help.");
+            out.println();
+            out.println(currentRoom.getLongDescription());
+        }
+        finally {
+            lock.unlock();
+        }
     }
 
     /**
@@ -183,15 +252,89 @@ public class Game
      * @param command The command to be processed.
      * @return true If the command ends the game, false otherwise.
      */
-    private boolean processCommand(Command command) 
+    public boolean processCommand(Command command) 
+    {
+        lock.lock();
+        try {
+            if(stats == null) {
+                return execute(command);
+            }
+            CommandWord word = command.getCommandWord();
+            long number = stats.count(word);
+            boolean wantToQuit;
+            if(CommandStats.measuresAllocation(number)) {
+                long allocated = stats.allocatedBytes();
+                wantToQuit = execute(command);
+                stats.recordAllocation(word, stats.allocatedBytes() - allocated);
+            }
+            else if(CommandStats.measuresTime(number)) {
+                long start = System.nanoTime();
+                wantToQuit = execute(command);
+                stats.recordTime(word, System.nanoTime() - start);
+            }
+            else {
+                wantToQuit = execute(command);
+            }
+            return wantToQuit;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Let time pass in the game: the player gets hungrier, food comes
+     * back to the rooms that respawn it, and a player locked in for long
+     * enough breaks out. In a shared world the food is not put back by
+     * each game but once for all of them, by the server.
+     * @param ticks The number of ticks that passed.
+     */
+    public void passTime(int ticks)
+    {
+        lock.lock();
+        try {
+            advance(ticks);
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Let time pass as passTime does, unless a command is being processed
+     * right now.
+     * @param ticks The number of ticks that passed.
+     * @return true if the time passed, false if the game was busy.
+     */
+    public boolean tryPassTime(int ticks)
+    {
+        if(!lock.tryLock()) {
+            return false;
+        }
+        try {
+            advance(ticks);
+            return true;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Execute a command while holding the lock.
+     */
+    private boolean execute(Command command)
     {
         boolean wantToQuit = false;
 
         CommandWord commandWord = command.getCommandWord();
+        if(journal != null && commandWord != CommandWord.UNKNOWN) {
+            journal.record(command);
+        }
 
         switch (commandWord) {
             case UNKNOWN:
-                System.out.println("I don't know what you mean...");
+                out.println("I don't know what you mean...");
                 break;
 
             case HELP:
@@ -221,6 +364,21 @@ public class Game
             case TRANSPORT:
                 transport(command);
                 break;
+
+            case DROP:
+                drop(command);
+                break;
+
+            case STATS:
+                printStats();
+                break;
+
+            case GOTO:
+                goTo(command);
+                break;
+        }
+        if(snapshot != null && ++sinceCheckpoint >= checkpointInterval) {
+            checkpoint();
         }
         return wantToQuit;
     }
@@ -234,10 +392,10 @@ public class Game
      */
     private void printHelp() 
     {
-        System.out.println("You are lost. You are alone. You wander");
-        System.out.println("around at the university.");
-        System.out.println();
-        System.out.println("Your command words are:");
+        out.println("You are lost. You are alone. You wander");
+        out.println("around at the university.");
+        out.println();
+        out.println("Your command words are:");
         parser.showCommands();
     }
 
@@ -249,7 +407,7 @@ public class Game
     {
         if(!command.hasSecondWord()) {
             // if there is no second word, we don't know where to go...
-            System.out.println("Go where?");
+            out.println("Go where?");
             return;
         }
 
@@ -259,21 +417,90 @@ public class Game
         Room nextRoom = currentRoom.getExit(direction);
 
         if (nextRoom == null) {
-            System.out.println("There is no door!");
+            out.println("There is no door!");
         }
         else {
             moveRoom(nextRoom);
         }
     }
+    /**
+     * "Goto" was entered. Walk the shortest way to the named room, going
+     * through exits only in the direction they lead, and enter it.
+     */
+    private void goTo(Command command)
+    {
+        if(!command.hasSecondWord()) {
+            out.println("Go to where?");
+            return;
+        }
+        Room target = world.findRoom(command.getSecondWord());
+        if(target == null) {
+            out.println("There is no room called " + command.getSecondWord() + ".");
+            return;
+        }
+        if(target == currentRoom) {
+            out.println("You are already there.");
+            return;
+        }
+        if(world.getGraph().isGenerated()) {
+            out.println("This world has no end, so there is no map of it.");
+            return;
+        }
+        int[] route = world.getRouteCache().route(currentRoom.getId(), target.getId());
+        if(route == null) {
+            out.println("You cannot get there from here.");
+            return;
+        }
+        out.println(describeRoute(route));
+        moveRoom(target);
+    }
+
+    /**
+     * @return The directions of a route from the current room, such as
+     * "You go north, east, east." Long routes only give their length.
+     */
+    private String describeRoute(int[] route)
+    {
+        if(route.length > MAX_DESCRIBED_ROUTE) {
+            return "You walk through " + route.length + " rooms.";
+        }
+        RoomGraph graph = world.getGraph();
+        StringBuilder text = new StringBuilder("You go");
+        int from = currentRoom.getId();
+        for(int to : route) {
+            for(int n = 0; n < graph.exitCount(from); n++) {
+                if(graph.exitTarget(from, n) == to) {
+                    text.append(from == currentRoom.getId() ? " " : ", ")
+                        .append(graph.exitDirection(from, n));
+                    break;
+                }
+            }
+            from = to;
+        }
+        return text.append('.').toString();
+    }
+
     /**
      * moves user from current room to next room.
      * @param nextRoom room user will go next.
      */
     private void moveRoom(Room nextRoom)
     {
+        previousRoom = currentRoom;
         currentRoom = nextRoom;
-        System.out.println(currentRoom.getLongDescription());
-        currentRoom.printItem();
+        lockedTicks = 0;
+        if(occupant != null) {
+            occupant.moveTo(nextRoom);
+        }
+        if(!items.isChanged(currentRoom) && out.charset() == StandardCharsets.UTF_8) {
+            // Unchanged rooms look the same to everyone: send the cached text.
+            byte[] description = currentRoom.getFullDescriptionBytes();
+            out.write(description, 0, description.length);
+        }
+        else {
+            out.println(currentRoom.getLongDescription());
+            items.printItems(currentRoom, out);
+        }
     }
 
     /** 
@@ -284,7 +511,7 @@ public class Game
     private boolean quit(Command command) 
     {
         if(command.hasSecondWord()) {
-            System.out.println("Quit what?");
+            out.println("Quit what?");
             return false;
         }
         else {
@@ -296,57 +523,428 @@ public class Game
      */
     private void look(Command command) 
     {
-        System.out.println(currentRoom.getLongDescription());
+        out.println(currentRoom.getLongDescription());
     }
     /** 
-     * "Transport" was entered. This sends user to random room.
+     * "Transport" was entered. This sends user to random room, drawn from
+     * the world's transport table.
      */
     private void transport(Command command) 
     {
-        Room room;
-        if(currentRoom == locker){
-            System.out.println("You cannot transport out of a locker.");
+        if(world.isNoEscape(currentRoom)){
+            out.println("You cannot transport out of a locker.");
             return;
         }
-        randomizer = new Random();
-        while(true){
-            room = rooms.get(randomizer.nextInt(rooms.size()));
-            if (room != currentRoom){
-                moveRoom(room);
-                return;
+        int id = world.getTransportTable().sample(randomizer, currentRoom.getId());
+        if(id < 0){
+            out.println("There is nowhere to transport to.");
+            return;
+        }
+        moveRoom(world.getGraph().getRoom(id));
+    }
+
+    /**
+     * Make the random choices of this game repeatable. Two games on the
+     * same world given the same seed and commands end in the same state.
+     * @param seed The seed for this game's random numbers.
+     */
+    public final void setRandomSeed(long seed)
+    {
+        this.seed = seed;
+        randomizer = new SplittableRandom(seed);
+        if(journal != null) {
+            journal.recordSeed(seed);
+        }
+    }
+
+    /**
+     * @return The seed this game's random numbers were last started from.
+     */
+    public long getRandomSeed()
+    {
+        return seed;
+    }
+
+    /**
+     * Record every command this game accepts from now on, and the seed of
+     * its random numbers, in a journal. Attach the journal before the
+     * first command so that replaying it rebuilds this game exactly.
+     * @param journal The journal to write to, or null to stop recording.
+     */
+    public void setJournal(CommandJournal journal)
+    {
+        this.journal = journal;
+        if(journal != null) {
+            journal.recordSeed(seed);
+        }
+    }
+
+    /**
+     * Count every command from now on, with how long it took or how
+     * much it allocated, in the given statistics.
+     * @param stats The statistics, often shared by many games, or null to
+     *              stop counting.
+     * @param shown true if the "stats" command may print them to the
+     *              player; they say how busy the server is, so a server
+     *              only shows them when told to.
+     */
+    public void setStats(CommandStats stats, boolean shown)
+    {
+        this.stats = stats;
+        statsShown = shown;
+    }
+
+    /**
+     * Queue what passing time prints, and write it to the output from a
+     * thread of the game's own, so that a thread letting time pass never
+     * waits for a client that does not read. A server calls this before
+     * its ticks start passing time in the game.
+     */
+    public void queueTimeOutput()
+    {
+        lock.lock();
+        try {
+            if(timeOutput == null) {
+                timeOutput = new QueuedOutput(out, lock);
             }
         }
+        finally {
+            lock.unlock();
+        }
     }
+
+    /**
+     * Let the other players of a shared world see this player arrive,
+     * leave and pick up or drop items, and show this player what they
+     * do. The player joins the events in the current room. Events are
+     * written between this game's commands, never inside the output of
+     * one.
+     * @param events The events of the shared world, or null to leave
+     *               them, as a player who quits must.
+     */
+    public void setRoomEvents(RoomEvents events)
+    {
+        if(occupant != null) {
+            occupant.leave();
+        }
+        occupant = events == null ? null : events.join(currentRoom, out, lock);
+    }
+
+    /**
+     * Save this game to a snapshot every few commands. Only the rooms and
+     * inventory entries changed since the previous checkpoint are saved,
+     * and the saving is done by the snapshot's Checkpointer threads.
+     * @param snapshot The snapshot to save to, or null to stop saving.
+     * @param interval The number of commands between checkpoints.
+     */
+    public void setSnapshot(GameSnapshot snapshot, int interval)
+    {
+        this.snapshot = snapshot;
+        checkpointInterval = interval;
+        sinceCheckpoint = 0;
+        if(snapshot != null) {
+            items.trackChanges();
+        }
+    }
+
+    /**
+     * Save the state of this game now, if a snapshot is attached. The
+     * state is copied here and written by another thread. The random
+     * numbers are given a new seed drawn from themselves, so that the
+     * seed saved is the one the game carries on with.
+     */
+    public void checkpoint()
+    {
+        if(snapshot == null) {
+            return;
+        }
+        sinceCheckpoint = 0;
+        setRandomSeed(randomizer.nextLong());
+        snapshot.offer(new GameSnapshot.Checkpoint(currentRoom.getId(), health, seed,
+                                                   inventory.toArray(),
+                                                   items.takeDirty()));
+    }
+
+    /**
+     * Put this game in a saved state.
+     * @param room The room the player is in.
+     * @param health The player's health.
+     * @param seed The seed the random numbers carry on from.
+     * @param inventory The items the player carries.
+     * @param rooms The items of every room the game had changed.
+     */
+    void restore(Room room, int health, long seed, List<Item> inventory,
+                 Map<Room, List<Item>> rooms)
+    {
+        currentRoom = room;
+        this.health = health;
+        setRandomSeed(seed);
+        this.inventory.clear();
+        for(Item item : inventory) {
+            this.inventory.add(item);
+            items.carry(item);
+        }
+        for(Map.Entry<Room, List<Item>> entry : rooms.entrySet()) {
+            items.replace(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * @return The world this game is played on.
+     */
+    public World getWorld()
+    {
+        return world;
+    }
+
+    /**
+     * @return The room the player is in.
+     */
+    public Room getCurrentRoom()
+    {
+        return currentRoom;
+    }
+
+    /**
+     * @return The items the player carries.
+     */
+    public Inventory getInventory()
+    {
+        return inventory;
+    }
+
+    /**
+     * Find where an item is in this game. A generated world is too large
+     * to index, so there only the items this game has moved are found.
+     * @param item An item of this game's world, or one the game created.
+     * @return The id of the room the item is in, RoomItems.CARRIED if
+     * the player carries it, or RoomItems.GONE if it was eaten. In a
+     * generated world an item that was never moved, or is gone, is
+     * RoomItems.NOT_MOVED.
+     */
+    public int locate(Item item)
+    {
+        int location = items.locate(item);
+        if(location == RoomItems.NOT_MOVED && !world.getGraph().isGenerated()) {
+            location = world.getItemIndex().homeOf(item);
+            if(location >= 0 && !isAtHome(item, world.getGraph().getRoom(location))) {
+                location = RoomItems.GONE;
+            }
+        }
+        return location;
+    }
+
+    /**
+     * @param item An item the RoomItems have no record of.
+     * @param home The room the item starts in.
+     * @return true if the item is still there. Gone items are forgotten,
+     * so an item that is not recorded has either never moved or is gone,
+     * and only a changed room can have lost it.
+     */
+    private boolean isAtHome(Item item, Room home)
+    {
+        return !items.isChanged(home) || items.contains(home, item);
+    }
+
+    /**
+     * Find every item of a name that still exists in this game. Only the
+     * rooms that start with such items and the items this game has moved
+     * are looked at; in a generated world, only the items it has moved.
+     * @param name The name of the items, in any case.
+     * @return Where each item is, as for locate.
+     */
+    public Map<Item, Integer> findItems(String name)
+    {
+        String key = name.toLowerCase(Locale.ROOT);
+        HashMap<Item, Integer> found = new HashMap<>(items.locateMoved(key));
+        if(world.getGraph().isGenerated()) {
+            return found;
+        }
+        for(int id : world.getItemIndex().roomsWith(key)) {
+            Room room = world.getGraph().getRoom(id);
+            for(Item item : room.getItems()) {
+                if(item.getName().equals(key) && items.locate(item) == RoomItems.NOT_MOVED
+                   && isAtHome(item, room)) {
+                    found.put(item, id);
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * @return The player's health.
+     */
+    public int getHealth()
+    {
+        return health;
+    }
+
     /** 
-     * "GET" was entered. This gets the item in the room.
+     * "GET" was entered. This gets the items in the room, or with a
+     * second word, such as "get apple", one item of that name.
      */
     private void get(Command command) 
     {
-        if(currentRoom.numberItem() == 0){
-            System.out.println("There are no items in this room.");
+        if(command.hasSecondWord()){
+            Item item = items.take(currentRoom, command.getSecondWord());
+            if(item == null){
+                out.println("There is no " + command.getSecondWord() + " in this room.");
+            }
+            else{
+                inventory.add(item);
+                out.println("You picked up the " + item.getName() + ".");
+                announce("picked up the " + item.getName() + ".");
+            }
+        }
+        else if(items.numberItem(currentRoom) == 0){
+            out.println("There are no items in this room.");
         }
         else{
-            inventory.addAll(currentRoom.getItems());
-            
-            currentRoom.removeItems();
-            System.out.println("You have gotten the items in this room.");
+            inventory.addAll(items.takeAll(currentRoom));
+            out.println("You have gotten the items in this room.");
+            announce("picked up everything in this room.");
         }
     }
     /** 
      * "Eat" was entered. This command allows the player to eat food and 
-     * satisfy his hunger. It increases health by 10 each time a food is
-     * eaten and removes the food from inventory.
+     * satisfy his hunger. Each food eaten increases health by as much as
+     * its type gives and removes the food from inventory. "eat apple"
+     * eats an apple; "eat" on its own eats whatever food comes first.
      */
     private void eat(Command command) 
     {
-        if (inventory.size() == 0){
-            System.out.println("You do not have any food.");
+        Item food;
+        if(command.hasSecondWord()){
+            food = inventory.find(command.getSecondWord());
+            if(food == null){
+                out.println("You do not have any " + command.getSecondWord() + ".");
+                return;
+            }
+            if(!food.isEdible()){
+                out.println("You cannot eat the " + food.getName() + ".");
+                return;
+            }
+            inventory.remove(command.getSecondWord());
+        }
+        else{
+            food = inventory.removeFirstEdible();
+            if(food == null){
+                out.println("You do not have any food.");
+                return;
+            }
+        }
+        items.consume(food);
+        out.println("Your health was " + health);
+        health += food.getType().getHealth();
+        out.println("Your health is now " + health);
+    }
+    /** 
+     * "Stats" was entered. This prints how many commands of each kind
+     * were given and how long they took, for the people running the game.
+     */
+    private void printStats()
+    {
+        if(stats == null) {
+            out.println("No statistics are being kept.");
+        }
+        else if(!statsShown) {
+            out.println("The statistics are not shown here.");
+        }
+        else {
+            stats.print(out);
+        }
+    }
+    /** 
+     * "Drop" was entered. This puts an item from the inventory down in
+     * the room the player is in, where it can be picked up again.
+     */
+    private void drop(Command command) 
+    {
+        if(!command.hasSecondWord()){
+            out.println("Drop what?");
+            return;
+        }
+        Item item = inventory.remove(command.getSecondWord());
+        if(item == null){
+            out.println("You do not have any " + command.getSecondWord() + ".");
+        }
+        else{
+            items.put(currentRoom, item);
+            out.println("You dropped the " + item.getName() + ".");
+            announce("dropped the " + item.getName() + ".");
+        }
+    }
+
+    /**
+     * Tell the other players in the room what this player did, if the
+     * world is shared.
+     * @param action What the player did.
+     */
+    private void announce(String action)
+    {
+        if(occupant != null) {
+            occupant.announce(action);
+        }
+    }
+
+    /**
+     * Apply the rules of passing time while holding the lock, printing
+     * into the queued output if there is one.
+     */
+    private void advance(int ticks)
+    {
+        if(timeOutput == null) {
+            applyTime(ticks);
+            return;
         }
-        else{ 
-            System.out.println("Your health was " + health);
-            health += 10;
-            System.out.println("Your health is now " + health);
-            inventory.remove(0);
+        PrintStream direct = out;
+        out = timeOutput.getCapture();
+        try {
+            applyTime(ticks);
+        }
+        finally {
+            out = direct;
+            timeOutput.send();
         }
     }
+
+    /**
+     * Apply the rules of passing time.
+     */
+    private void applyTime(int ticks)
+    {
+        if(journal != null) {
+            journal.recordTime(ticks);
+        }
+        hungerTicks += ticks;
+        while(hungerTicks >= HUNGER_TICKS) {
+            hungerTicks -= HUNGER_TICKS;
+            if(health > 0) {
+                health--;
+                if(health == 0) {
+                    out.println("You are hungry. Find something to eat.");
+                }
+            }
+        }
+        respawnTicks += ticks;
+        if(respawnTicks >= RESPAWN_TICKS) {
+            respawnTicks %= RESPAWN_TICKS;
+            if(!items.isShared()) {
+                for(int id : world.getRespawnRooms()) {
+                    Room room = world.getGraph().getRoom(id);
+                    if(items.restock(room) > 0 && room == currentRoom) {
+                        out.println("Fresh food has been put out.");
+                    }
+                }
+            }
+        }
+        if(world.isNoEscape(currentRoom)) {
+            lockedTicks += ticks;
+            if(lockedTicks >= ESCAPE_TICKS) {
+                out.println("After a long struggle you break out.");
+                moveRoom(previousRoom != null ? previousRoom : world.getStartRoom());
+            }
+        }
     }
+}
@@ -0,0 +1,316 @@
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.management.JMException;
+
+/**
+ * This class is part of the "World of Zuul" application.
+ * "World of Zuul" is a very simple, text based adventure game.
+ *
+ * A GameServer hosts many games in one process. Every TCP connection
+ * becomes its own session: a new Game whose Parser reads from the
+ * socket and whose output is written back to it. Each session runs on
+ * its own virtual thread, so a client that stops reading or typing only
+ * blocks its own thread and never holds up any other session.
+ *
+ * To start the server, run its main method with an optional port number
+ * and connect with a telnet-style client. If a directory is given after
+ * the port, every session records its commands in a CommandJournal in
+ * that directory, which JournalReplay can play back. Journals are not
+ * kept for a shared world: a journal only holds one player's commands,
+ * so replaying it alone cannot reproduce what the items were when the
+ * others changed them. With "-shared"
+ * before the port, all sessions play in one world: an item one player
+ * takes is gone for everyone, and what a player drops can be picked up
+ * by the others, and players see who else comes, goes and picks
+ * things up in their room.
+ *
+ * Time passes in every session, driven by one TickScheduler: players get
+ * hungry, food comes back to the cafeteria and the janitor closet, and a
+ * player locked in the locker breaks out after a while. In a shared world
+ * the food is put back once for everyone by a task of the world rather
+ * than by each session.
+ *
+ * The commands of all sessions are counted in one CommandStats, which is
+ * readable over JMX. Only with "-stats" as the first argument can the
+ * players print it with "stats" too.
+ *
+ * @author  Ryan Rutishauser
+ * @version 2026.10.18
+ */
+
+public class GameServer
+{
+    // The port used when none is given on the command line.
+    public static final int DEFAULT_PORT = 4242;
+    // A session with no input for this long is closed (milliseconds).
+    private static final int IDLE_TIMEOUT = 10 * 60 * 1000;
+
+    private int port;
+    private AtomicInteger activeSessions;
+    private Path journalDirectory;
+    private JournalWriter journalWriter;
+    private AtomicLong sessionCount;
+    private SharedItems sharedItems;
+    private RoomEvents roomEvents;
+    private TickScheduler ticks;
+    private CommandStats stats;
+    private boolean statsShown;
+    // Ticks since the shared world's food was last put back; only used
+    // by the scheduler's world clock.
+    private int respawnTicks;
+
+    /**
+     * Main method so that the server can be run outside of Bluej.
+     * @param args An optional "-stats", then an optional "-shared",
+     *             optionally followed by "-npcs" and a number of
+     *             characters to put in the shared world, then an optional
+     *             port number to listen on, then an optional directory to
+     *             write session journals to.
+     */
+    public static void main(String[] args) throws IOException
+    {
+        int next = 0;
+        boolean showStats = args.length > next && args[next].equals("-stats");
+        if(showStats) {
+            next++;
+        }
+        boolean shared = args.length > next && args[next].equals("-shared");
+        int npcs = 0;
+        if(shared) {
+            next++;
+            if(args.length > next + 1 && args[next].equals("-npcs")) {
+                npcs = Integer.parseInt(args[next + 1]);
+                next += 2;
+            }
+        }
+        int port = DEFAULT_PORT;
+        if(args.length > next) {
+            port = Integer.parseInt(args[next]);
+        }
+        GameServer server = new GameServer(port);
+        if(showStats) {
+            server.showStats();
+        }
+        if(shared) {
+            server.shareWorld();
+        }
+        if(npcs > 0) {
+            server.addCharacters(npcs);
+        }
+        if(args.length > next + 1) {
+            if(shared) {
+                System.err.println("Journals cannot be kept for a shared world.");
+                return;
+            }
+            server.recordJournals(Paths.get(args[next + 1]));
+        }
+        server.serve();
+    }
+
+    /**
+     * Create a server that will listen on the given port.
+     * @param port The TCP port to accept players on.
+     */
+    public GameServer(int port)
+    {
+        this.port = port;
+        activeSessions = new AtomicInteger();
+        sessionCount = new AtomicLong();
+        ticks = new TickScheduler(Runtime.getRuntime().availableProcessors());
+        stats = new CommandStats();
+        try {
+            stats.registerMBeans();
+        }
+        catch(JMException e) {
+            System.err.println("Command statistics are not available over JMX: " + e);
+        }
+    }
+
+    /**
+     * Record the commands of every session started from now on in its
+     * own journal file in the given directory.
+     * @param directory The directory for the journals; it is created if
+     *                  it does not exist.
+     * @throws IllegalStateException If the world is shared.
+     */
+    public void recordJournals(Path directory) throws IOException
+    {
+        if(sharedItems != null) {
+            throw new IllegalStateException("Journals cannot be kept for a shared world");
+        }
+        Files.createDirectories(directory);
+        journalDirectory = directory;
+        if(journalWriter == null) {
+            journalWriter = new JournalWriter();
+        }
+    }
+
+    /**
+     * Let the players of every session started from now on print the
+     * command statistics with "stats". They are not shown by default,
+     * since they tell anyone how busy the server is.
+     */
+    public void showStats()
+    {
+        statsShown = true;
+    }
+
+    /**
+     * Let every session started from now on play in the same world, so
+     * that the players see each other's changes to the items of its rooms
+     * and what the others in their room do.
+     * @throws IllegalStateException If journals are being recorded.
+     */
+    public void shareWorld()
+    {
+        if(journalDirectory != null) {
+            throw new IllegalStateException("Journals cannot be kept for a shared world");
+        }
+        if(sharedItems == null) {
+            sharedItems = new SharedItems(World.campus());
+            roomEvents = new RoomEvents(World.campus());
+            ticks.everyTick(this::respawnSharedFood);
+        }
+    }
+
+    /**
+     * Put the food of the shared world back once every
+     * Game.RESPAWN_TICKS ticks, telling the players in each room that
+     * gets some. The sessions of a shared world leave this to the server,
+     * since each of them doing it would bring the food back once per
+     * player.
+     */
+    private void respawnSharedFood()
+    {
+        if(++respawnTicks < Game.RESPAWN_TICKS) {
+            return;
+        }
+        respawnTicks = 0;
+        World world = World.campus();
+        for(int id : world.getRespawnRooms()) {
+            Room room = world.getGraph().getRoom(id);
+            if(sharedItems.restock(room) > 0) {
+                roomEvents.announce(room, "Fresh food has been put out.");
+            }
+        }
+    }
+
+    /**
+     * Put non-player characters in the shared world, who wander it and
+     * eat its food, taking one step every tick.
+     * @param count The number of characters.
+     */
+    public void addCharacters(int count)
+    {
+        shareWorld();
+        NpcSimulation npcs = new NpcSimulation(World.campus(), sharedItems, count,
+                                               System.nanoTime(), ForkJoinPool.commonPool());
+        ticks.everyTick(npcs::step);
+    }
+
+    /**
+     * Accept connections until the process is stopped, starting a new
+     * session on a virtual thread for each one.
+     */
+    public void serve() throws IOException
+    {
+        ticks.start();
+        try(ServerSocket server = new ServerSocket(port);
+            ExecutorService sessions = Executors.newVirtualThreadPerTaskExecutor()) {
+            System.out.println("Zuul server listening on port " + port);
+            while(true) {
+                Socket socket = server.accept();
+                sessions.submit(() -> runSession(socket));
+            }
+        }
+    }
+
+    /**
+     * @return The number of sessions currently being played.
+     */
+    public int getActiveSessions()
+    {
+        return activeSessions.get();
+    }
+
+    /**
+     * Play one game over the given socket and close it afterwards.
+     * @param socket The connection of the player.
+     */
+    private void runSession(Socket socket)
+    {
+        activeSessions.incrementAndGet();
+        CommandJournal journal = null;
+        try(socket) {
+            socket.setSoTimeout(IDLE_TIMEOUT);
+            socket.setTcpNoDelay(true);
+            PrintStream out = new PrintStream(
+                new BufferedOutputStream(socket.getOutputStream()), true,
+                StandardCharsets.UTF_8);
+            Game game;
+            if(sharedItems != null) {
+                game = new Game(World.campus(), sharedItems, socket.getInputStream(), out);
+                game.setRoomEvents(roomEvents);
+            }
+            else {
+                game = new Game(socket.getInputStream(), out);
+            }
+            game.setStats(stats, statsShown);
+            if(journalDirectory != null) {
+                String name = "session-" + System.currentTimeMillis() + "-"
+                    + sessionCount.incrementAndGet() + ".jnl";
+                journal = journalWriter.open(journalDirectory.resolve(name), game.getWorld());
+                game.setJournal(journal);
+            }
+            // Ticks only print into memory; this session's own thread
+            // writes it to the socket.
+            game.queueTimeOutput();
+            ticks.add(game);
+            try {
+                game.play();
+            }
+            finally {
+                // A player who is gone must leave the room events.
+                ticks.remove(game);
+                game.setRoomEvents(null);
+            }
+            out.flush();
+        }
+        catch(IOException e) {
+            // The client went away; nothing else to clean up.
+        }
+        finally {
+            closeJournal(journal);
+            activeSessions.decrementAndGet();
+        }
+    }
+
+    /**
+     * Write the rest of a session's journal and close it.
+     * @param journal The journal, or null if the session had none.
+     */
+    private void closeJournal(CommandJournal journal)
+    {
+        if(journal == null) {
+            return;
+        }
+        try {
+            journal.close();
+        }
+        catch(IOException e) {
+            System.err.println("Journal " + journal.getFile() + " not closed: " + e);
+        }
+    }
+}
@@ -0,0 +1,574 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32C;
+
+/**
+ * This class is part of the "World of Zuul" application.
+ * "World of Zuul" is a very simple, text based adventure game.
+ *
+ * A GameSnapshot saves the state of one game to a file so that it can be
+ * restored later: the current room, health, the seed of the game's
+ * random numbers, the inventory and the items of every room the game
+ * has changed. The file starts with a header and holds a list of
+ * checkpoint records:
+ *
+ *     header   int magic, byte version, int number of rooms of the world
+ *     record   byte FULL or DELTA, int length, int CRC32C, then the body
+ *
+ * A FULL record holds the whole state. A DELTA record holds only the
+ * rooms changed since the previous checkpoint, and the inventory as runs
+ * copied from the previous inventory plus the items that are new. After
+ * COMPACT_AFTER deltas the file is rewritten as a single FULL record,
+ * into a new file that then replaces the old one, so a crash never
+ * leaves a half-written save behind. A record cut off or damaged by a
+ * crash is ignored when the file is restored.
+ *
+ * A game only copies references on its own thread when it checkpoints.
+ * Working out the delta, encoding it and writing it is done by the
+ * threads of a Checkpointer. Checkpoints that arrive while an earlier
+ * one is still being written are merged into one.
+ *
+ * @author  Ryan Rutishauser
+ * @version 2026.10.18
+ */
+
+public class GameSnapshot
+{
+    // The first bytes of every snapshot file: "ZSNP".
+    public static final int MAGIC = 0x5A534E50;
+    public static final int VERSION = 2;
+    // The number of deltas after which the file is compacted.
+    public static final int COMPACT_AFTER = 64;
+
+    private static final int HEADER_SIZE = 9;
+    private static final int RECORD_HEADER_SIZE = 9;
+    private static final byte FULL = 1;
+    private static final byte DELTA = 2;
+    // Inventory entries of a delta; END closes the list.
+    private static final byte END = 0;
+    private static final byte COPY = 1;
+    private static final byte NEW_ITEM = 2;
+
+    private final Path file;
+    private final int roomCount;
+    private final Checkpointer checkpointer;
+    // The checkpoint waiting to be written, and whether a thread will.
+    private Checkpoint pending;
+    private boolean scheduled;
+    private IOException failure;
+    // What the file holds; only used by the thread writing the file.
+    private FileChannel channel;
+    private HashMap<Integer, Item[]> savedRooms;
+    private Item[] savedInventory;
+    private int deltas;
+    private ByteArrayOutputStream bytes;
+    private DataOutputStream data;
+
+    /**
+     * Create a snapshot that saves to the given file. The file is only
+     * created, or replaced, by the first checkpoint. Snapshots are
+     * opened through Checkpointer.open.
+     * @param file The file to save to.
+     * @param world The world the game is played on.
+     * @param checkpointer The threads that write the file.
+     */
+    GameSnapshot(Path file, World world, Checkpointer checkpointer)
+    {
+        this.file = file;
+        this.checkpointer = checkpointer;
+        roomCount = world.getGraph().size();
+        savedRooms = new HashMap<>();
+        savedInventory = new Item[0];
+        bytes = new ByteArrayOutputStream(1024);
+        data = new DataOutputStream(bytes);
+    }
+
+    /**
+     * @return The file this snapshot is saved to.
+     */
+    public Path getFile()
+    {
+        return file;
+    }
+
+    /**
+     * Restore a saved game. Call this on a new game, before a snapshot
+     * is attached to it.
+     * @param file The snapshot file.
+     * @param game The game to restore into; it must be played on the
+     *             world the snapshot was saved from.
+     * @return The number of checkpoints read from the file.
+     * @throws IOException If the file cannot be read, is not a snapshot,
+     *         belongs to another world or holds no complete checkpoint.
+     */
+    public static int restore(Path file, Game game) throws IOException
+    {
+        ByteBuffer in = ByteBuffer.wrap(Files.readAllBytes(file));
+        if(in.remaining() < HEADER_SIZE || in.getInt() != MAGIC) {
+            throw new IOException(file + " is not a saved game");
+        }
+        int version = in.get() & 0xFF;
+        if(version != VERSION) {
+            throw new IOException("Unknown snapshot version " + version);
+        }
+        RoomGraph graph = game.getWorld().getGraph();
+        int rooms = in.getInt();
+        if(rooms != graph.size()) {
+            throw new IOException("The game was saved on a world of " + rooms
+                                  + " rooms, not " + graph.size());
+        }
+
+        State state = null;
+        int records = 0;
+        CRC32C crc = new CRC32C();
+        while(in.remaining() >= RECORD_HEADER_SIZE) {
+            int start = in.position();
+            byte type = in.get();
+            int length = in.getInt();
+            int checksum = in.getInt();
+            if(length < 0 || length > in.remaining()) {
+                in.position(start);
+                break;
+            }
+            crc.reset();
+            crc.update(in.array(), in.position(), length);
+            if((int) crc.getValue() != checksum || (type != FULL && state == null)) {
+                in.position(start);
+                break;
+            }
+            DataInputStream body = new DataInputStream(
+                new ByteArrayInputStream(in.array(), in.position(), length));
+            state = readState(body, type == FULL ? null : state, graph.size());
+            in.position(in.position() + length);
+            records++;
+        }
+        if(state == null) {
+            throw new IOException(file + " holds no complete checkpoint");
+        }
+
+        HashMap<Room, List<Item>> changed = new HashMap<>();
+        for(Map.Entry<Integer, List<Item>> entry : state.rooms.entrySet()) {
+            changed.put(graph.getRoom(entry.getKey()), entry.getValue());
+        }
+        game.restore(graph.getRoom(state.room), state.health, state.seed,
+                     state.inventory, changed);
+        return records;
+    }
+
+    /**
+     * Hand a checkpoint to the writing threads. If an earlier checkpoint
+     * has not been written yet the two are merged.
+     * @param checkpoint The state captured by the game.
+     */
+    void offer(Checkpoint checkpoint)
+    {
+        synchronized(this) {
+            if(pending == null) {
+                pending = checkpoint;
+            }
+            else {
+                pending.merge(checkpoint);
+            }
+            if(scheduled) {
+                return;
+            }
+            scheduled = true;
+        }
+        checkpointer.submit(this::writePending);
+    }
+
+    /**
+     * Wait until every checkpoint offered so far has been written.
+     * @throws IOException If writing the file failed.
+     */
+    public void flush() throws IOException
+    {
+        synchronized(this) {
+            while(scheduled) {
+                try {
+                    wait();
+                }
+                catch(InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while saving " + file);
+                }
+            }
+            if(failure != null) {
+                throw failure;
+            }
+        }
+    }
+
+    /**
+     * Write every checkpoint offered so far and close the file.
+     * @throws IOException If writing the file failed.
+     */
+    public void close() throws IOException
+    {
+        flush();
+        synchronized(this) {
+            if(channel != null) {
+                channel.close();
+                channel = null;
+            }
+        }
+    }
+
+    /**
+     * Write the waiting checkpoints, one merged checkpoint at a time.
+     * Runs on a Checkpointer thread.
+     */
+    private void writePending()
+    {
+        while(true) {
+            Checkpoint checkpoint;
+            synchronized(this) {
+                checkpoint = pending;
+                pending = null;
+                if(checkpoint == null || failure != null) {
+                    scheduled = false;
+                    notifyAll();
+                    return;
+                }
+            }
+            try {
+                write(checkpoint);
+            }
+            catch(IOException e) {
+                synchronized(this) {
+                    failure = e;
+                }
+                System.err.println("Saving " + file + " failed: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Add one checkpoint to the file, as a delta or, when the file is new
+     * or has collected enough deltas, as a compacted full snapshot.
+     */
+    private void write(Checkpoint checkpoint) throws IOException
+    {
+        if(channel == null || deltas >= COMPACT_AFTER) {
+            save(checkpoint);
+            compact(checkpoint);
+            return;
+        }
+        bytes.reset();
+        writeHead(checkpoint);
+        writeRooms(checkpoint.rooms);
+        writeInventoryChanges(checkpoint.inventory);
+        save(checkpoint);
+        append(DELTA, channel);
+        deltas++;
+    }
+
+    /**
+     * Rewrite the whole file as a single full record, which replaces the
+     * old file only once it is complete.
+     */
+    private void compact(Checkpoint checkpoint) throws IOException
+    {
+        bytes.reset();
+        writeHead(checkpoint);
+        data.writeInt(savedRooms.size());
+        for(Map.Entry<Integer, Item[]> entry : savedRooms.entrySet()) {
+            data.writeInt(entry.getKey());
+            writeItems(entry.getValue());
+        }
+        writeItems(savedInventory);
+
+        if(channel != null) {
+            channel.close();
+            channel = null;
+        }
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try(FileChannel out = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                                               StandardOpenOption.TRUNCATE_EXISTING,
+                                               StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).put((byte) VERSION).putInt(roomCount).flip();
+            writeFully(out, header);
+            append(FULL, out);
+            out.force(false);
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING,
+                   StandardCopyOption.ATOMIC_MOVE);
+        channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        deltas = 0;
+    }
+
+    /**
+     * Write the encoded body as a record of the given type.
+     */
+    private void append(byte type, FileChannel out) throws IOException
+    {
+        data.flush();
+        CRC32C crc = new CRC32C();
+        byte[] body = bytes.toByteArray();
+        crc.update(body, 0, body.length);
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_SIZE + body.length);
+        record.put(type).putInt(body.length).putInt((int) crc.getValue()).put(body).flip();
+        writeFully(out, record);
+        if(checkpointer.isDurable() && out == channel) {
+            channel.force(false);
+        }
+    }
+
+    /**
+     * Remember the state of a checkpoint as what the file holds.
+     */
+    private void save(Checkpoint checkpoint)
+    {
+        for(Map.Entry<Room, Item[]> entry : checkpoint.rooms.entrySet()) {
+            savedRooms.put(entry.getKey().getId(), entry.getValue());
+        }
+        savedInventory = checkpoint.inventory;
+    }
+
+    /**
+     * Encode the room, health and seed of a checkpoint.
+     */
+    private void writeHead(Checkpoint checkpoint) throws IOException
+    {
+        data.writeInt(checkpoint.room);
+        data.writeInt(checkpoint.health);
+        data.writeLong(checkpoint.seed);
+    }
+
+    /**
+     * Encode the items of the rooms changed since the last checkpoint.
+     */
+    private void writeRooms(Map<Room, Item[]> rooms) throws IOException
+    {
+        data.writeInt(rooms.size());
+        for(Map.Entry<Room, Item[]> entry : rooms.entrySet()) {
+            data.writeInt(entry.getKey().getId());
+            writeItems(entry.getValue());
+        }
+    }
+
+    /**
+     * Encode the new inventory against the saved one: runs of entries
+     * that were already in the saved inventory are written as their
+     * position and length, only new entries are written in full.
+     */
+    private void writeInventoryChanges(Item[] inventory) throws IOException
+    {
+        IdentityHashMap<Item, Integer> saved = new IdentityHashMap<>();
+        for(int i = 0; i < savedInventory.length; i++) {
+            saved.put(savedInventory[i], i);
+        }
+        int runStart = -1;
+        int runLength = 0;
+        for(Item item : inventory) {
+            Integer at = saved.get(item);
+            if(at != null && runLength > 0 && at == runStart + runLength) {
+                runLength++;
+                continue;
+            }
+            if(runLength > 0) {
+                data.writeByte(COPY);
+                data.writeInt(runStart);
+                data.writeInt(runLength);
+                runLength = 0;
+            }
+            if(at != null) {
+                runStart = at;
+                runLength = 1;
+            }
+            else {
+                data.writeByte(NEW_ITEM);
+                writeItem(item);
+            }
+        }
+        if(runLength > 0) {
+            data.writeByte(COPY);
+            data.writeInt(runStart);
+            data.writeInt(runLength);
+        }
+        data.writeByte(END);
+    }
+
+    /**
+     * Encode a list of items as its length and each item.
+     */
+    private void writeItems(Item[] items) throws IOException
+    {
+        data.writeInt(items.length);
+        for(Item item : items) {
+            writeItem(item);
+        }
+    }
+
+    /**
+     * Encode one item: its description, weight and food value.
+     */
+    private void writeItem(Item item) throws IOException
+    {
+        data.writeUTF(item.getDescription());
+        data.writeInt(item.getWeight());
+        data.writeBoolean(item.isEdible());
+        data.writeInt(item.getType().getHealth());
+    }
+
+    /**
+     * Decode one record into the state it leaves the game in.
+     * @param in The body of the record.
+     * @param previous The state before a DELTA record, or null for FULL.
+     * @param rooms The number of rooms of the world.
+     */
+    private static State readState(DataInputStream in, State previous, int rooms)
+        throws IOException
+    {
+        State state = new State();
+        state.room = checkRoom(in.readInt(), rooms);
+        state.health = in.readInt();
+        state.seed = in.readLong();
+        state.rooms = previous == null ? new HashMap<>() : previous.rooms;
+        int changed = in.readInt();
+        for(int i = 0; i < changed; i++) {
+            int id = checkRoom(in.readInt(), rooms);
+            state.rooms.put(id, readItems(in));
+        }
+        if(previous == null) {
+            state.inventory = readItems(in);
+            return state;
+        }
+        state.inventory = new ArrayList<>();
+        byte entry;
+        while((entry = in.readByte()) != END) {
+            if(entry == COPY) {
+                int start = in.readInt();
+                int length = in.readInt();
+                if(start < 0 || length < 0 || start + length > previous.inventory.size()) {
+                    throw new EOFException("Bad inventory run");
+                }
+                state.inventory.addAll(previous.inventory.subList(start, start + length));
+            }
+            else {
+                state.inventory.add(readItem(in));
+            }
+        }
+        return state;
+    }
+
+    /**
+     * Decode a list of items.
+     */
+    private static ArrayList<Item> readItems(DataInputStream in) throws IOException
+    {
+        int count = in.readInt();
+        ArrayList<Item> items = new ArrayList<>(Math.min(count, 1024));
+        for(int i = 0; i < count; i++) {
+            items.add(readItem(in));
+        }
+        return items;
+    }
+
+    /**
+     * Decode one item.
+     */
+    private static Item readItem(DataInputStream in) throws IOException
+    {
+        String description = in.readUTF();
+        int weight = in.readInt();
+        boolean edible = in.readBoolean();
+        return new Item(ItemType.of(description, weight, edible, in.readInt()));
+    }
+
+    /**
+     * @return The room id, if it belongs to the world.
+     */
+    private static int checkRoom(int id, int rooms) throws IOException
+    {
+        if(id < 0 || id >= rooms) {
+            throw new IOException("Room " + id + " is not in the world");
+        }
+        return id;
+    }
+
+    /**
+     * Write all of a buffer to a channel.
+     */
+    private static void writeFully(FileChannel out, ByteBuffer buffer) throws IOException
+    {
+        while(buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+    }
+
+    /**
+     * The state of a game captured on the game's own thread: only values
+     * and copies of lists, so the game can carry on at once.
+     */
+    static class Checkpoint
+    {
+        private int room;
+        private int health;
+        private long seed;
+        private Item[] inventory;
+        private Map<Room, Item[]> rooms;
+
+        /**
+         * @param room The id of the current room.
+         * @param health The player's health.
+         * @param seed The seed the game's random numbers continue from.
+         * @param inventory A copy of the inventory.
+         * @param rooms Copies of the items of the rooms changed since the
+         *              last checkpoint.
+         */
+        Checkpoint(int room, int health, long seed, Item[] inventory, Map<Room, Item[]> rooms)
+        {
+            this.room = room;
+            this.health = health;
+            this.seed = seed;
+            this.inventory = inventory;
+            this.rooms = rooms;
+        }
+
+        /**
+         * Take in a newer checkpoint that was made before this one could
+         * be written.
+         */
+        void merge(Checkpoint newer)
+        {
+            room = newer.room;
+            health = newer.health;
+            seed = newer.seed;
+            inventory = newer.inventory;
+            if(!newer.rooms.isEmpty()) {
+                HashMap<Room, Item[]> merged = new HashMap<>(rooms);
+                merged.putAll(newer.rooms);
+                rooms = merged;
+            }
+        }
+    }
+
+    /**
+     * The state read back from a snapshot file.
+     */
+    private static class State
+    {
+        private int room;
+        private int health;
+        private long seed;
+        private HashMap<Integer, List<Item>> rooms;
+        private List<Item> inventory;
+    }
+}
@@ -0,0 +1,215 @@
+import java.util.BitSet;
+
+/**
+ * This class is part of the "World of Zuul" application.
+ * "World of Zuul" is a very simple, text based adventure game.
+ *
+ * A GeneratedWorld is a world with no end: a grid of WIDTH by HEIGHT
+ * rooms, over two billion, whose edges wrap around. Nothing of it is
+ * stored. Whether two neighbouring rooms are joined, what a room is
+ * called and which items it starts with all follow from the world's
+ * seed and the room's coordinates, so a room is made the first time a
+ * player walks into it and can be made again, exactly the same, after
+ * it has been dropped.
+ *
+ * Its rooms live in the graph's RoomCache: a fixed number of recently
+ * used rooms, plus the rooms a game still uses, such as rooms whose items
+ * a player has changed. Exploring it therefore needs about the same heap
+ * after a million rooms as after a thousand.
+ *
+ * Run the main method to walk through it and report how many rooms were
+ * made, how many are held and how fast exits are followed, for example
+ * "java GeneratedWorld 10000000". "java Game -generated 42" plays in the
+ * world of seed 42.
+ *
+ * @author  Ryan Rutishauser
+ * @version 2026.10.18
+ */
+
+public class GeneratedWorld implements RoomGraph.ExitGenerator, RoomGraph.RoomFactory
+{
+    public static final int WIDTH = 1 << 16;
+    public static final int HEIGHT = (1 << 15) - 1;
+    // Rooms the cache keeps when none is given.
+    public static final int DEFAULT_CACHE = 1 << 16;
+    // Percentage of neighbouring rooms that are joined.
+    private static final int JOINED = 70;
+    // Percentages of rooms that start with an apple, and with a pebble.
+    private static final int APPLES = 8;
+    private static final int PEBBLES = 5;
+    private static final String[] ADJECTIVES = {
+        "a dusty", "a narrow", "a damp", "a bright", "a crumbling", "a quiet",
+        "an echoing", "a cold", "a cluttered", "a flooded", "a dim", "a vast",
+    };
+    private static final String[] PLACES = {
+        "corridor", "storeroom", "lecture hall", "stairwell", "basement", "office",
+        "courtyard", "library", "workshop", "tunnel", "greenhouse", "attic",
+    };
+    private static final ItemType APPLE = ItemType.of("This is an apple. This can be eaten", 1,
+                                                      true, ItemType.FOOD_HEALTH);
+    private static final ItemType PEBBLE = ItemType.of("This is a pebble", 1);
+
+    private final long seed;
+
+    /**
+     * Main method so that exploring can be measured outside of Bluej.
+     * @param args An optional number of steps, then an optional cache size.
+     */
+    public static void main(String[] args)
+    {
+        int steps = args.length > 0 ? Integer.parseInt(args[0]) : 10_000_000;
+        int capacity = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_CACHE;
+        World world = create(42, capacity);
+        RoomCache cache = world.getGraph().getCache();
+        Direction[] directions = Direction.values();
+        Room room = world.getStartRoom();
+        long random = 42;
+        long start = System.nanoTime();
+        for(int i = 0; i < steps; i++) {
+            random = random * 6364136223846793005L + 1442695040888963407L;
+            Room next = room.getExit(directions[(int) (random >>> 62)]);
+            if(next != null) {
+                room = next;
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.gc();
+        Runtime runtime = Runtime.getRuntime();
+        System.out.printf("Walked %,d steps: %,d rooms made, %,d held, cache of %,d%n",
+                          steps, cache.getCreatedCount(), cache.getHeldCount(),
+                          cache.getCapacity());
+        System.out.printf("%.0f ns per step, heap used %d MB%n", seconds * 1e9 / steps,
+                          (runtime.totalMemory() - runtime.freeMemory()) >> 20);
+
+        // Pace between two rooms, which stay in the cache.
+        Room hot = world.getStartRoom();
+        Direction there = hot.getGraph().exitDirection(hot.getId(), 0);
+        Direction back = opposite(there);
+        long sink = 0;
+        start = System.nanoTime();
+        for(int i = 0; i < steps; i++) {
+            hot = hot.getExit((i & 1) == 0 ? there : back);
+            sink += hot.getId();
+        }
+        System.out.printf("%.1f ns per step between two hot rooms (%d)%n",
+                          (System.nanoTime() - start) / (double) steps, sink & 1);
+    }
+
+    /**
+     * Create a generated world.
+     * @param seed The seed the whole world follows from.
+     * @param capacity The number of rooms the cache keeps.
+     * @return The world, starting near its middle.
+     */
+    public static World create(long seed, int capacity)
+    {
+        GeneratedWorld generator = new GeneratedWorld(seed);
+        RoomGraph graph = RoomGraph.generated(WIDTH * HEIGHT, generator, generator, capacity);
+        int start = (HEIGHT / 2) * WIDTH + WIDTH / 2;
+        while(Integer.bitCount(generator.exitMask(start)) < 2) {
+            start++;
+        }
+        return new World(graph, graph.getRoom(start), new BitSet());
+    }
+
+    /**
+     * Create the generator of the world with the given seed.
+     * @param seed The seed.
+     */
+    public GeneratedWorld(long seed)
+    {
+        this.seed = seed;
+    }
+
+    /**
+     * A room is joined to its east and south neighbours by chance, and
+     * through theirs to its west and north ones, so every exit has an
+     * exit back.
+     */
+    public int exitMask(int id)
+    {
+        int x = id % WIDTH;
+        int y = id / WIDTH;
+        int mask = 0;
+        if(joined(id, 0)) {
+            mask |= 1 << Direction.EAST.ordinal();
+        }
+        if(joined(id, 1)) {
+            mask |= 1 << Direction.SOUTH.ordinal();
+        }
+        if(joined(y * WIDTH + (x + WIDTH - 1) % WIDTH, 0)) {
+            mask |= 1 << Direction.WEST.ordinal();
+        }
+        if(joined((y + HEIGHT - 1) % HEIGHT * WIDTH + x, 1)) {
+            mask |= 1 << Direction.NORTH.ordinal();
+        }
+        return mask;
+    }
+
+    /**
+     * The neighbour in a direction, wrapping around at the edges.
+     */
+    public int exitTarget(int id, Direction direction)
+    {
+        int x = id % WIDTH;
+        int y = id / WIDTH;
+        switch(direction) {
+            case EAST:
+                return y * WIDTH + (x + 1) % WIDTH;
+            case WEST:
+                return y * WIDTH + (x + WIDTH - 1) % WIDTH;
+            case SOUTH:
+                return (y + 1) % HEIGHT * WIDTH + x;
+            case NORTH:
+                return (y + HEIGHT - 1) % HEIGHT * WIDTH + x;
+            default:
+                return -1;
+        }
+    }
+
+    /**
+     * Make a room, named and stocked by chance.
+     */
+    public Room createRoom(RoomGraph graph, int id)
+    {
+        long random = mix(id, 2);
+        Room room = new Room("in " + ADJECTIVES[(int) ((random >>> 8) % ADJECTIVES.length)]
+                             + " " + PLACES[(int) ((random >>> 24) % PLACES.length)], graph, id);
+        int chance = (int) ((random >>> 40) % 100);
+        if(chance < APPLES) {
+            room.setItem(new Item(APPLE));
+        }
+        else if(chance < APPLES + PEBBLES) {
+            room.setItem(new Item(PEBBLE));
+        }
+        return room;
+    }
+
+    /**
+     * @return true if room "id" is joined to its east (side 0) or south
+     * (side 1) neighbour.
+     */
+    private boolean joined(int id, int side)
+    {
+        return (mix(id, side) >>> 1) % 100 < JOINED;
+    }
+
+    /**
+     * @return A well mixed random number for one question about a room.
+     */
+    private long mix(int id, int question)
+    {
+        long z = seed + (id * 4L + question) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * @return The direction leading back.
+     */
+    private static Direction opposite(Direction direction)
+    {
+        return Direction.fromOrdinal(direction.ordinal() ^ 2);
+    }
+}
@@ -0,0 +1,432 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * This class is part of the "World of Zuul" application.
+ * "World of Zuul" is a very simple, text based adventure game.
+ *
+ * A GraphAnalysis finds out which rooms of a world a player can get to
+ * and which ones a player can get back out of:
+ *
+ *     - the rooms that can be reached from the start room,
+ *     - the rooms from which the start room can be reached again,
+ *     - the strongly connected components of the room graph, groups of
+ *       rooms that can all be reached from each other, and
+ *     - the traps: components with no exit out of them, other than the
+ *       start room's own, such as the locker.
+ *
+ * A room that cannot get back to the start room is never a transport
+ * destination: every TransportTable attached to the analysis has such
+ * rooms excluded, and is kept up to date as exits change. WorldLoader
+ * warns about unreachable rooms and unmarked traps.
+ *
+ * All passes over the graph are iterative and take time linear in the
+ * rooms and exits, so they work on worlds of millions of rooms. When an
+ * exit is added, only the rooms it newly connects are visited. When an
+ * exit is removed in a way that may cut a path to or from the start room,
+ * the reachable rooms are worked out again. The components are only
+ * worked out again when they are next asked for.
+ *
+ * @author  Ryan Rutishauser
+ * @version 2026.10.18
+ */
+
+public class GraphAnalysis implements RoomGraph.ExitListener
+{
+    private final RoomGraph graph;
+    private final int start;
+    private final int size;
+    // Rooms that can be reached from the start room.
+    private BitSet reachable;
+    // Rooms from which the start room can be reached.
+    private BitSet returning;
+    // The rooms with an exit into room "id" at the last full pass are
+    // source[first[id]] to source[first[id + 1] - 1]. An entry may be an
+    // exit that has gone since, so each one is checked when used.
+    private int[] first;
+    private int[] source;
+    // Sources of the exits added since the last full pass, by target.
+    private final HashMap<Integer, int[]> addedSources;
+    // The component of each room; valid unless componentsStale.
+    private int[] component;
+    private int componentCount;
+    private BitSet trapComponents;
+    private boolean componentsStale;
+    private final List<TransportTable> tables;
+    private long fullPassCount;
+
+    /**
+     * Analyse a graph and keep the analysis up to date as its exits change.
+     * @param graph The rooms and their exits.
+     * @param start The id of the room every game starts in.
+     * @return The analysis.
+     */
+    public static GraphAnalysis of(RoomGraph graph, int start)
+    {
+        if(graph.isGenerated()) {
+            throw new IllegalArgumentException("A generated graph is too large to analyse");
+        }
+        // setExit holds the graph's lock, so no exit changes between the
+        // analysis and the listening.
+        synchronized(graph) {
+            GraphAnalysis analysis = new GraphAnalysis(graph, start);
+            graph.addExitListener(analysis);
+            return analysis;
+        }
+    }
+
+    /**
+     * Analyse a graph. Only of() may call this, as it also has the
+     * analysis listen to the graph.
+     */
+    private GraphAnalysis(RoomGraph graph, int start)
+    {
+        this.graph = graph;
+        this.start = start;
+        size = graph.size();
+        addedSources = new HashMap<>();
+        tables = new ArrayList<>();
+        analyse();
+    }
+
+    /**
+     * Exclude the rooms that cannot get back to the start room from a
+     * transport table, now and whenever that changes.
+     * @param table The table.
+     */
+    public synchronized void attach(TransportTable table)
+    {
+        for(int id = returning.nextClearBit(0); id < size; id = returning.nextClearBit(id + 1)) {
+            table.exclude(id);
+        }
+        tables.add(table);
+    }
+
+    /**
+     * @param id The id of a room.
+     * @return true if the room can be reached from the start room.
+     */
+    public synchronized boolean isReachable(int id)
+    {
+        return reachable.get(id);
+    }
+
+    /**
+     * @param id The id of a room.
+     * @return true if the start room can be reached from the room.
+     */
+    public synchronized boolean canReturn(int id)
+    {
+        return returning.get(id);
+    }
+
+    /**
+     * @return The ids of the rooms that cannot be reached from the start
+     * room, in order.
+     */
+    public synchronized int[] getUnreachableRooms()
+    {
+        return clearBits(reachable);
+    }
+
+    /**
+     * @return The ids of the rooms from which the start room cannot be
+     * reached, in order.
+     */
+    public synchronized int[] getNoReturnRooms()
+    {
+        return clearBits(returning);
+    }
+
+    /**
+     * @return The number of strongly connected components.
+     */
+    public synchronized int getComponentCount()
+    {
+        components();
+        return componentCount;
+    }
+
+    /**
+     * @param id The id of a room.
+     * @return The number of the room's strongly connected component.
+     */
+    public synchronized int getComponent(int id)
+    {
+        components();
+        return component[id];
+    }
+
+    /**
+     * @return The traps: for each component that has no exit out of it
+     * and does not hold the start room, the ids of its rooms in order.
+     */
+    public synchronized List<int[]> getTraps()
+    {
+        components();
+        int[] count = new int[componentCount];
+        for(int id = 0; id < size; id++) {
+            if(trapComponents.get(component[id])) {
+                count[component[id]]++;
+            }
+        }
+        int[][] rooms = new int[componentCount][];
+        List<int[]> traps = new ArrayList<>();
+        for(int c = trapComponents.nextSetBit(0); c >= 0; c = trapComponents.nextSetBit(c + 1)) {
+            rooms[c] = new int[count[c]];
+            traps.add(rooms[c]);
+            count[c] = 0;
+        }
+        for(int id = 0; id < size; id++) {
+            int c = component[id];
+            if(trapComponents.get(c)) {
+                rooms[c][count[c]++] = id;
+            }
+        }
+        return traps;
+    }
+
+    /**
+     * @return The number of times the whole graph has been walked, at
+     * load and after exits were removed.
+     */
+    public synchronized long getFullPassCount()
+    {
+        return fullPassCount;
+    }
+
+    /**
+     * Keep the analysis up to date with a changed exit.
+     */
+    public synchronized void exitChanged(int id, Direction direction, int oldTarget, int newTarget)
+    {
+        componentsStale = true;
+        if(oldTarget >= 0 && !leadsTo(id, oldTarget)
+           && ((reachable.get(id) && reachable.get(oldTarget))
+               || (returning.get(id) && returning.get(oldTarget)))) {
+            // A path may have been cut; the new exit is part of the pass.
+            analyse();
+            return;
+        }
+        if(newTarget >= 0) {
+            int[] sources = addedSources.get(newTarget);
+            sources = sources == null ? new int[1] : Arrays.copyOf(sources, sources.length + 1);
+            sources[sources.length - 1] = id;
+            addedSources.put(newTarget, sources);
+            if(reachable.get(id) && !reachable.get(newTarget)) {
+                markForward(newTarget, reachable);
+            }
+            if(returning.get(newTarget) && !returning.get(id)) {
+                markBackward(id, returning);
+            }
+        }
+    }
+
+    /**
+     * Walk the whole graph: collect the exits backwards and find the
+     * rooms reachable from and returning to the start room. The
+     * transport tables are told of the rooms that changed.
+     */
+    private void analyse()
+    {
+        fullPassCount++;
+        first = new int[size + 1];
+        for(int id = 0; id < size; id++) {
+            for(int n = graph.exitCount(id) - 1; n >= 0; n--) {
+                first[graph.exitTarget(id, n) + 1]++;
+            }
+        }
+        for(int id = 0; id < size; id++) {
+            first[id + 1] += first[id];
+        }
+        source = new int[first[size]];
+        int[] next = Arrays.copyOf(first, size);
+        for(int id = 0; id < size; id++) {
+            for(int n = graph.exitCount(id) - 1; n >= 0; n--) {
+                source[next[graph.exitTarget(id, n)]++] = id;
+            }
+        }
+        addedSources.clear();
+
+        reachable = new BitSet(size);
+        markForward(start, reachable);
+        BitSet old = returning;
+        returning = new BitSet(size);
+        markBackward(start, returning);
+        if(old != null) {
+            // The rooms whose way back changed; the new ones are already
+            // included by markBackward.
+            old.andNot(returning);
+            for(int id = old.nextSetBit(0); id >= 0; id = old.nextSetBit(id + 1)) {
+                for(TransportTable table : tables) {
+                    table.exclude(id);
+                }
+            }
+        }
+        componentsStale = true;
+    }
+
+    /**
+     * Mark a room and every room reachable from it that is not marked yet.
+     */
+    private void markForward(int from, BitSet marked)
+    {
+        int[] queue = new int[16];
+        queue[0] = from;
+        marked.set(from);
+        int tail = 1;
+        for(int head = 0; head < tail; head++) {
+            int room = queue[head];
+            for(int n = graph.exitCount(room) - 1; n >= 0; n--) {
+                int next = graph.exitTarget(room, n);
+                if(!marked.get(next)) {
+                    marked.set(next);
+                    if(tail == queue.length) {
+                        queue = Arrays.copyOf(queue, tail * 2);
+                    }
+                    queue[tail++] = next;
+                }
+            }
+        }
+    }
+
+    /**
+     * Mark a room and every room that can reach it that is not marked
+     * yet, and let the transport tables draw them.
+     */
+    private void markBackward(int to, BitSet marked)
+    {
+        int[] queue = new int[16];
+        queue[0] = to;
+        marked.set(to);
+        int tail = 1;
+        for(int head = 0; head < tail; head++) {
+            int room = queue[head];
+            for(TransportTable table : tables) {
+                table.include(room);
+            }
+            int[] added = addedSources.get(room);
+            int count = first[room + 1] - first[room];
+            int total = count + (added == null ? 0 : added.length);
+            for(int i = 0; i < total; i++) {
+                int before = i < count ? source[first[room] + i] : added[i - count];
+                if(!marked.get(before) && leadsTo(before, room)) {
+                    marked.set(before);
+                    if(tail == queue.length) {
+                        queue = Arrays.copyOf(queue, tail * 2);
+                    }
+                    queue[tail++] = before;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return true if room "from" has an exit to room "to".
+     */
+    private boolean leadsTo(int from, int to)
+    {
+        for(int n = graph.exitCount(from) - 1; n >= 0; n--) {
+            if(graph.exitTarget(from, n) == to) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Work out the strongly connected components again if an exit has
+     * changed since, with Tarjan's algorithm run on an explicit stack,
+     * and find the traps among them.
+     */
+    private void components()
+    {
+        if(component != null && !componentsStale) {
+            return;
+        }
+        int[] index = new int[size];
+        int[] low = new int[size];
+        int[] stack = new int[size];
+        int[] callRoom = new int[size];
+        int[] callExit = new int[size];
+        component = new int[size];
+        Arrays.fill(component, -1);
+        int counter = 0;
+        int count = 0;
+        int top = 0;
+        for(int root = 0; root < size; root++) {
+            if(index[root] != 0) {
+                continue;
+            }
+            index[root] = low[root] = ++counter;
+            stack[top++] = root;
+            callRoom[0] = root;
+            callExit[0] = 0;
+            int calls = 1;
+            while(calls > 0) {
+                int room = callRoom[calls - 1];
+                int exit = callExit[calls - 1];
+                if(exit < graph.exitCount(room)) {
+                    callExit[calls - 1]++;
+                    int next = graph.exitTarget(room, exit);
+                    if(index[next] == 0) {
+                        index[next] = low[next] = ++counter;
+                        stack[top++] = next;
+                        callRoom[calls] = next;
+                        callExit[calls] = 0;
+                        calls++;
+                    }
+                    else if(component[next] < 0) {
+                        low[room] = Math.min(low[room], index[next]);
+                    }
+                    continue;
+                }
+                calls--;
+                if(low[room] == index[room]) {
+                    int member;
+                    do {
+                        member = stack[--top];
+                        component[member] = count;
+                    } while(member != room);
+                    count++;
+                }
+                if(calls > 0) {
+                    int caller = callRoom[calls - 1];
+                    low[caller] = Math.min(low[caller], low[room]);
+                }
+            }
+        }
+        componentCount = count;
+
+        BitSet hasWayOut = new BitSet(count);
+        for(int id = 0; id < size; id++) {
+            for(int n = graph.exitCount(id) - 1; n >= 0; n--) {
+                if(component[graph.exitTarget(id, n)] != component[id]) {
+                    hasWayOut.set(component[id]);
+                    break;
+                }
+            }
+        }
+        trapComponents = new BitSet(count);
+        trapComponents.set(0, count);
+        trapComponents.andNot(hasWayOut);
+        trapComponents.clear(component[start]);
+        componentsStale = false;
+    }
+
+    /**
+     * @return The positions of the clear bits of a set below size.
+     */
+    private int[] clearBits(BitSet set)
+    {
+        int[] ids = new int[size - set.cardinality()];
+        int i = 0;
+        for(int id = set.nextClearBit(0); id < size; id = set.nextClearBit(id + 1)) {
+            ids[i++] = id;
+        }
+        return ids;
+    }
+}
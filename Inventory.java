@@ -0,0 +1,247 @@
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * This class is part of the "World of Zuul" application.
+ * "World of Zuul" is a very simple, text based adventure game.
+ *
+ * An Inventory holds items grouped by item name: the items a player
+ * carries, or the items a room holds in one game. Each name has a queue
+ * of the items of that name, oldest first, so that finding, counting and
+ * taking out an item by name never looks at the other items. The total
+ * weight is kept up to date as items are added and removed, so it never
+ * has to be summed.
+ *
+ * The groups are kept in the order their names were first added, which
+ * is also the order the items are listed in.
+ *
+ * @author  Ryan Rutishauser
+ * @version 2026.10.18
+ */
+
+public class Inventory implements Iterable<Item>
+{
+    private LinkedHashMap<String, ArrayDeque<Item>> byName;
+    private int size;
+    private long totalWeight;
+
+    /**
+     * Create an empty inventory.
+     */
+    public Inventory()
+    {
+        byName = new LinkedHashMap<>();
+    }
+
+    /**
+     * Add an item.
+     * @param item The item.
+     */
+    public void add(Item item)
+    {
+        ArrayDeque<Item> group = byName.get(item.getName());
+        if(group == null) {
+            group = new ArrayDeque<>(4);
+            byName.put(item.getName(), group);
+        }
+        group.addLast(item);
+        size++;
+        totalWeight += item.getWeight();
+    }
+
+    /**
+     * Add several items.
+     * @param items The items.
+     */
+    public void addAll(Collection<Item> items)
+    {
+        for(Item item : items) {
+            add(item);
+        }
+    }
+
+    /**
+     * Take out the oldest item with the given name.
+     * @param name The name of the item, in any case.
+     * @return The item, or null if there is no item with that name.
+     */
+    public Item remove(String name)
+    {
+        String key = name.toLowerCase(Locale.ROOT);
+        ArrayDeque<Item> group = byName.get(key);
+        if(group == null) {
+            return null;
+        }
+        Item item = group.removeFirst();
+        if(group.isEmpty()) {
+            byName.remove(key);
+        }
+        removed(item);
+        return item;
+    }
+
+    /**
+     * @param name The name of an item, in any case.
+     * @return The oldest item with the given name, which stays in the
+     * inventory, or null if there is none.
+     */
+    public Item find(String name)
+    {
+        ArrayDeque<Item> group = byName.get(name.toLowerCase(Locale.ROOT));
+        return group == null ? null : group.peekFirst();
+    }
+
+    /**
+     * Take out the oldest edible item of the first name whose oldest
+     * item is edible.
+     * @return The item, or null if there is no such item.
+     */
+    public Item removeFirstEdible()
+    {
+        Iterator<ArrayDeque<Item>> groups = byName.values().iterator();
+        while(groups.hasNext()) {
+            ArrayDeque<Item> group = groups.next();
+            if(group.peekFirst().isEdible()) {
+                Item item = group.removeFirst();
+                if(group.isEmpty()) {
+                    groups.remove();
+                }
+                removed(item);
+                return item;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Take out the oldest item of the first name in the inventory.
+     * @return The item, or null if the inventory is empty.
+     */
+    public Item removeFirst()
+    {
+        if(size == 0) {
+            return null;
+        }
+        Iterator<ArrayDeque<Item>> groups = byName.values().iterator();
+        ArrayDeque<Item> group = groups.next();
+        Item item = group.removeFirst();
+        if(group.isEmpty()) {
+            groups.remove();
+        }
+        removed(item);
+        return item;
+    }
+
+    /**
+     * Take out every item.
+     */
+    public void clear()
+    {
+        byName.clear();
+        size = 0;
+        totalWeight = 0;
+    }
+
+    /**
+     * @param name The name of an item, in any case.
+     * @return The number of items with that name.
+     */
+    public int count(String name)
+    {
+        ArrayDeque<Item> group = byName.get(name.toLowerCase(Locale.ROOT));
+        return group == null ? 0 : group.size();
+    }
+
+    /**
+     * @return The number of items.
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * @return true if there are no items.
+     */
+    public boolean isEmpty()
+    {
+        return size == 0;
+    }
+
+    /**
+     * @return The weight of all items together.
+     */
+    public long getTotalWeight()
+    {
+        return totalWeight;
+    }
+
+    /**
+     * @return An iterator over all items, grouped by name. Items must not
+     * be added or removed while it is used.
+     */
+    public Iterator<Item> iterator()
+    {
+        return new Iterator<Item>() {
+            private Iterator<ArrayDeque<Item>> groups = byName.values().iterator();
+            private Iterator<Item> group = Collections.emptyIterator();
+
+            public boolean hasNext()
+            {
+                while(!group.hasNext() && groups.hasNext()) {
+                    group = groups.next().iterator();
+                }
+                return group.hasNext();
+            }
+
+            public Item next()
+            {
+                hasNext();
+                return group.next();
+            }
+        };
+    }
+
+    /**
+     * @return All items, grouped by name.
+     */
+    public Item[] toArray()
+    {
+        Item[] items = new Item[size];
+        int i = 0;
+        for(ArrayDeque<Item> group : byName.values()) {
+            for(Item item : group) {
+                items[i++] = item;
+            }
+        }
+        return items;
+    }
+
+    /**
+     * @return A list of all items, grouped by name, which cannot be
+     * changed.
+     */
+    public List<Item> getItems()
+    {
+        ArrayList<Item> items = new ArrayList<>(size);
+        for(ArrayDeque<Item> group : byName.values()) {
+            items.addAll(group);
+        }
+        return Collections.unmodifiableList(items);
+    }
+
+    /**
+     * Keep the count and weight up to date after an item was taken out.
+     */
+    private void removed(Item item)
+    {
+        size--;
+        totalWeight -= item.getWeight();
+    }
+}
@@ -7,6 +7,9 @@
  * "World of Zuul" is a very simple, text based adventure game.  
  *
  * A "Item" represents one object in the scenery of the game. 
+ * What items of one kind share, such as their name, description and
+ * weight, is kept in their ItemType; an item only refers to its type,
+ * so that worlds with millions of items stay small.
  * 
  * @author  Ryan Ruitshauser
  * @version 2022.03.21
@@ -14,18 +17,34 @@
 
 public class Item 
 {
-    private String description;
-    private int weight;
+    private final ItemType type;
 
     /**
-     * Create a item described "description". Initially, it has
+     * Create a item described "description" that cannot be eaten. Items
+     * with the same description and weight share one ItemType.
      * @param description The item's description.
-     * @param sets room item is associated with.
+     * @param weight The item's weight.
      */
     public Item(String description, int weight) 
     {
-        this.description = description;
-        this.weight = weight;
+        this(ItemType.of(description, weight));
+    }
+
+    /**
+     * Create an item of the given type.
+     * @param type The item's type.
+     */
+    public Item(ItemType type)
+    {
+        this.type = type;
+    }
+
+    /**
+     * @return The type of the item.
+     */
+    public ItemType getType()
+    {
+        return type;
     }
     
     /**
@@ -33,7 +52,7 @@ public class Item
      */
     public int getWeight() 
     {
-        return weight;
+        return type.getWeight();
     }
 
     /**
@@ -42,8 +61,23 @@ public class Item
      */
     public String getDescription()
     {
-        return description;
+        return type.getDescription();
     }
 
-}
+    /**
+     * @return The name of the item, in lower case.
+     */
+    public String getName()
+    {
+        return type.getName();
+    }
+
+    /**
+     * @return true if the item can be eaten.
+     */
+    public boolean isEdible()
+    {
+        return type.isEdible();
+    }
 
+}
@@ -0,0 +1,121 @@
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+/**
+ * This class is part of the "World of Zuul" application.
+ * "World of Zuul" is a very simple, text based adventure game.
+ *
+ * An ItemIndex tells where every item of a World starts: for each item
+ * name, the rooms that start with items of that name, and for each item,
+ * the room it starts in. It is built once, in one pass over the rooms,
+ * the first time a world is asked for it. A game combines it with the
+ * items its RoomItems have moved to find where an item is now without
+ * looking through the rooms.
+ *
+ * Building the index looks at every room, so a world read from an image
+ * creates all of its rooms when it is first indexed.
+ *
+ * @author  Ryan Rutishauser
+ * @version 2026.10.18
+ */
+
+public class ItemIndex
+{
+    private static final int[] NONE = new int[0];
+
+    // Ids of the rooms holding items of each name, in increasing order.
+    private HashMap<String, int[]> roomsByName;
+    // The room each item starts in.
+    private IdentityHashMap<Item, Integer> home;
+    // The rooms that start with at least one item.
+    private BitSet stocked;
+
+    /**
+     * Index the items of a world.
+     * @param world The world.
+     */
+    public ItemIndex(World world)
+    {
+        if(world.getGraph().isGenerated()) {
+            throw new IllegalArgumentException("A generated world is too large to index");
+        }
+        HashMap<String, int[]> rooms = new HashMap<>();
+        HashMap<String, Integer> counts = new HashMap<>();
+        home = new IdentityHashMap<>();
+        stocked = new BitSet();
+        List<Room> all = world.getRooms();
+        for(int id = 0; id < all.size(); id++) {
+            if(all.get(id).numberItem() > 0) {
+                stocked.set(id);
+            }
+            String last = null;
+            for(Item item : all.get(id).getItems()) {
+                home.put(item, id);
+                String name = item.getName();
+                if(name == last) {
+                    continue;   // names are interned
+                }
+                last = name;
+                int[] ids = rooms.get(name);
+                int count = counts.getOrDefault(name, 0);
+                if(ids == null) {
+                    ids = new int[4];
+                }
+                else if(ids[count - 1] == id) {
+                    continue;
+                }
+                else if(count == ids.length) {
+                    ids = Arrays.copyOf(ids, count * 2);
+                }
+                ids[count] = id;
+                rooms.put(name, ids);
+                counts.put(name, count + 1);
+            }
+        }
+        roomsByName = new HashMap<>();
+        for(String name : rooms.keySet()) {
+            roomsByName.put(name, Arrays.copyOf(rooms.get(name), counts.get(name)));
+        }
+    }
+
+    /**
+     * @param name The name of an item, in lower case.
+     * @return The ids of the rooms that start with items of that name,
+     * in increasing order. The array must not be changed.
+     */
+    public int[] roomsWith(String name)
+    {
+        return roomsByName.getOrDefault(name, NONE);
+    }
+
+    /**
+     * @param item An item.
+     * @return The id of the room the item starts in, or
+     * RoomItems.GONE if it is not an item of this world.
+     */
+    public int homeOf(Item item)
+    {
+        Integer id = home.get(item);
+        return id == null ? RoomItems.GONE : id;
+    }
+
+    /**
+     * @param id The id of a room.
+     * @return true if the room starts with any items.
+     */
+    public boolean startsWithItems(int id)
+    {
+        return stocked.get(id);
+    }
+
+    /**
+     * @return The number of items of the world.
+     */
+    public int size()
+    {
+        return home.size();
+    }
+}
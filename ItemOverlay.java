@@ -0,0 +1,385 @@
+import java.io.PrintStream;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class is part of the "World of Zuul" application.
+ * "World of Zuul" is a very simple, text based adventure game.
+ *
+ * An ItemOverlay holds the items of the rooms one game has changed, for
+ * a game played on its own.
+ * Rooms of a shared World keep the items they start with; the first time
+ * a game changes the items of a room, that room's items are copied into
+ * the overlay and from then on the game sees the copy. Rooms a player
+ * never touches cost the game nothing. The copy of each room is an
+ * Inventory, so one item can be taken out by name in constant time.
+ *
+ * The overlay also knows where each item this game has moved is now: in
+ * a room or carried by the player. Items that are gone, because they were
+ * eaten, are forgotten. Other items it does not know about have not
+ * moved, so they are still in the room the World's ItemIndex gives for
+ * them.
+ *
+ * When asked to, the overlay also remembers which rooms were changed
+ * since the last time it was asked, so that a checkpoint only needs to
+ * save those rooms.
+ *
+ * @author  Ryan Rutishauser
+ * @version 2026.10.18
+ */
+
+public class ItemOverlay implements RoomItems
+{
+    // The items of the rooms changed by this game, created on first use.
+    private HashMap<Room, Inventory> changed;
+    // Rooms changed since the last takeDirty, or null if not tracked.
+    private HashSet<Room> dirty;
+    // Where each moved item is, by item name and then by item.
+    private HashMap<String, HashMap<Item, Integer>> located;
+
+    /**
+     * Create an overlay in which no room has been changed yet.
+     */
+    public ItemOverlay()
+    {
+    }
+
+    /**
+     * @param room The room to look in.
+     * @return The number of items currently in the room for this game.
+     */
+    public int numberItem(Room room)
+    {
+        Inventory items = changedItems(room);
+        return items == null ? room.numberItem() : items.size();
+    }
+
+    /**
+     * @param room The room to look in.
+     * @param name The name of an item.
+     * @return The number of items with that name in the room.
+     */
+    public int count(Room room, String name)
+    {
+        Inventory items = changedItems(room);
+        if(items != null) {
+            return items.count(name);
+        }
+        int count = 0;
+        for(Item item : room.getItems()) {
+            if(item.getName().equalsIgnoreCase(name)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Take every item out of a room; the player now carries them.
+     * @param room The room to empty.
+     * @return The items that were in the room.
+     */
+    public List<Item> takeAll(Room room)
+    {
+        if(numberItem(room) == 0) {
+            return Collections.emptyList();
+        }
+        Inventory items = writable(room);
+        List<Item> taken = items.getItems();
+        items.clear();
+        for(Item item : taken) {
+            moved(item, CARRIED);
+        }
+        return taken;
+    }
+
+    /**
+     * Take one item out of a room; the player now carries it.
+     * @param room The room to take it from.
+     * @param name The name of the item, in any case.
+     * @return The item, or null if the room holds no item of that name.
+     */
+    public Item take(Room room, String name)
+    {
+        if(count(room, name) == 0) {
+            return null;
+        }
+        Item item = writable(room).remove(name);
+        moved(item, CARRIED);
+        return item;
+    }
+
+    /**
+     * Place an item in a room.
+     * @param room The room the item is put in.
+     * @param item The item to put there.
+     */
+    public void put(Room room, Item item)
+    {
+        writable(room).add(item);
+        moved(item, room.getId());
+    }
+
+    /**
+     * Set the items of a room for this game, for example when a saved
+     * game is restored. Items that were in the room before are gone.
+     * @param room The room.
+     * @param items The items now in the room.
+     */
+    public void replace(Room room, List<Item> items)
+    {
+        Inventory list = writable(room);
+        for(Item item : list.getItems()) {
+            forget(item);
+        }
+        list.clear();
+        for(Item item : items) {
+            put(room, item);
+        }
+    }
+
+    /**
+     * Put fresh items in a room for those of its starting items that are
+     * no longer there in this game.
+     * @param room The room.
+     * @return The number of items put in the room.
+     */
+    public int restock(Room room)
+    {
+        if(changedItems(room) == null) {
+            return 0;   // an unchanged room still has all its items
+        }
+        int added = 0;
+        for(Map.Entry<ItemType, Integer> start : startingItems(room).entrySet()) {
+            ItemType type = start.getKey();
+            for(int i = count(room, type.getName()); i < start.getValue(); i++) {
+                put(room, new Item(type));
+                added++;
+            }
+        }
+        return added;
+    }
+
+    /**
+     * @param room A room.
+     * @return The number of items of each type the room starts with, in
+     * the order of the room's items.
+     */
+    static Map<ItemType, Integer> startingItems(Room room)
+    {
+        LinkedHashMap<ItemType, Integer> counts = new LinkedHashMap<>();
+        for(Item item : room.getItems()) {
+            counts.merge(item.getType(), 1, Integer::sum);
+        }
+        return counts;
+    }
+
+    /**
+     * Record that the player carries an item that was not taken from a
+     * room of this game, for example in a restored game.
+     * @param item The item.
+     */
+    public void carry(Item item)
+    {
+        moved(item, CARRIED);
+    }
+
+    /**
+     * Forget an item that no longer exists, for example because it was
+     * eaten.
+     * @param item The item.
+     */
+    public void consume(Item item)
+    {
+        forget(item);
+    }
+
+    /**
+     * @param item An item.
+     * @return The id of the room the item is in for this game, CARRIED,
+     * or NOT_MOVED if this game has not moved it or it is gone.
+     */
+    public int locate(Item item)
+    {
+        if(located != null) {
+            HashMap<Item, Integer> items = located.get(item.getName());
+            if(items != null) {
+                Integer location = items.get(item);
+                if(location != null) {
+                    return location;
+                }
+            }
+        }
+        return NOT_MOVED;
+    }
+
+    /**
+     * @param room The room to look in.
+     * @param item An item.
+     * @return true if the item is in the room for this game.
+     */
+    public boolean contains(Room room, Item item)
+    {
+        Inventory items = changedItems(room);
+        Iterable<Item> all = items != null ? items : room.getItems();
+        for(Item i : all) {
+            if(i == item) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param name The name of an item.
+     * @return Where each item of that name this game has moved, and that
+     * still exists, is now, as for locate.
+     */
+    public Map<Item, Integer> locateMoved(String name)
+    {
+        HashMap<Item, Integer> items = located == null ? null : located.get(name);
+        if(items == null) {
+            return Collections.emptyMap();
+        }
+        return new HashMap<>(items);
+    }
+
+    /**
+     * Prints description and weight of each item in the room.
+     * @param room The room whose items are printed.
+     * @param out Where the item list is printed.
+     */
+    public void printItems(Room room, PrintStream out)
+    {
+        if(!isChanged(room)) {
+            room.printItem(out);
+            return;
+        }
+        for(Item i : changed.get(room)) {
+            out.println(i.getDescription() + ". The weight of the " +
+            "item is " + i.getWeight());
+        }
+    }
+
+    /**
+     * @param room The room to check.
+     * @return true if this game has changed the items of the room, so
+     * that the room's own item listing does not apply to it.
+     */
+    public boolean isChanged(Room room)
+    {
+        return changed != null && changed.containsKey(room);
+    }
+
+    /**
+     * @return false: the changes are this game's own.
+     */
+    public boolean isShared()
+    {
+        return false;
+    }
+
+    /**
+     * @return The number of rooms this game has changed.
+     */
+    public int numberChanged()
+    {
+        return changed == null ? 0 : changed.size();
+    }
+
+    /**
+     * Start remembering which rooms are changed. Every room changed so
+     * far counts as changed.
+     */
+    public void trackChanges()
+    {
+        if(dirty == null) {
+            dirty = new HashSet<>();
+            if(changed != null) {
+                dirty.addAll(changed.keySet());
+            }
+        }
+    }
+
+    /**
+     * Return the items of every room changed since the last call, and
+     * start remembering afresh. Changes are only remembered after
+     * trackChanges has been called.
+     * @return A copy of the items of each changed room.
+     */
+    public Map<Room, Item[]> takeDirty()
+    {
+        if(dirty == null || dirty.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        HashMap<Room, Item[]> copies = new HashMap<>();
+        for(Room room : dirty) {
+            copies.put(room, changed.get(room).toArray());
+        }
+        dirty.clear();
+        return copies;
+    }
+
+    /**
+     * @return This game's copy of a room's items, or null if the game
+     * has not changed the room.
+     */
+    private Inventory changedItems(Room room)
+    {
+        return changed == null ? null : changed.get(room);
+    }
+
+    /**
+     * Return this game's own copy of a room's items, copying the room's
+     * items into the overlay the first time.
+     * @param room The room to be changed.
+     * @return Items that may be changed freely.
+     */
+    private Inventory writable(Room room)
+    {
+        if(changed == null) {
+            changed = new HashMap<>();
+        }
+        Inventory items = changed.get(room);
+        if(items == null) {
+            items = new Inventory();
+            items.addAll(room.getItems());
+            changed.put(room, items);
+        }
+        if(dirty != null) {
+            dirty.add(room);
+        }
+        return items;
+    }
+
+    /**
+     * Record where an item is now.
+     */
+    private void moved(Item item, int location)
+    {
+        if(located == null) {
+            located = new HashMap<>();
+        }
+        HashMap<Item, Integer> items = located.get(item.getName());
+        if(items == null) {
+            items = new HashMap<>();
+            located.put(item.getName(), items);
+        }
+        items.put(item, location);
+    }
+
+    /**
+     * Forget a gone item, and the map of its name once it is empty.
+     */
+    private void forget(Item item)
+    {
+        HashMap<Item, Integer> items = located == null ? null : located.get(item.getName());
+        if(items != null && items.remove(item) != null && items.isEmpty()) {
+            located.remove(item.getName());
+        }
+    }
+}
@@ -0,0 +1,214 @@
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * This class is part of the "World of Zuul" application.
+ * "World of Zuul" is a very simple, text based adventure game.
+ *
+ * An ItemType holds what all items of one kind have in common: their
+ * name, description and weight, and whether they can be eaten and how
+ * much health that gives. Types never change, so one type is shared by
+ * every item of its kind and an Item only refers to it. Types made with
+ * "of" are kept in a table, so that a world of millions of pebbles
+ * holds one pebble type. The table is keyed on the description, and the
+ * few types of one description are told apart by their weight and food
+ * value, so looking up a known type makes no new objects. The table only
+ * holds its types through weak references, so the types of a world that
+ * is dropped go with it, and their entries are cleared out by the next
+ * call of "of".
+ *
+ * @author  Ryan Rutishauser
+ * @version 2026.10.18
+ */
+
+public class ItemType
+{
+    // The health the food of the worlds made in code gives when eaten.
+    public static final int FOOD_HEALTH = 10;
+
+    // The types made by "of" with each description, and the references
+    // to types that are no longer used.
+    private static final ConcurrentHashMap<String, TypeRef[]> TYPES = new ConcurrentHashMap<>();
+    private static final ReferenceQueue<ItemType> CLEARED = new ReferenceQueue<>();
+
+    private final String name;
+    private final String description;
+    private final int weight;
+    private final boolean edible;
+    private final int health;
+
+    /**
+     * Create an item type.
+     * @param name The word players use for items of this type.
+     * @param description The description of items of this type.
+     * @param weight The weight of items of this type.
+     * @param edible true if items of this type can be eaten.
+     * @param health The health gained by eating an item of this type.
+     */
+    public ItemType(String name, String description, int weight, boolean edible, int health)
+    {
+        this.name = name.toLowerCase(Locale.ROOT).intern();
+        this.description = description;
+        this.weight = weight;
+        this.edible = edible;
+        this.health = health;
+    }
+
+    /**
+     * Return the shared type of items that cannot be eaten with the given
+     * description and weight, making it the first time.
+     * @param description The description of the items.
+     * @param weight The weight of the items.
+     * @return The type.
+     */
+    public static ItemType of(String description, int weight)
+    {
+        return of(description, weight, false, 0);
+    }
+
+    /**
+     * Return the shared type of items with the given description, weight
+     * and food value, making it the first time. The name is the last word
+     * of the first sentence of the description, such as "apple" for "This
+     * is an apple. This can be eaten...".
+     * @param description The description of the items.
+     * @param weight The weight of the items.
+     * @param edible true if the items can be eaten.
+     * @param health The health gained by eating one of the items.
+     * @return The type.
+     */
+    public static ItemType of(String description, int weight, boolean edible, int health)
+    {
+        purge();
+        ItemType type = find(TYPES.get(description), weight, edible, health);
+        while(type == null) {
+            ItemType made = new ItemType(nameOf(description), description, weight,
+                                         edible, health);
+            TypeRef[] added = { new TypeRef(made) };
+            TypeRef[] types = TYPES.merge(description, added, (known, none) ->
+                find(known, weight, edible, health) != null ? known : append(known, added[0]));
+            // Null only if the type found was collected meanwhile.
+            type = find(types, weight, edible, health);
+        }
+        return type;
+    }
+
+    /**
+     * @return The name of items of this type, in lower case.
+     */
+    public String getName()
+    {
+        return name;
+    }
+
+    /**
+     * @return The description of items of this type.
+     */
+    public String getDescription()
+    {
+        return description;
+    }
+
+    /**
+     * @return The weight of items of this type.
+     */
+    public int getWeight()
+    {
+        return weight;
+    }
+
+    /**
+     * @return true if items of this type can be eaten.
+     */
+    public boolean isEdible()
+    {
+        return edible;
+    }
+
+    /**
+     * @return The health gained by eating an item of this type.
+     */
+    public int getHealth()
+    {
+        return health;
+    }
+
+    /**
+     * @return The type among "types" with the given weight and food
+     * value that is still in use, or null.
+     */
+    private static ItemType find(TypeRef[] types, int weight, boolean edible, int health)
+    {
+        for(int i = 0; types != null && i < types.length; i++) {
+            ItemType type = types[i].get();
+            if(type != null && type.weight == weight && type.edible == edible
+               && type.health == health) {
+                return type;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return The types that are still in use, with one more type added
+     * at the end.
+     */
+    private static TypeRef[] append(TypeRef[] types, TypeRef type)
+    {
+        TypeRef[] more = Arrays.stream(types).filter(known -> known.get() != null)
+                                             .toArray(n -> new TypeRef[n + 1]);
+        more[more.length - 1] = type;
+        return more;
+    }
+
+    /**
+     * Remove the types that are no longer used from the table, and
+     * descriptions that have no types left.
+     */
+    private static void purge()
+    {
+        TypeRef cleared;
+        while((cleared = (TypeRef) CLEARED.poll()) != null) {
+            TYPES.computeIfPresent(cleared.description, (description, types) -> {
+                TypeRef[] left = Arrays.stream(types).filter(known -> known.get() != null)
+                                                     .toArray(TypeRef[]::new);
+                return left.length == 0 ? null : left;
+            });
+        }
+    }
+
+    /**
+     * The name of an item is the last word of the first sentence of its
+     * description.
+     */
+    private static String nameOf(String description)
+    {
+        int end = description.indexOf('.');
+        if(end < 0) {
+            end = description.length();
+        }
+        while(end > 0 && description.charAt(end - 1) == ' ') {
+            end--;
+        }
+        int start = description.lastIndexOf(' ', end - 1) + 1;
+        return description.substring(start, end);
+    }
+
+    /**
+     * A weak reference to a type in the table, which remembers the
+     * description it is kept under so that it can be removed.
+     */
+    private static class TypeRef extends WeakReference<ItemType>
+    {
+        private final String description;
+
+        TypeRef(ItemType type)
+        {
+            super(type, CLEARED);
+            description = type.description;
+        }
+    }
+}
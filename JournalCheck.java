@@ -0,0 +1,168 @@
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * This class is part of the "World of Zuul" application.
+ * "World of Zuul" is a very simple, text based adventure game.
+ *
+ * JournalCheck plays a long random game on the campus with a
+ * CommandJournal attached, letting time pass now and then, and checks
+ * that JournalReplay rebuilds it: the replayed game must end in the same
+ * room, with the same health, seed, inventory and items in the rooms.
+ *
+ * It then cuts the journal off at many random places, as a crash would,
+ * and checks that each cut journal still replays, up to its last whole
+ * record, into the state the game was in at that point.
+ *
+ * Run the main method with an optional number of commands and seed, for
+ * example "java JournalCheck 20000 1".
+ *
+ * @author  Ryan Rutishauser
+ * @version 2026.10.18
+ */
+
+public class JournalCheck
+{
+    // The number of places the journal is cut at.
+    private static final int CUTS = 500;
+    private static final Command[] COMMANDS = {
+        new Command(CommandWord.GO, "north"), new Command(CommandWord.GO, "south"),
+        new Command(CommandWord.GO, "east"), new Command(CommandWord.GO, "west"),
+        new Command(CommandWord.GO, "up"), new Command(CommandWord.GET, null),
+        new Command(CommandWord.GET, "orange"), new Command(CommandWord.GET, "apple"),
+        new Command(CommandWord.DROP, "banana"), new Command(CommandWord.DROP, "apple"),
+        new Command(CommandWord.EAT, null), new Command(CommandWord.LOOK, null),
+        new Command(CommandWord.TRANSPORT, null), new Command(CommandWord.HELP, null),
+    };
+
+    /**
+     * Main method so that the check can be run outside of Bluej.
+     * @param args An optional number of commands, then an optional seed.
+     */
+    public static void main(String[] args) throws IOException
+    {
+        int commands = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : 1;
+        SplittableRandom random = new SplittableRandom(seed);
+        World world = World.campus();
+        PrintStream out = BatchRunner.discardingOutput();
+        Path file = Files.createTempFile("zuul-check", ".journal");
+
+        // The states the game was in after each number of commands; time
+        // passing between two commands adds a second state.
+        List<Set<String>> states = new ArrayList<>();
+        Game game = new Game(world, InputStream.nullInputStream(), out);
+        try(JournalWriter writer = new JournalWriter()) {
+            CommandJournal journal = writer.open(file, world);
+            game.setJournal(journal);
+            states.add(new HashSet<>(List.of(state(game))));
+            for(int i = 0; i < commands; i++) {
+                game.processCommand(COMMANDS[random.nextInt(COMMANDS.length)]);
+                states.add(new HashSet<>(List.of(state(game))));
+                if(random.nextInt(10) == 0) {
+                    game.passTime(1 + random.nextInt(120));
+                    states.get(i + 1).add(state(game));
+                }
+            }
+            journal.close();
+        }
+        String last = state(game);
+        byte[] bytes = Files.readAllBytes(file);
+        Files.delete(file);
+
+        boolean ok = true;
+        JournalReplay whole = replay(world, out, bytes, bytes.length);
+        if(whole.isTruncated() || whole.getCommandCount() != commands
+           || !state(whole.getGame()).equals(last)) {
+            System.out.println("FAILED: the whole journal replays to\n"
+                               + state(whole.getGame()) + "\ninstead of\n" + last);
+            ok = false;
+        }
+
+        int checked = 0;
+        for(int c = 0; c < CUTS && ok; c++) {
+            int length = random.nextInt(bytes.length);
+            JournalReplay cut;
+            try {
+                cut = replay(world, out, bytes, length);
+            }
+            catch(IOException e) {
+                if(length < 9) {
+                    continue;
+                }
+                System.out.println("FAILED: cut at " + length + " bytes: " + e.getMessage());
+                ok = false;
+                break;
+            }
+            int count = (int) cut.getCommandCount();
+            if(!states.get(count).contains(state(cut.getGame()))) {
+                System.out.println("FAILED: cut at " + length + " bytes, after " + count
+                                   + " commands, replays to\n" + state(cut.getGame()));
+                ok = false;
+            }
+            checked++;
+        }
+
+        System.out.printf("%d commands, journal of %d bytes%n", commands, bytes.length);
+        if(ok) {
+            System.out.println("OK: the journal and " + checked
+                               + " cut copies replay to the recorded states");
+        }
+        System.exit(ok ? 0 : 1);
+    }
+
+    /**
+     * @param game A game.
+     * @return Everything a journal or snapshot restores of the game: the
+     * room, health, seed, inventory and the rooms each item is in.
+     */
+    public static String state(Game game)
+    {
+        StringBuilder text = new StringBuilder();
+        text.append("Room ").append(game.getCurrentRoom().getId())
+            .append(", health ").append(game.getHealth())
+            .append(", seed ").append(game.getRandomSeed())
+            .append("\nInventory:");
+        Set<String> names = new TreeSet<>();
+        for(Item item : game.getInventory()) {
+            text.append(' ').append(item.getName());
+            names.add(item.getName());
+        }
+        for(Room room : game.getWorld().getRooms()) {
+            for(Item item : room.getItems()) {
+                names.add(item.getName());
+            }
+        }
+        for(String name : names) {
+            Map<Integer, Integer> rooms = new TreeMap<>();
+            for(int location : game.findItems(name).values()) {
+                rooms.merge(location, 1, Integer::sum);
+            }
+            text.append("\n").append(name).append(": ").append(rooms);
+        }
+        return text.toString();
+    }
+
+    /**
+     * Replay the first "length" bytes of a journal on a new game.
+     */
+    private static JournalReplay replay(World world, PrintStream out, byte[] bytes, int length)
+        throws IOException
+    {
+        JournalReplay replay = new JournalReplay(world, out);
+        replay.replay(new ByteArrayInputStream(bytes, 0, length));
+        return replay;
+    }
+}
@@ -0,0 +1,302 @@
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+/**
+ * This class is part of the "World of Zuul" application.
+ * "World of Zuul" is a very simple, text based adventure game.
+ *
+ * A JournalReplay rebuilds a game from a CommandJournal. The game starts
+ * in the world's start room, takes the seeds and commands in the order
+ * they were recorded and ends with the same current room, inventory and
+ * health as the game that was recorded. Nothing waits for a player, so a
+ * session that took an hour replays in a moment.
+ *
+ * The game is replayed on a world of its own, so only journals of games
+ * that had their world to themselves can be replayed. GameServer keeps
+ * no journals for a shared world, where the items a player finds also
+ * depend on what the other players did.
+ *
+ * The journal is read in large blocks and commands that repeat, which is
+ * nearly all of them, are reused instead of being made again. A journal
+ * whose last record was cut off, for example by a crash, is replayed up
+ * to that record.
+ *
+ * Run its main method with these options, followed by the journal file:
+ *
+ *     -world &lt;file&gt;   the world file or .img image the game was played on
+ *     -out &lt;file&gt;     write the game's output to a file instead of
+ *                     throwing it away
+ *
+ * @author  Ryan Rutishauser
+ * @version 2026.10.18
+ */
+
+public class JournalReplay
+{
+    private Game game;
+    private CommandWord[] words;
+    private Command[] single;
+    private Command[] recent;
+    private byte[] buffer;
+    private int position;
+    private int limit;
+    private long commands;
+    private long time;
+    private boolean truncated;
+
+    /**
+     * Main method so that journals can be replayed outside of Bluej.
+     * @param args Options as described above, then the journal file.
+     */
+    public static void main(String[] args) throws IOException
+    {
+        World world = World.campus();
+        PrintStream out = BatchRunner.discardingOutput();
+        String journal = null;
+        for(int i = 0; i < args.length; i++) {
+            switch(args[i]) {
+                case "-world":
+                    world = BatchRunner.openWorld(args[++i]);
+                    break;
+                case "-out":
+                    out = new PrintStream(new BufferedOutputStream(
+                        new FileOutputStream(args[++i]), 256 * 1024), false,
+                        StandardCharsets.UTF_8);
+                    break;
+                default:
+                    journal = args[i];
+            }
+        }
+
+        JournalReplay replay = new JournalReplay(world, out);
+        try(InputStream in = Files.newInputStream(Paths.get(journal))) {
+            replay.replay(in);
+        }
+        out.flush();
+        out.close();
+
+        System.err.println(replay.getReport());
+        System.out.println(describe(replay.getGame()));
+    }
+
+    /**
+     * Create a replay of a new game on the given world.
+     * @param world The world the journal was recorded on.
+     * @param out The output sink the game writes to.
+     */
+    public JournalReplay(World world, PrintStream out)
+    {
+        game = new Game(world, InputStream.nullInputStream(), out);
+        words = CommandWord.values();
+        single = new Command[words.length];
+        for(CommandWord word : words) {
+            single[word.ordinal()] = new Command(word, null);
+        }
+        recent = new Command[256];
+    }
+
+    /**
+     * @return The game being rebuilt.
+     */
+    public Game getGame()
+    {
+        return game;
+    }
+
+    /**
+     * Run every command of a journal, up to a command that quit the game
+     * or the end of the journal.
+     * @param journal The journal, positioned at its header.
+     * @throws IOException If the journal cannot be read, is not a journal
+     *         or was recorded on a world of a different size.
+     */
+    public void replay(InputStream journal) throws IOException
+    {
+        long start = System.nanoTime();
+        buffer = new byte[64 * 1024];
+        position = 0;
+        limit = 0;
+        if(!fill(journal, 9)) {
+            throw new IOException("Not a journal: too short");
+        }
+        if(readInt() != CommandJournal.MAGIC) {
+            throw new IOException("Not a journal");
+        }
+        int version = buffer[position++] & 0xFF;
+        if(version < 1 || version > CommandJournal.VERSION) {
+            throw new IOException("Unknown journal version " + version);
+        }
+        int rooms = readInt();
+        int size = game.getWorld().getGraph().size();
+        if(rooms != size) {
+            throw new IOException("The journal was recorded on a world of " + rooms
+                                  + " rooms, not " + size);
+        }
+
+        boolean finished = false;
+        while(!finished && fill(journal, 1)) {
+            int type = buffer[position] & 0xFF;
+            if(type != CommandJournal.SEED && type != CommandJournal.TIME
+               && (type & ~CommandJournal.HAS_WORD) >= words.length) {
+                throw new IOException("Bad record " + type + " in the journal");
+            }
+            if(type == CommandJournal.SEED) {
+                if(!fill(journal, 9)) {
+                    truncated = true;
+                    break;
+                }
+                position++;
+                long seed = ((long) readInt() << 32) | (readInt() & 0xFFFFFFFFL);
+                game.setRandomSeed(seed);
+            }
+            else if(type == CommandJournal.TIME) {
+                if(!fill(journal, 5)) {
+                    truncated = true;
+                    break;
+                }
+                position++;
+                game.passTime(readInt());
+            }
+            else if((type & CommandJournal.HAS_WORD) == 0) {
+                position++;
+                commands++;
+                finished = game.processCommand(single[type]);
+            }
+            else {
+                if(!fill(journal, 2) || !fill(journal, 2 + (buffer[position + 1] & 0xFF))) {
+                    truncated = true;
+                    break;
+                }
+                int word = type & ~CommandJournal.HAS_WORD;
+                int length = buffer[position + 1] & 0xFF;
+                position += 2;
+                Command command = commandWithWord(word, length);
+                position += length;
+                commands++;
+                finished = game.processCommand(command);
+            }
+        }
+        time += System.nanoTime() - start;
+    }
+
+    /**
+     * @return The number of commands and commands per second so far.
+     */
+    public String getReport()
+    {
+        double seconds = time / 1e9;
+        return String.format("Replayed %d commands in %.3f s (%.0f commands/s)%s",
+                             commands, seconds, commands / seconds,
+                             truncated ? "; the last record was cut off" : "");
+    }
+
+    /**
+     * @return The number of commands replayed so far.
+     */
+    public long getCommandCount()
+    {
+        return commands;
+    }
+
+    /**
+     * @return true if the journal ended in the middle of a record.
+     */
+    public boolean isTruncated()
+    {
+        return truncated;
+    }
+
+    /**
+     * @param game A game.
+     * @return The state a journal rebuilds: the current room, health and
+     * inventory, on three lines.
+     */
+    public static String describe(Game game)
+    {
+        Inventory inventory = game.getInventory();
+        return "Room: " + game.getCurrentRoom().getShortDescription()
+            + " (id " + game.getCurrentRoom().getId() + ")\n"
+            + "Health: " + game.getHealth() + "\n"
+            + "Inventory: " + inventory.size() + " items, weight " + inventory.getTotalWeight();
+    }
+
+    /**
+     * Return the command with the given word and the second word that
+     * starts at "position", reusing the last such command if it matches.
+     */
+    private Command commandWithWord(int word, int length)
+    {
+        int hash = word;
+        for(int i = 0; i < length; i++) {
+            hash = 31 * hash + buffer[position + i];
+        }
+        int slot = (hash ^ (hash >>> 16)) & (recent.length - 1);
+        Command command = recent[slot];
+        if(command != null && command.getCommandWord().ordinal() == word
+           && sameWord(command.getSecondWord(), length)) {
+            return command;
+        }
+        String second = new String(buffer, position, length, StandardCharsets.UTF_8);
+        command = new Command(words[word], second);
+        recent[slot] = command;
+        return command;
+    }
+
+    /**
+     * @return true if "word" is the ASCII word of the given length at
+     * "position".
+     */
+    private boolean sameWord(String word, int length)
+    {
+        if(word.length() != length) {
+            return false;
+        }
+        for(int i = 0; i < length; i++) {
+            if(word.charAt(i) != buffer[position + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Make sure the buffer holds at least "count" unread bytes, reading
+     * more of the journal if needed.
+     * @return false if the journal ends first.
+     */
+    private boolean fill(InputStream in, int count) throws IOException
+    {
+        if(limit - position >= count) {
+            return true;
+        }
+        System.arraycopy(buffer, position, buffer, 0, limit - position);
+        limit -= position;
+        position = 0;
+        while(limit < count) {
+            int read = in.read(buffer, limit, buffer.length - limit);
+            if(read < 0) {
+                return false;
+            }
+            limit += read;
+        }
+        return true;
+    }
+
+    /**
+     * Read a big-endian int from the buffer.
+     */
+    private int readInt()
+    {
+        int value = 0;
+        for(int i = 0; i < 4; i++) {
+            value = (value << 8) | (buffer[position++] & 0xFF);
+        }
+        return value;
+    }
+}
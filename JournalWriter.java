@@ -0,0 +1,149 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * This class is part of the "World of Zuul" application.
+ * "World of Zuul" is a very simple, text based adventure game.
+ *
+ * A JournalWriter writes the CommandJournals of many sessions from one
+ * background thread. A journal with new records puts itself in the
+ * writer's queue once; every interval the thread takes all journals from
+ * the queue and writes each one's records with a single write. When the
+ * writer is durable it also forces each file to the disk, so one forced
+ * write covers every command a session made in that interval. The
+ * commands of the last interval are what a crash can lose.
+ *
+ * Each session has a file of its own, so every journal with new records
+ * costs a forced write per interval, and with thousands of busy sessions
+ * a round of writes can take much longer than the interval. Records wait
+ * in their journal's buffer meanwhile. A journal holds at most
+ * CommandJournal.MAX_PENDING bytes that are not written yet; a game that
+ * records more waits until the writer has taken them, so a writer that
+ * falls behind slows the games down instead of filling the heap.
+ *
+ * @author  Ryan Rutishauser
+ * @version 2026.10.18
+ */
+
+public class JournalWriter implements AutoCloseable
+{
+    // The interval used when none is given (milliseconds).
+    public static final long DEFAULT_INTERVAL = 10;
+
+    private final long interval;
+    private final boolean durable;
+    private final ConcurrentLinkedQueue<CommandJournal> pending;
+    private final Thread thread;
+    private volatile boolean running;
+
+    /**
+     * Create a writer that commits every DEFAULT_INTERVAL milliseconds
+     * and forces the journals to the disk.
+     */
+    public JournalWriter()
+    {
+        this(DEFAULT_INTERVAL, true);
+    }
+
+    /**
+     * Create a writer and start its thread.
+     * @param interval How long records may wait before they are written,
+     *                 in milliseconds.
+     * @param durable true to force every commit to the disk, false to
+     *                leave that to the operating system.
+     */
+    public JournalWriter(long interval, boolean durable)
+    {
+        this.interval = TimeUnit.MILLISECONDS.toNanos(interval);
+        this.durable = durable;
+        pending = new ConcurrentLinkedQueue<>();
+        running = true;
+        thread = new Thread(this::run, "zuul-journal");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Create a new journal written by this writer.
+     * @param file The file to create or replace.
+     * @param world The world the recorded game is played on.
+     * @return The journal, ready to be given to Game.setJournal.
+     */
+    public CommandJournal open(Path file, World world) throws IOException
+    {
+        return new CommandJournal(file, world, this);
+    }
+
+    /**
+     * @return true if commits are forced to the disk.
+     */
+    public boolean isDurable()
+    {
+        return durable;
+    }
+
+    /**
+     * Write everything that is still waiting and stop the thread. Open
+     * journals should be closed first; records made afterwards are only
+     * written when their journal is closed.
+     */
+    public void close()
+    {
+        running = false;
+        LockSupport.unpark(thread);
+        try {
+            thread.join();
+        }
+        catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return true until the writer has been closed.
+     */
+    boolean isRunning()
+    {
+        return running;
+    }
+
+    /**
+     * Queue a journal that has new records.
+     * @param journal The journal.
+     */
+    void schedule(CommandJournal journal)
+    {
+        pending.add(journal);
+    }
+
+    /**
+     * The writer thread: commit once per interval until closed.
+     */
+    private void run()
+    {
+        while(running) {
+            LockSupport.parkNanos(interval);
+            commitAll();
+        }
+        commitAll();
+    }
+
+    /**
+     * Write the records of every queued journal.
+     */
+    private void commitAll()
+    {
+        CommandJournal journal;
+        while((journal = pending.poll()) != null) {
+            try {
+                journal.commit(durable);
+            }
+            catch(IOException e) {
+                journal.fail(e);
+            }
+        }
+    }
+}
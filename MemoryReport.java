@@ -0,0 +1,133 @@
+import java.io.OutputStream;
+import java.io.PrintStream;
+
+/**
+ * This class is part of the "World of Zuul" application.
+ * "World of Zuul" is a very simple, text based adventure game.
+ *
+ * MemoryReport measures how much heap each game session costs. It
+ * creates a number of sessions, keeps them all alive and reports the
+ * growth of the used heap divided by the number of sessions.
+ *
+ * Run its main method with an optional number of sessions (default
+ * 10000). Given "world" and a number of rooms instead, it reports the
+ * heap used per room and per exit of a generated grid world of that
+ * size. Given "items" and a number of items, it reports the heap used
+ * per item when that many items are read from a world file, each with
+ * its own copy of a few common descriptions, as generated worlds have.
+ * The figures are approximate; run with a fixed heap size, for
+ * example -Xms1g -Xmx1g, to get steadier numbers.
+ *
+ * @author  Ryan Rutishauser
+ * @version 2026.10.18
+ */
+
+public class MemoryReport
+{
+    /**
+     * Main method so that the report can be run outside of Bluej.
+     * @param args An optional number of sessions to create.
+     */
+    public static void main(String[] args)
+    {
+        if(args.length > 1 && args[0].equals("world")) {
+            reportWorld(Integer.parseInt(args[1]));
+            return;
+        }
+        if(args.length > 1 && args[0].equals("items")) {
+            reportItems(Integer.parseInt(args[1]));
+            return;
+        }
+        int sessions = 10000;
+        if(args.length > 0) {
+            sessions = Integer.parseInt(args[0]);
+        }
+        PrintStream out = new PrintStream(OutputStream.nullOutputStream());
+
+        // Create one game first so that shared data and classes are loaded.
+        new Game(out);
+
+        long before = usedHeap();
+        Game[] games = new Game[sessions];
+        for(int i = 0; i < sessions; i++) {
+            games[i] = new Game(out);
+        }
+        long after = usedHeap();
+
+        System.out.println("Sessions:             " + games.length);
+        System.out.println("Heap used by all:     " + (after - before) / 1024 + " KiB");
+        System.out.println("Heap per session:     " + (after - before) / sessions + " bytes");
+    }
+
+    /**
+     * Report the heap used by a generated grid world.
+     * @param size The number of rooms of the world.
+     */
+    private static void reportWorld(int size)
+    {
+        long before = usedHeap();
+        World world = Benchmark.gridWorld(size);
+        long after = usedHeap();
+
+        long exits = 0;
+        for(Room room : world.getRooms()) {
+            for(String direction : new String[] { "north", "east", "south", "west" }) {
+                if(room.getExit(direction) != null) {
+                    exits++;
+                }
+            }
+        }
+        System.out.println("Rooms:                " + world.getRooms().size());
+        System.out.println("Exits:                " + exits);
+        System.out.println("Heap used by world:   " + (after - before) / 1024 + " KiB");
+        System.out.println("Heap per room:        " + (after - before) / size + " bytes");
+        System.out.println("World heap / exits:   " + (after - before) / exits + " bytes");
+    }
+
+    /**
+     * Report the heap used by items as a world loader creates them: each
+     * description is cut out of its own line of the world file.
+     * @param count The number of items to create.
+     */
+    private static void reportItems(int count)
+    {
+        String[] lines = {
+            "item cafeteria 1 10 This is an orange. This can be eaten to improve your health",
+            "item cafeteria 1 10 This is a banana. This can be eaten to improve your health",
+            "item janitor_closet 1 10 This is an apple. This can be eaten to improve your health",
+            "item quarry 1 - This is a pebble",
+        };
+        Item[] items = new Item[count];
+        long before = usedHeap();
+        for(int i = 0; i < count; i++) {
+            String line = new String(lines[i % lines.length]);
+            int start = line.indexOf("This");
+            items[i] = new Item(line.substring(start), 1);
+        }
+        long after = usedHeap();
+
+        System.out.println("Items:                " + items.length);
+        System.out.println("Heap used by items:   " + (after - before) / 1024 + " KiB");
+        System.out.println("Heap per item:        " + (after - before) / count + " bytes");
+    }
+
+    /**
+     * @return The heap in use after asking for a full collection.
+     */
+    public static long usedHeap()
+    {
+        Runtime runtime = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        for(int i = 0; i < 5; i++) {
+            System.gc();
+            try {
+                Thread.sleep(50);
+            }
+            catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            used = Math.min(used, runtime.totalMemory() - runtime.freeMemory());
+        }
+        return used;
+    }
+}
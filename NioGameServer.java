@@ -0,0 +1,563 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * This class is part of the "World of Zuul" application.
+ * "World of Zuul" is a very simple, text based adventure game.
+ *
+ * A NioGameServer is an alternative to GameServer for very many, mostly
+ * idle connections. Instead of a thread per session, a small fixed set
+ * of event loops each owns a Selector and serves all of its connections.
+ * Input is framed into lines, each line is turned into a Command with
+ * Parser.parseCommand and passed to that session's Game.processCommand,
+ * and the captured output is written back through the loop's direct
+ * ByteBuffer.
+ *
+ * Besides its Game and the PrintStream the game prints to, an idle
+ * connection holds no read or write buffer of its own: the read and
+ * write buffers belong to the event loops, a session's captured output
+ * is dropped once it has been sent, and a session only keeps a heap
+ * buffer of unsent output while a client is slower than the output it
+ * is sent. That buffer grows by doubling, and a client that falls more
+ * than MAX_BACKLOG bytes behind is disconnected.
+ *
+ * Time passes in every session as it does in GameServer, driven by one
+ * TickScheduler whose workers print into the sessions' captured output.
+ * A session that a tick printed something for is handed back to its
+ * event loop, which sends the output at its next wakeup.
+ *
+ * @author  Ryan Rutishauser
+ * @version 2026.10.18
+ */
+
+public class NioGameServer
+{
+    // Longest input line accepted; longer lines are cut off.
+    private static final int MAX_LINE = 1024;
+    // Size of each event loop's shared read and write buffers.
+    private static final int BUFFER_SIZE = 16 * 1024;
+    // Most unsent output kept for a slow client before it is dropped.
+    private static final int MAX_BACKLOG = 256 * 1024;
+    private static final byte[] PROMPT = "> ".getBytes(StandardCharsets.US_ASCII);
+
+    private int port;
+    private EventLoop[] loops;
+    private TickScheduler ticks;
+
+    /**
+     * Main method so that the server can be run outside of Bluej.
+     * @param args An optional port number and number of event loops.
+     */
+    public static void main(String[] args) throws IOException
+    {
+        int port = GameServer.DEFAULT_PORT;
+        int threads = Runtime.getRuntime().availableProcessors();
+        if(args.length > 0) {
+            port = Integer.parseInt(args[0]);
+        }
+        if(args.length > 1) {
+            threads = Integer.parseInt(args[1]);
+        }
+        new NioGameServer(port, threads).serve();
+    }
+
+    /**
+     * Create a server that will listen on the given port.
+     * @param port The TCP port to accept players on.
+     * @param threads The number of event loop threads to use.
+     */
+    public NioGameServer(int port, int threads)
+    {
+        this.port = port;
+        loops = new EventLoop[threads];
+        ticks = new TickScheduler(threads);
+    }
+
+    /**
+     * Start the event loops and accept connections until the process is
+     * stopped. New connections are handed to the loops in turn.
+     */
+    public void serve() throws IOException
+    {
+        ticks.start();
+        for(int i = 0; i < loops.length; i++) {
+            loops[i] = new EventLoop(ticks);
+            Thread thread = new Thread(loops[i], "zuul-nio-" + i);
+            thread.start();
+        }
+        try(ServerSocketChannel server = ServerSocketChannel.open()) {
+            server.bind(new InetSocketAddress(port), 1024);
+            System.out.println("Zuul NIO server listening on port " + port
+                               + " with " + loops.length + " event loops");
+            int next = 0;
+            while(true) {
+                SocketChannel channel = server.accept();
+                loops[next].register(channel);
+                next = (next + 1) % loops.length;
+            }
+        }
+    }
+
+    /**
+     * One selector thread serving many sessions.
+     */
+    private static class EventLoop implements Runnable
+    {
+        private Selector selector;
+        private Queue<SocketChannel> pending;
+        // Sessions that a tick printed output for.
+        private Queue<SelectionKey> written;
+        private ByteBuffer readBuffer;
+        private ByteBuffer writeBuffer;
+        private TickScheduler ticks;
+        private volatile Thread thread;
+
+        /**
+         * Create an event loop with its own selector and buffers.
+         * @param ticks The scheduler time passes in the sessions by.
+         */
+        EventLoop(TickScheduler ticks) throws IOException
+        {
+            this.ticks = ticks;
+            selector = Selector.open();
+            pending = new ConcurrentLinkedQueue<>();
+            written = new ConcurrentLinkedQueue<>();
+            readBuffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            writeBuffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        }
+
+        /**
+         * Hand a newly accepted connection to this loop.
+         * @param channel The connection of the new player.
+         */
+        void register(SocketChannel channel)
+        {
+            pending.add(channel);
+            selector.wakeup();
+        }
+
+        /**
+         * Have the output a tick printed for a session sent, unless the
+         * loop itself printed it and is sending it anyway.
+         * @param key The selection key of the session's connection.
+         */
+        void written(SelectionKey key)
+        {
+            if(Thread.currentThread() != thread) {
+                written.add(key);
+                selector.wakeup();
+            }
+        }
+
+        /**
+         * Serve connections until the thread is interrupted.
+         */
+        public void run()
+        {
+            thread = Thread.currentThread();
+            while(!thread.isInterrupted()) {
+                try {
+                    selector.select();
+                    acceptPending();
+                    flushWritten();
+                    Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                    while(keys.hasNext()) {
+                        SelectionKey key = keys.next();
+                        keys.remove();
+                        handle(key);
+                    }
+                }
+                catch(IOException e) {
+                    System.err.println("Event loop error: " + e);
+                }
+            }
+        }
+
+        /**
+         * Register the connections handed over since the last select and
+         * greet their players.
+         */
+        private void acceptPending() throws IOException
+        {
+            SocketChannel channel;
+            while((channel = pending.poll()) != null) {
+                channel.configureBlocking(false);
+                channel.socket().setTcpNoDelay(true);
+                Session session = new Session();
+                SelectionKey key = channel.register(selector, SelectionKey.OP_READ, session);
+                session.output.attach(this, key);
+                session.game.printWelcome();
+                session.output.write(PROMPT, 0, PROMPT.length);
+                ticks.add(session.game);
+                flush(key, session);
+            }
+        }
+
+        /**
+         * Send the output ticks printed since the last select.
+         */
+        private void flushWritten()
+        {
+            SelectionKey key;
+            while((key = written.poll()) != null) {
+                if(key.isValid()) {
+                    try {
+                        flush(key, (Session) key.attachment());
+                    }
+                    catch(IOException | RuntimeException e) {
+                        close(key);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Deal with one ready connection, closing it on any error.
+         * @param key The selection key of the connection.
+         */
+        private void handle(SelectionKey key)
+        {
+            Session session = (Session) key.attachment();
+            try {
+                if(key.isValid() && key.isWritable()) {
+                    writePending(key, session);
+                }
+                if(key.isValid() && key.isReadable()) {
+                    read(key, session);
+                }
+            }
+            catch(IOException | RuntimeException e) {
+                close(key);
+            }
+        }
+
+        /**
+         * Read what the client has sent and run every complete line.
+         * @param key The selection key of the connection.
+         * @param session The session of the connection.
+         */
+        private void read(SelectionKey key, Session session) throws IOException
+        {
+            SocketChannel channel = (SocketChannel) key.channel();
+            readBuffer.clear();
+            int count = channel.read(readBuffer);
+            if(count < 0) {
+                close(key);
+                return;
+            }
+            readBuffer.flip();
+            while(readBuffer.hasRemaining() && !session.finished) {
+                byte b = readBuffer.get();
+                if(b == '\n') {
+                    runLine(session);
+                }
+                else if(b != '\r') {
+                    session.append(b);
+                }
+            }
+            flush(key, session);
+        }
+
+        /**
+         * Run the line collected so far as one command.
+         * @param session The session the line belongs to.
+         */
+        private void runLine(Session session)
+        {
+            String line = session.takeLine();
+            Command command = session.game.getParser().parseCommand(line);
+            session.finished = session.game.processCommand(command);
+            if(session.finished) {
+                session.out.println("Thank you for playing.  Good bye.");
+            }
+            else {
+                session.output.write(PROMPT, 0, PROMPT.length);
+            }
+        }
+
+        /**
+         * Send the output captured for a session through the loop's
+         * direct buffer. Whatever the client cannot take right now is
+         * kept in a heap buffer of the session's own until it can.
+         * @param key The selection key of the connection.
+         * @param session The session whose output is sent.
+         */
+        private void flush(SelectionKey key, Session session) throws IOException
+        {
+            SocketChannel channel = (SocketChannel) key.channel();
+            session.out.flush();
+            // Take the output as it is; a tick may print more meanwhile.
+            byte[] bytes;
+            int count;
+            synchronized(session.output) {
+                bytes = session.output.bytes;
+                count = session.output.count;
+                session.output.release();
+            }
+            int offset = 0;
+            if(!session.hasBacklog()) {
+                while(offset < count) {
+                    writeBuffer.clear();
+                    int length = Math.min(writeBuffer.capacity(), count - offset);
+                    writeBuffer.put(bytes, offset, length).flip();
+                    channel.write(writeBuffer);
+                    offset += length - writeBuffer.remaining();
+                    if(writeBuffer.hasRemaining()) {
+                        break;
+                    }
+                }
+            }
+            if(offset < count) {
+                if(!session.queue(bytes, offset, count)) {
+                    close(key);
+                    return;
+                }
+                key.interestOps(SelectionKey.OP_WRITE);
+            }
+            if(!session.hasBacklog() && session.finished) {
+                close(key);
+            }
+        }
+
+        /**
+         * Continue sending a slow client its backlog of output.
+         * @param key The selection key of the connection.
+         * @param session The session whose output is sent.
+         */
+        private void writePending(SelectionKey key, Session session) throws IOException
+        {
+            SocketChannel channel = (SocketChannel) key.channel();
+            while(session.hasBacklog()) {
+                writeBuffer.clear();
+                int length = Math.min(writeBuffer.capacity(), session.backlogEnd - session.backlogStart);
+                writeBuffer.put(session.backlog, session.backlogStart, length).flip();
+                channel.write(writeBuffer);
+                session.sent(length - writeBuffer.remaining());
+                if(writeBuffer.hasRemaining()) {
+                    break;
+                }
+            }
+            if(!session.hasBacklog()) {
+                if(session.finished) {
+                    close(key);
+                }
+                else {
+                    key.interestOps(SelectionKey.OP_READ);
+                }
+            }
+        }
+
+        /**
+         * Close a connection and forget its session.
+         * @param key The selection key of the connection.
+         */
+        private void close(SelectionKey key)
+        {
+            ticks.remove(((Session) key.attachment()).game);
+            key.cancel();
+            try {
+                key.channel().close();
+            }
+            catch(IOException e) {
+                // Already closed; nothing else to do.
+            }
+        }
+    }
+
+    /**
+     * The state of one connected player.
+     */
+    private static class Session
+    {
+        private Output output;
+        private PrintStream out;
+        private Game game;
+        private byte[] line;
+        private int lineLength;
+        // Unsent output is backlog[backlogStart] up to backlog[backlogEnd].
+        private byte[] backlog;
+        private int backlogStart;
+        private int backlogEnd;
+        private boolean finished;
+
+        /**
+         * Create a new game whose output is captured for sending.
+         */
+        Session()
+        {
+            output = new Output();
+            out = new PrintStream(output, false, StandardCharsets.UTF_8);
+            game = new Game(out);
+        }
+
+        /**
+         * Add one byte of input to the current line.
+         * @param b The byte read from the client.
+         */
+        void append(byte b)
+        {
+            if(line == null) {
+                line = new byte[64];
+            }
+            else if(lineLength == line.length) {
+                if(line.length >= MAX_LINE) {
+                    return;
+                }
+                line = Arrays.copyOf(line, line.length * 2);
+            }
+            line[lineLength++] = b;
+        }
+
+        /**
+         * @return The current line of input, which is then started afresh.
+         */
+        String takeLine()
+        {
+            if(line == null) {
+                return "";
+            }
+            String text = new String(line, 0, lineLength, StandardCharsets.UTF_8);
+            line = null;
+            lineLength = 0;
+            return text;
+        }
+
+        /**
+         * @return true if there is output the client has not taken yet.
+         */
+        boolean hasBacklog()
+        {
+            return backlog != null;
+        }
+
+        /**
+         * Keep output the client could not take yet, in a heap buffer
+         * that grows by doubling and is dropped once it has all been sent.
+         * @param bytes The output that was being sent.
+         * @param offset The first byte that was not sent.
+         * @param count The end of the output.
+         * @return false if the client would be more than MAX_BACKLOG
+         * bytes behind, in which case nothing is kept.
+         */
+        boolean queue(byte[] bytes, int offset, int count)
+        {
+            int length = count - offset;
+            int size = backlogEnd - backlogStart + length;
+            if(size > MAX_BACKLOG) {
+                return false;
+            }
+            if(backlog == null) {
+                backlog = new byte[Math.max(BUFFER_SIZE, size)];
+            }
+            else if(backlogEnd + length > backlog.length) {
+                // Move what is left to the front, in a bigger array if
+                // it does not fit.
+                byte[] to = backlog;
+                if(size > backlog.length) {
+                    to = new byte[Math.max(backlog.length * 2, size)];
+                }
+                System.arraycopy(backlog, backlogStart, to, 0, backlogEnd - backlogStart);
+                backlog = to;
+                backlogEnd -= backlogStart;
+                backlogStart = 0;
+            }
+            System.arraycopy(bytes, offset, backlog, backlogEnd, length);
+            backlogEnd += length;
+            return true;
+        }
+
+        /**
+         * Drop output from the backlog that the client has taken.
+         * @param length The number of bytes sent.
+         */
+        void sent(int length)
+        {
+            backlogStart += length;
+            if(backlogStart == backlogEnd) {
+                backlog = null;
+                backlogStart = 0;
+                backlogEnd = 0;
+            }
+        }
+    }
+
+    /**
+     * The output of a session captured since it was last sent. Its array
+     * is made when the game first prints something and dropped when the
+     * output has been sent, so an idle session keeps none. Ticks print
+     * into it from other threads, so it is only used while holding its
+     * lock, and the first output a tick prints into it is reported to
+     * its event loop.
+     */
+    private static class Output extends OutputStream
+    {
+        // Size of the array made for the first output after a send.
+        private static final int INITIAL_SIZE = 256;
+
+        private byte[] bytes;
+        private int count;
+        private EventLoop loop;
+        private SelectionKey key;
+
+        public synchronized void write(int b)
+        {
+            reserve(1);
+            bytes[count++] = (byte) b;
+        }
+
+        public synchronized void write(byte[] b, int offset, int length)
+        {
+            reserve(length);
+            System.arraycopy(b, offset, bytes, count, length);
+            count += length;
+        }
+
+        /**
+         * Tell the output which event loop sends it.
+         * @param loop The event loop of the session.
+         * @param key The selection key of the session's connection.
+         */
+        synchronized void attach(EventLoop loop, SelectionKey key)
+        {
+            this.loop = loop;
+            this.key = key;
+        }
+
+        /**
+         * Drop the captured output.
+         */
+        synchronized void release()
+        {
+            bytes = null;
+            count = 0;
+        }
+
+        /**
+         * Make room for more bytes.
+         */
+        private void reserve(int length)
+        {
+            if(count == 0 && loop != null) {
+                loop.written(key);
+            }
+            if(bytes == null) {
+                bytes = new byte[Math.max(INITIAL_SIZE, length)];
+            }
+            else if(count + length > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, count + length));
+            }
+        }
+    }
+}
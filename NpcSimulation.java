@@ -0,0 +1,308 @@
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class is part of the "World of Zuul" application.
+ * "World of Zuul" is a very simple, text based adventure game.
+ *
+ * An NpcSimulation moves many non-player characters through a shared
+ * world. Every step each character walks through a random exit of its
+ * room, gets a little hungrier, picks up food it finds, and eats what it
+ * carries when it is hungry. The food is taken from the same SharedItems
+ * the players of the world take it from, so characters and players
+ * compete for it.
+ *
+ * The characters are not objects: their state is held in one primitive
+ * array per field, indexed by character number, so a million characters
+ * take a few megabytes and a step reads the arrays in order. Moves are
+ * looked up in the world's RoomGraph, the same exits Room.getExit uses.
+ * A step is split over a ForkJoinPool in ranges of characters; each
+ * character's random choices come from its number and the step number,
+ * so no random number generator is shared between threads.
+ *
+ * Run the main method to report steps per second for a growing number of
+ * characters, for example "java NpcSimulation 100000 1000000".
+ *
+ * @author  Ryan Rutishauser
+ * @version 2026.10.18
+ */
+
+public class NpcSimulation
+{
+    // The most food a character carries.
+    public static final int MAX_CARRY = 3;
+    // The health a character starts with.
+    public static final int START_HEALTH = 20;
+    // A character eats when its health falls below this.
+    public static final int HUNGRY = 10;
+    // Characters updated by one fork-join task without splitting further.
+    private static final int LEAF = 8192;
+    // Steps between sorting the characters by room.
+    private static final int SORT_INTERVAL = 8;
+    // Character counts measured when none are given.
+    private static final int[] DEFAULT_COUNTS = { 100_000, 1_000_000, 4_000_000 };
+    // The food main puts in the rooms.
+    private static final ItemType APPLE = ItemType.of("This is an apple. This can be eaten", 1,
+                                                      true, ItemType.FOOD_HEALTH);
+
+    private final RoomGraph graph;
+    private final SharedItems items;
+    private final ForkJoinPool pool;
+    private final long seed;
+    // The state of character i is room[i], health[i] and carried[i].
+    private int[] room;
+    private int[] health;
+    private byte[] carried;
+    private long stepCount;
+    private final LongAdder takenCount;
+    private final LongAdder eatenCount;
+
+    /**
+     * Main method so that the simulation can be measured outside of Bluej.
+     * @param args Optional numbers of characters to measure.
+     */
+    public static void main(String[] args)
+    {
+        int[] counts = DEFAULT_COUNTS;
+        if(args.length > 0) {
+            counts = new int[args.length];
+            for(int i = 0; i < args.length; i++) {
+                counts[i] = Integer.parseInt(args[i]);
+            }
+        }
+        int rooms = 1_000_000;
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        System.out.println("Grid world of " + rooms + " rooms, food in every tenth, "
+                           + pool.getParallelism() + " threads");
+        World world = Benchmark.gridWorld(rooms);
+        for(int id = 5; id < rooms; id += 10) {
+            world.getRooms().get(id).setItem(new Item(APPLE));
+        }
+        for(int count : counts) {
+            // A new SharedItems gives every run all of the food.
+            NpcSimulation npcs = new NpcSimulation(world, new SharedItems(world),
+                                                   count, 42, pool);
+            for(int i = 0; i < 20; i++) {
+                npcs.step();
+            }
+            int steps = Math.max(20, 50_000_000 / count);
+            long start = System.nanoTime();
+            for(int i = 0; i < steps; i++) {
+                npcs.step();
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("%,10d characters: %8.1f steps/s, %,14.0f moves/s, "
+                              + "food taken %d, eaten %d%n",
+                              count, steps / seconds, (double) steps * count / seconds,
+                              npcs.getTakenCount(), npcs.getEatenCount());
+        }
+    }
+
+    /**
+     * Create characters spread over random rooms of a world.
+     * @param world The world they live in.
+     * @param items The items of the world, shared with its players.
+     * @param count The number of characters.
+     * @param seed The seed of all their random choices.
+     * @param pool The threads that run the steps.
+     */
+    public NpcSimulation(World world, SharedItems items, int count, long seed,
+                         ForkJoinPool pool)
+    {
+        graph = world.getGraph();
+        this.items = items;
+        this.pool = pool;
+        this.seed = seed;
+        room = new int[count];
+        health = new int[count];
+        carried = new byte[count];
+        int rooms = graph.size();
+        for(int i = 0; i < count; i++) {
+            room[i] = (int) ((mix(seed, -1, i) >>> 1) % rooms);
+            health[i] = START_HEALTH;
+        }
+        takenCount = new LongAdder();
+        eatenCount = new LongAdder();
+    }
+
+    /**
+     * Move every character one step, in parallel.
+     */
+    public void step()
+    {
+        if(stepCount % SORT_INTERVAL == 0) {
+            sortByRoom();
+        }
+        pool.invoke(new Step(0, room.length, stepCount));
+        stepCount++;
+    }
+
+    /**
+     * @return The number of characters.
+     */
+    public int size()
+    {
+        return room.length;
+    }
+
+    /**
+     * @param i The number of a character.
+     * @return The id of the room the character is in.
+     */
+    public int getRoom(int i)
+    {
+        return room[i];
+    }
+
+    /**
+     * @param i The number of a character.
+     * @return The character's health.
+     */
+    public int getHealth(int i)
+    {
+        return health[i];
+    }
+
+    /**
+     * @param i The number of a character.
+     * @return The number of food items the character carries.
+     */
+    public int getCarried(int i)
+    {
+        return carried[i];
+    }
+
+    /**
+     * @return The number of steps taken so far.
+     */
+    public long getStepCount()
+    {
+        return stepCount;
+    }
+
+    /**
+     * @return The number of food items the characters have picked up.
+     */
+    public long getTakenCount()
+    {
+        return takenCount.sum();
+    }
+
+    /**
+     * @return The number of food items the characters have eaten.
+     */
+    public long getEatenCount()
+    {
+        return eatenCount.sum();
+    }
+
+    /**
+     * Move the characters first to last - 1 one step.
+     */
+    private void update(int first, int last, long step)
+    {
+        long taken = 0;
+        long eaten = 0;
+        for(int i = first; i < last; i++) {
+            long random = mix(seed, step, i);
+            int at = room[i];
+            int exits = graph.exitCount(at);
+            if(exits > 0) {
+                at = graph.exitTarget(at, (int) ((random >>> 32) % exits));
+                room[i] = at;
+            }
+            int hp = health[i];
+            if(hp > 0) {
+                hp--;
+            }
+            int carry = carried[i];
+            if(carry < MAX_CARRY && items.hasItems(at)) {
+                Item food = items.takeFood(graph.getRoom(at));
+                if(food != null) {
+                    items.consume(food);
+                    carry++;
+                    taken++;
+                }
+            }
+            if(hp < HUNGRY && carry > 0) {
+                carry--;
+                hp += ItemType.FOOD_HEALTH;
+                eaten++;
+            }
+            health[i] = hp;
+            carried[i] = (byte) carry;
+        }
+        takenCount.add(taken);
+        eatenCount.add(eaten);
+    }
+
+    /**
+     * Renumber the characters in the order of the rooms they are in, so
+     * that a step walks through the room graph in order instead of
+     * jumping around it, and each fork-join task works on one region of
+     * the world. A counting sort, as there are no more rooms than ints.
+     */
+    private void sortByRoom()
+    {
+        int[] start = new int[graph.size() + 1];
+        for(int at : room) {
+            start[at + 1]++;
+        }
+        for(int id = 0; id < graph.size(); id++) {
+            start[id + 1] += start[id];
+        }
+        int[] newRoom = new int[room.length];
+        int[] newHealth = new int[room.length];
+        byte[] newCarried = new byte[room.length];
+        for(int i = 0; i < room.length; i++) {
+            int to = start[room[i]]++;
+            newRoom[to] = room[i];
+            newHealth[to] = health[i];
+            newCarried[to] = carried[i];
+        }
+        room = newRoom;
+        health = newHealth;
+        carried = newCarried;
+    }
+
+    /**
+     * @return A well mixed random number for character i in a step.
+     */
+    private static long mix(long seed, long step, int i)
+    {
+        long z = seed + step * 0x9E3779B97F4A7C15L + i * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * One step of a range of characters, split in halves until small.
+     */
+    private class Step extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final int first;
+        private final int last;
+        private final long step;
+
+        Step(int first, int last, long step)
+        {
+            this.first = first;
+            this.last = last;
+            this.step = step;
+        }
+
+        protected void compute()
+        {
+            if(last - first <= LEAF) {
+                update(first, last, step);
+                return;
+            }
+            int middle = (first + last) >>> 1;
+            invokeAll(new Step(first, middle, step), new Step(middle, last, step));
+        }
+    }
+}
@@ -1,3 +1,6 @@
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.util.NoSuchElementException;
 import java.util.Scanner;
 
 /**
@@ -7,7 +10,8 @@ import java.util.Scanner;
  * This parser reads user input and tries to interpret it as an "Adventure"
  * command. Every time it is called it reads a line from the terminal and
  * tries to interpret the line as a two-word command. It returns the command
- * as an object of class Command.
+ * as an object of class Command. Lines read elsewhere can be passed to
+ * parseCommand instead.
  *
  * The parser has a set of known command words. It checks user input against
  * the known commands, and if the input is not one of the known commands, it
@@ -18,42 +22,171 @@ import java.util.Scanner;
  */
 public class Parser 
 {
+    // The command words never change, so all parsers share one set.
+    private static final CommandWords COMMAND_WORDS = new CommandWords();
+    // One shared command for each command word typed on its own.
+    private static final Command[] SINGLE_WORD = new Command[CommandWord.values().length];
+    // Recently parsed two-word commands. Commands cannot be changed, so
+    // they may be handed out again to any parser on any thread.
+    private static final Command[] RECENT = new Command[256];
+
+    static {
+        for(CommandWord word : CommandWord.values()) {
+            SINGLE_WORD[word.ordinal()] = new Command(word, null);
+        }
+    }
+
     private CommandWords commands;  // holds all valid command words
-    private Scanner reader;         // source of command input
+    private InputStream in;         // where command input comes from
+    private Scanner reader;         // source of command input, made on first use
+    private PrintStream out;        // where prompts are written
 
     /**
      * Create a parser to read from the terminal window.
      */
     public Parser() 
     {
-        commands = new CommandWords();
-        reader = new Scanner(System.in);
+        this(System.in, System.out);
+    }
+
+    /**
+     * Create a parser that reads commands from the given stream and
+     * writes its prompts to the given output. Used to bind a parser to
+     * one session rather than the process console.
+     * @param in The source of command input.
+     * @param out Where prompts and command lists are written.
+     */
+    public Parser(InputStream in, PrintStream out)
+    {
+        commands = COMMAND_WORDS;
+        this.in = in;
+        this.out = out;
     }
 
     /**
-     * @return The next command from the user.
+     * @return The next command from the user. If the input has ended
+     * (for example, a network client disconnected) a QUIT command is
+     * returned so that the game finishes normally.
      */
     public Command getCommand() 
     {
         String inputLine;   // will hold the full input line
-        String word1 = null;
-        String word2 = null;
 
-        System.out.print("> ");     // print prompt
+        out.print("> ");     // print prompt
+        out.flush();
 
-        inputLine = reader.nextLine();
+        if(reader == null) {
+            reader = new Scanner(in);
+        }
+
+        try {
+            inputLine = reader.nextLine();
+        }
+        catch(NoSuchElementException e) {
+            return SINGLE_WORD[CommandWord.QUIT.ordinal()];
+        }
+
+        return parseCommand(inputLine);
+    }
+
+    /**
+     * Interpret one line of input that has already been read, without
+     * printing a prompt or blocking. This is used by front ends that
+     * receive input themselves and push it to the parser line by line.
+     *
+     * The line is scanned in place: the command word is looked up
+     * without copying it, and commands seen recently are reused, so a
+     * repeated command such as "go north" creates no new objects.
+     * @param inputLine The full input line.
+     * @return The command the line represents.
+     */
+    public Command parseCommand(CharSequence inputLine)
+    {
+        int length = inputLine.length();
 
         // Find up to two words on the line.
-        Scanner tokenizer = new Scanner(inputLine);
-        if(tokenizer.hasNext()) {
-            word1 = tokenizer.next();      // get first word
-            if(tokenizer.hasNext()) {
-                word2 = tokenizer.next();      // get second word
-                // note: we just ignore the rest of the input line.
+        int start1 = skipSpace(inputLine, 0, length);
+        int end1 = skipWord(inputLine, start1, length);
+        if(start1 == end1) {
+            return SINGLE_WORD[CommandWord.UNKNOWN.ordinal()];
+        }
+        CommandWord word1 = commands.getCommandWord(inputLine, start1, end1);
+
+        int start2 = skipSpace(inputLine, end1, length);
+        int end2 = skipWord(inputLine, start2, length);
+        // note: we just ignore the rest of the input line.
+        if(start2 == end2) {
+            return SINGLE_WORD[word1.ordinal()];
+        }
+        return twoWordCommand(word1, inputLine, start2, end2);
+    }
+
+    /**
+     * Return a command with a second word, reusing a recent command with
+     * the same words if there is one.
+     * @param word1 The command word.
+     * @param line The input line.
+     * @param start The index of the second word in the line.
+     * @param end The index just after the second word.
+     * @return The command.
+     */
+    private static Command twoWordCommand(CommandWord word1, CharSequence line,
+                                          int start, int end)
+    {
+        int hash = word1.ordinal();
+        for(int i = start; i < end; i++) {
+            hash = 31 * hash + line.charAt(i);
+        }
+        int slot = (hash ^ (hash >>> 16)) & (RECENT.length - 1);
+        Command recent = RECENT[slot];
+        if(recent != null && recent.getCommandWord() == word1
+           && sameWord(recent.getSecondWord(), line, start, end)) {
+            return recent;
+        }
+        Command command = new Command(word1, line.subSequence(start, end).toString());
+        RECENT[slot] = command;
+        return command;
+    }
+
+    /**
+     * @return true if "word" holds the same characters as the given part
+     * of the line.
+     */
+    private static boolean sameWord(String word, CharSequence line, int start, int end)
+    {
+        if(word.length() != end - start) {
+            return false;
+        }
+        for(int i = start; i < end; i++) {
+            if(word.charAt(i - start) != line.charAt(i)) {
+                return false;
             }
         }
+        return true;
+    }
 
-        return new Command(commands.getCommandWord(word1), word2);
+    /**
+     * @return The index of the first character at or after "from" that is
+     * not white space, or "end" if there is none.
+     */
+    private static int skipSpace(CharSequence line, int from, int end)
+    {
+        while(from < end && Character.isWhitespace(line.charAt(from))) {
+            from++;
+        }
+        return from;
+    }
+
+    /**
+     * @return The index of the first white space character at or after
+     * "from", or "end" if there is none.
+     */
+    private static int skipWord(CharSequence line, int from, int end)
+    {
+        while(from < end && !Character.isWhitespace(line.charAt(from))) {
+            from++;
+        }
+        return from;
     }
 
     /**
@@ -61,6 +194,6 @@ public class Parser
      */
     public void showCommands()
     {
-        commands.showAll();
+        commands.showAll(out);
     }
 }
@@ -0,0 +1,113 @@
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * This class is part of the "World of Zuul" application.
+ * "World of Zuul" is a very simple, text based adventure game.
+ *
+ * A QueuedOutput lets a thread that must never wait for a slow client,
+ * such as a worker of a TickScheduler, print to a player. What it prints
+ * goes into a buffer in memory, and send puts the buffer in a queue that
+ * a virtual thread of the player's own writes to the real output, in the
+ * same way as the mailboxes of RoomEvents. A client that stops reading
+ * then only holds up that thread, never the thread that printed. At
+ * most MAX_PENDING pieces of output wait; older ones are dropped.
+ *
+ * The real output is written while holding the same lock as the game
+ * holds for its own output, so that nothing lands in the middle of a
+ * command's output.
+ *
+ * @author  Ryan Rutishauser
+ * @version 2026.10.18
+ */
+
+public class QueuedOutput
+{
+    // Pieces of output that may wait before old ones are dropped.
+    public static final int MAX_PENDING = 64;
+
+    private final PrintStream out;
+    private final Lock outputLock;
+    private final ByteArrayOutputStream buffer;
+    private final PrintStream capture;
+    private final ConcurrentLinkedQueue<byte[]> queue;
+    private final AtomicInteger pending;
+    private final AtomicBoolean writing;
+
+    /**
+     * Create a queue in front of a player's output.
+     * @param out Where the queued output is finally written.
+     * @param outputLock Held by everything else that writes to "out"
+     *                   while it writes; the queue is written holding it.
+     */
+    public QueuedOutput(PrintStream out, Lock outputLock)
+    {
+        this.out = out;
+        this.outputLock = outputLock;
+        buffer = new ByteArrayOutputStream(64);
+        capture = new PrintStream(buffer, false, StandardCharsets.UTF_8);
+        queue = new ConcurrentLinkedQueue<>();
+        pending = new AtomicInteger();
+        writing = new AtomicBoolean();
+    }
+
+    /**
+     * @return The stream to print to. It is only to be used while holding
+     * the output lock, and what is printed is not written until send is
+     * called.
+     */
+    public PrintStream getCapture()
+    {
+        return capture;
+    }
+
+    /**
+     * Queue what was printed since the last call, if anything, and make
+     * sure a thread writes it. Called while holding the output lock.
+     */
+    public void send()
+    {
+        capture.flush();
+        if(buffer.size() == 0) {
+            return;
+        }
+        queue.add(buffer.toByteArray());
+        buffer.reset();
+        if(pending.incrementAndGet() > MAX_PENDING && queue.poll() != null) {
+            pending.decrementAndGet();
+        }
+        if(writing.compareAndSet(false, true)) {
+            Thread.ofVirtual().start(this::write);
+        }
+    }
+
+    /**
+     * Write the queued output, on the player's own thread.
+     */
+    private void write()
+    {
+        while(true) {
+            outputLock.lock();
+            try {
+                byte[] bytes;
+                while((bytes = queue.poll()) != null) {
+                    pending.decrementAndGet();
+                    out.write(bytes, 0, bytes.length);
+                }
+                out.flush();
+            }
+            finally {
+                outputLock.unlock();
+            }
+            writing.set(false);
+            if(queue.isEmpty() || !writing.compareAndSet(false, true)) {
+                return;
+            }
+        }
+    }
+}
@@ -1,7 +1,9 @@
-import java.util.Set;
-import java.util.HashMap;
-import java.util.Iterator;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
 /**
  * Class Room - a room in an adventure game.
  *
@@ -9,8 +11,23 @@ import java.util.ArrayList;
  * "World of Zuul" is a very simple, text based adventure game.  
  *
  * A "Room" represents one location in the scenery of the game.  It is 
- * connected to other rooms via exits.  For each existing exit, the room 
- * stores a reference to the neighboring room.
+ * connected to other rooms via exits.  Until the room becomes part of a
+ * World, it stores a reference to the neighboring room for each exit.
+ * After that, its exits are kept by the world's RoomGraph, where the
+ * room is known by its id, and the room only looks them up there.
+ *
+ * An exit may also have a name that is not a Direction, such as
+ * "window". Such exits are kept by the room itself and are used by
+ * "go", but the RoomGraph does not know them: routes, the reachability
+ * analysis, world images and snapshots only follow the Direction exits.
+ *
+ * The text shown to a player entering a room is built the first time it
+ * is asked for and kept, since after the world is built the exits and
+ * items almost never change. The text is kept together with the version
+ * of the room it was built from: the graph's exit version and a count of
+ * the room's own changes. It is built again once either has moved on,
+ * whether an exit was changed through the Room or through its RoomGraph,
+ * and text built while a change was being made is never taken for new.
  * 
  * @author  Michael Kölling and David J. Barnes
  * @version 2016.02.29
@@ -19,8 +36,18 @@ import java.util.ArrayList;
 public class Room 
 {
     private String description;
-    private HashMap<String, Room> exits; // stores exits of this room.
-    private ArrayList<Item> items;
+    private RoomGraph graph;             // holds the exits once in a world.
+    private int id;                      // this room's id in the graph.
+    private Room[] pendingExits;         // exits set before joining a graph.
+    private HashMap<String, Room> namedExits; // exits that are no Direction.
+    private ArrayList<Item> items;       // null until the first item.
+    private List<Item> itemView;         // read-only view of items.
+    // Rendered text, built on first use, with the version it shows.
+    private volatile Rendered longDescription;
+    private volatile Rendered itemString;
+    private volatile Rendered fullDescription;
+    // Counts changes to the items and to the exits set before joining.
+    private volatile int changes;
 
     /**
      * Create a room described "description". Initially, it has
@@ -31,32 +58,57 @@ public class Room
     public Room(String description) 
     {
         this.description = description;
-        exits = new HashMap<>();
-        items = new ArrayList<>();
+        id = -1;
     }
     
+    /**
+     * Create a room that is part of a graph from the start. Used for
+     * rooms that are created when they are first asked for.
+     * @param description The room's description.
+     * @param graph The graph holding the room's exits.
+     * @param id The id of the room in that graph.
+     */
+    Room(String description, RoomGraph graph, int id)
+    {
+        this.description = description;
+        this.graph = graph;
+        this.id = id;
+    }
+
     /**
      * Allows items to be associated with rooms.
      * @param name of item being passed in.
      */
     public void setItem(Item item){
         if (item != null){
+            if (items == null){
+                items = new ArrayList<>();
+                itemView = Collections.unmodifiableList(items);
+            }
             items.add(item);    
+            itemsChanged();
         }   
     }
     
     /**
-     * @return arrayList of items room holds to be retreived.
+     * @return read-only list of the items the room holds. Games keep
+     * their own changes to it in an ItemOverlay.
      */
-    public ArrayList getItems(){
-        return items;
+    public List<Item> getItems(){
+        if (itemView == null){
+            return Collections.emptyList();
+        }
+        return itemView;
     }
     
     /**
      * Removes items from a room.
      */
     public void removeItems(){
-        items.clear();
+        if (items != null){
+            items.clear();
+        }
+        itemsChanged();
     }
 
     
@@ -64,27 +116,180 @@ public class Room
      * @return number of items a room contains.
      */
     public int numberItem(){
-        return items.size();
+        return getItems().size();
     }
     
     /**
      * Prints description and weight of item.
+     * @param out Where the item list is printed.
+     */
+    public void printItem(PrintStream out){
+        out.print(getItemString());
+    }
+
+    /**
+     * Return the description and weight of each item, one per line.
+     * @return The item listing of this room, empty if it has no items.
+     */
+    public String getItemString()
+    {
+        long version = version();
+        Rendered rendered = itemString;
+        if(rendered == null || rendered.version != version) {
+            StringBuilder builder = new StringBuilder();
+            for(Item i : getItems()) {
+                builder.append(i.getDescription()).append(". The weight of the ")
+                       .append("item is ").append(i.getWeight()).append('\n');
+            }
+            rendered = new Rendered(version, builder.toString(), null);
+            itemString = rendered;
+        }
+        return rendered.text;
+    }
+
+    /**
+     * Return what a player entering the room is shown: the long
+     * description, a line break and the item listing, encoded as UTF-8
+     * so that it can be written to a network session as it is.
+     * The array is shared and must not be changed.
+     * @return The encoded description.
+     */
+    public byte[] getFullDescriptionBytes()
+    {
+        long version = version();
+        Rendered rendered = fullDescription;
+        if(rendered == null || rendered.version != version) {
+            byte[] bytes = (getLongDescription() + "\n" + getItemString())
+                           .getBytes(StandardCharsets.UTF_8);
+            rendered = new Rendered(version, null, bytes);
+            fullDescription = rendered;
+        }
+        return rendered.bytes;
+    }
+
+    /**
+     * Make the rendered item listing out of date after the items have
+     * changed.
+     */
+    private void itemsChanged()
+    {
+        changes++;
+    }
+
+    /**
+     * @return The version of what the room's text shows: the exit version
+     * of its graph in the high half, and the count of the room's own
+     * changes in the low half. It is read before text is built, so text
+     * built during a change is out of date as soon as the change is done.
+     */
+    private long version()
+    {
+        RoomGraph g = graph;
+        long exits = g == null ? 0 : g.getVersion();
+        return exits << 32 | (changes & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Define an exit from this room.
+     * @param direction The direction of the exit, or any other name for
+     *                  an exit that only this room knows.
+     * @param neighbor  The room to which the exit leads, or null to
+     *                  remove the exit.
      */
-    public void printItem(){
-        for(Item i: items){
-            System.out.println(i.getDescription() + ". The weight of the " +
-            "item is " + i.getWeight());
+    public void setExit(String direction, Room neighbor) 
+    {
+        Direction exit = Direction.fromString(direction);
+        if(exit != null) {
+            setExit(exit, neighbor);
+            return;
         }
+        if(namedExits == null) {
+            namedExits = new HashMap<>();
+        }
+        if(neighbor == null) {
+            namedExits.remove(direction);
+        }
+        else {
+            namedExits.put(direction, neighbor);
+        }
+        changes++;
     }
 
     /**
      * Define an exit from this room.
      * @param direction The direction of the exit.
-     * @param neighbor  The room to which the exit leads.
+     * @param neighbor  The room to which the exit leads, or null to
+     *                  remove the exit.
      */
-    public void setExit(String direction, Room neighbor) 
+    public void setExit(Direction direction, Room neighbor)
+    {
+        if(graph != null) {
+            int target = -1;
+            if(neighbor != null) {
+                if(neighbor.graph != graph) {
+                    throw new IllegalArgumentException("Exit leads out of the world");
+                }
+                target = neighbor.id;
+            }
+            graph.setExit(id, direction, target);
+        }
+        else {
+            if(pendingExits == null) {
+                pendingExits = new Room[Direction.count()];
+            }
+            pendingExits[direction.ordinal()] = neighbor;
+            changes++;
+        }
+    }
+
+    /**
+     * @return The id of this room in its world, or -1 if it is not part
+     * of a world yet.
+     */
+    public int getId()
+    {
+        return id;
+    }
+
+    /**
+     * @return The graph holding this room's exits, or null if the room
+     * is not part of a world yet.
+     */
+    public RoomGraph getGraph()
+    {
+        return graph;
+    }
+
+    /**
+     * Make this room part of a graph. Called by RoomGraph only.
+     * @param graph The graph the room becomes part of.
+     * @param id The id of the room in that graph.
+     */
+    void join(RoomGraph graph, int id)
+    {
+        if(this.graph != null) {
+            throw new IllegalStateException("Room is already part of a world: "
+                                            + description);
+        }
+        this.graph = graph;
+        this.id = id;
+    }
+
+    /**
+     * @return The exits set before the room joined a graph, indexed by
+     * Direction ordinal, or null if none were set.
+     */
+    Room[] getPendingExits()
+    {
+        return pendingExits;
+    }
+
+    /**
+     * Forget the exits set before joining, once the graph holds them.
+     */
+    void clearPendingExits()
     {
-        exits.put(direction, neighbor);
+        pendingExits = null;
     }
 
     /**
@@ -104,8 +309,15 @@ public class Room
      */
     public String getLongDescription()
     {
-        return "You are " + description + ".\n" + getExitString();
-    } 
+        long version = version();
+        Rendered rendered = longDescription;
+        if(rendered == null || rendered.version != version) {
+            rendered = new Rendered(version, "You are " + description + ".\n" + getExitString(),
+                                    null);
+            longDescription = rendered;
+        }
+        return rendered.text;
+    }
 
     /**
      * Return a string describing the room's exits, for example
@@ -114,12 +326,25 @@ public class Room
      */
     private String getExitString()
     {
-        String returnString = "Exits:";
-        Set<String> keys = exits.keySet();
-        for(String exit : keys) {
-            returnString += " " + exit;
+        StringBuilder returnString = new StringBuilder("Exits:");
+        if(graph != null) {
+            for(int n = 0; n < graph.exitCount(id); n++) {
+                returnString.append(' ').append(graph.exitDirection(id, n));
+            }
+        }
+        else if(pendingExits != null) {
+            for(int d = 0; d < pendingExits.length; d++) {
+                if(pendingExits[d] != null) {
+                    returnString.append(' ').append(Direction.fromOrdinal(d));
+                }
+            }
+        }
+        if(namedExits != null) {
+            for(String name : namedExits.keySet()) {
+                returnString.append(' ').append(name);
+            }
         }
-        return returnString;
+        return returnString.toString();
     }
 
     /**
@@ -130,7 +355,47 @@ public class Room
      */
     public Room getExit(String direction) 
     {
-        return exits.get(direction);
+        Direction exit = Direction.fromString(direction);
+        if(exit == null) {
+            return namedExits == null ? null : namedExits.get(direction);
+        }
+        return getExit(exit);
     }
-}
 
+    /**
+     * Return the room that is reached if we go from this room in the
+     * given direction. If there is no room in that direction, return null.
+     * @param direction The exit's direction.
+     * @return The room in the given direction.
+     */
+    public Room getExit(Direction direction)
+    {
+        if(graph != null) {
+            int target = graph.getExit(id, direction);
+            return target < 0 ? null : graph.getRoom(target);
+        }
+        if(pendingExits != null) {
+            return pendingExits[direction.ordinal()];
+        }
+        return null;
+    }
+
+    /**
+     * Text rendered for a room, with the version of the room it shows.
+     * Replaced as a whole, so a reader sees the text and its version
+     * together.
+     */
+    private static class Rendered
+    {
+        final long version;
+        final String text;
+        final byte[] bytes;
+
+        Rendered(long version, String text, byte[] bytes)
+        {
+            this.version = version;
+            this.text = text;
+            this.bytes = bytes;
+        }
+    }
+}
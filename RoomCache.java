@@ -0,0 +1,195 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class is part of the "World of Zuul" application.
+ * "World of Zuul" is a very simple, text based adventure game.
+ *
+ * A RoomCache holds the Room objects of a generated RoomGraph, whose
+ * rooms are far too many to keep. A room is made by the graph's
+ * RoomFactory the first time it is asked for, and made again, the same
+ * as before, if it is asked for after it was dropped.
+ *
+ * The rooms used most recently are kept in a fixed number of slots. The
+ * slots are split into sets of WAYS; a room can only be in the set its
+ * id hashes to, and a new room takes the place of the one in its set
+ * that was used longest ago. Looking up a room in the slots takes no
+ * lock, so hot rooms are found as fast as in an array.
+ *
+ * A room that has left the slots is only dropped once nothing else uses
+ * it either. Until then, for example while a player stands in it or a
+ * game keeps its changed items, the same Room object is found again
+ * through a weak reference. So every room has at most one Room object at
+ * a time, and a room whose items a game changed is kept as long as that
+ * game keeps the changes.
+ *
+ * @author  Ryan Rutishauser
+ * @version 2026.10.18
+ */
+
+public class RoomCache
+{
+    // Slots in each set.
+    public static final int WAYS = 4;
+    private static final VarHandle SLOTS = MethodHandles.arrayElementVarHandle(Room[].class);
+
+    private final RoomGraph graph;
+    private final RoomGraph.RoomFactory factory;
+    private final Room[] slots;
+    // When the room in each slot was last used, by the "uses" clock.
+    private final long[] lastUse;
+    private final int setMask;
+    // Every room still in use anywhere, by id.
+    private final ConcurrentHashMap<Integer, Held> held;
+    private final ReferenceQueue<Room> dropped;
+    private final AtomicLong uses;
+    private final AtomicLong createdCount;
+
+    /**
+     * Create an empty cache.
+     * @param graph The graph the rooms belong to.
+     * @param factory Makes a room from its id.
+     * @param capacity The number of rooms kept when nothing else uses
+     *                 them; rounded up to a power of two of at least WAYS.
+     */
+    public RoomCache(RoomGraph graph, RoomGraph.RoomFactory factory, int capacity)
+    {
+        this.graph = graph;
+        this.factory = factory;
+        int needed = (capacity + WAYS - 1) / WAYS;
+        int sets = needed <= 1 ? 1 : Integer.highestOneBit(needed - 1) << 1;
+        slots = new Room[sets * WAYS];
+        lastUse = new long[sets * WAYS];
+        setMask = sets - 1;
+        held = new ConcurrentHashMap<>();
+        dropped = new ReferenceQueue<>();
+        uses = new AtomicLong();
+        createdCount = new AtomicLong();
+    }
+
+    /**
+     * @param id The id of a room.
+     * @return The room, made if it is not held.
+     */
+    public Room get(int id)
+    {
+        int set = set(id) * WAYS;
+        for(int slot = set; slot < set + WAYS; slot++) {
+            Room room = (Room) SLOTS.getAcquire(slots, slot);
+            if(room != null && room.getId() == id) {
+                // Racy, but a lost update only makes the order less exact.
+                lastUse[slot] = uses.getPlain() + 1;
+                uses.setPlain(lastUse[slot]);
+                return room;
+            }
+        }
+        Room room = find(id);
+        keep(set, room);
+        return room;
+    }
+
+    /**
+     * @return The number of rooms made so far, counting rooms made again.
+     */
+    public long getCreatedCount()
+    {
+        return createdCount.get();
+    }
+
+    /**
+     * @return The number of rooms that have a Room object now.
+     */
+    public int getHeldCount()
+    {
+        purge();
+        return held.size();
+    }
+
+    /**
+     * @return The number of rooms kept in the slots.
+     */
+    public int getCapacity()
+    {
+        return slots.length;
+    }
+
+    /**
+     * Find a room that has left the slots but is still used, or make it.
+     */
+    private Room find(int id)
+    {
+        purge();
+        while(true) {
+            Held old = held.get(id);
+            Room room = old == null ? null : old.get();
+            if(room != null) {
+                return room;
+            }
+            room = factory.createRoom(graph, id);
+            Held mine = new Held(room, id, dropped);
+            if(old == null ? held.putIfAbsent(id, mine) == null : held.replace(id, old, mine)) {
+                createdCount.incrementAndGet();
+                return room;
+            }
+            // Another thread made the room first: use its object.
+        }
+    }
+
+    /**
+     * Put a room in its set, in place of the room used longest ago.
+     */
+    private void keep(int set, Room room)
+    {
+        int oldest = set;
+        for(int slot = set; slot < set + WAYS; slot++) {
+            if(SLOTS.getAcquire(slots, slot) == null) {
+                oldest = slot;
+                break;
+            }
+            if(lastUse[slot] < lastUse[oldest]) {
+                oldest = slot;
+            }
+        }
+        lastUse[oldest] = uses.getPlain() + 1;
+        uses.setPlain(lastUse[oldest]);
+        SLOTS.setRelease(slots, oldest, room);
+    }
+
+    /**
+     * Forget the rooms the garbage collector has dropped.
+     */
+    private void purge()
+    {
+        Held gone;
+        while((gone = (Held) dropped.poll()) != null) {
+            held.remove(gone.id, gone);
+        }
+    }
+
+    /**
+     * @return The set a room id belongs to.
+     */
+    private int set(int id)
+    {
+        int h = id * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & setMask;
+    }
+
+    /**
+     * A weak reference to a room that remembers the room's id.
+     */
+    private static class Held extends WeakReference<Room>
+    {
+        final int id;
+
+        Held(Room room, int id, ReferenceQueue<Room> queue)
+        {
+            super(room, queue);
+            this.id = id;
+        }
+    }
+}
@@ -0,0 +1,419 @@
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * This class is part of the "World of Zuul" application.
+ * "World of Zuul" is a very simple, text based adventure game.
+ *
+ * RoomEvents tells the players of a shared world what the others in
+ * their room do: who arrives, who leaves and what they pick up or drop.
+ * Every room has the set of its occupants, kept up to date as games move
+ * their players.
+ *
+ * A player's action only adds an event to a queue, so the player never
+ * waits for anyone else. Once per tick a background thread takes all
+ * queued events and turns the events of each room into one batch of
+ * text, made once and shared by every occupant of the room. Each
+ * occupant has a mailbox of batches, written to its output by a virtual
+ * thread of its own, so an occupant that reads slowly only holds up
+ * itself. An occupant that falls more than MAX_PENDING batches behind
+ * loses the oldest ones. The work per tick is one batch per busy room
+ * and one mailbox entry per occupant, never one message per event and
+ * occupant.
+ *
+ * A game writes to the same output as its occupant's thread. The game
+ * hands its own lock to join and holds it while it writes a command's
+ * output, and the occupant's thread holds it while it writes batches, so
+ * the lines of events never land in the middle of a command's output.
+ *
+ * @author  Ryan Rutishauser
+ * @version 2026.10.18
+ */
+
+public class RoomEvents implements AutoCloseable
+{
+    // The tick used when none is given (milliseconds).
+    public static final long DEFAULT_TICK = 50;
+    // Batches an occupant may have waiting before old ones are dropped.
+    public static final int MAX_PENDING = 64;
+
+    private final long tick;
+    // The occupants of each room, made when the room is first entered.
+    private final AtomicReferenceArray<Set<Occupant>> occupants;
+    private final ConcurrentLinkedQueue<Event> events;
+    private final ExecutorService deliverers;
+    private final AtomicInteger playerCount;
+    private final AtomicLong batchCount;
+    private final AtomicLong droppedCount;
+    private final Thread thread;
+    private volatile boolean running;
+
+    /**
+     * Create the events of a world with a tick of DEFAULT_TICK.
+     * @param world The shared world.
+     */
+    public RoomEvents(World world)
+    {
+        this(world, DEFAULT_TICK);
+    }
+
+    /**
+     * Create the events of a world and start its thread.
+     * @param world The shared world.
+     * @param tick How long events are gathered before they are sent, in
+     *             milliseconds.
+     */
+    public RoomEvents(World world, long tick)
+    {
+        this.tick = TimeUnit.MILLISECONDS.toNanos(tick);
+        occupants = new AtomicReferenceArray<>(world.getGraph().size());
+        events = new ConcurrentLinkedQueue<>();
+        deliverers = Executors.newVirtualThreadPerTaskExecutor();
+        playerCount = new AtomicInteger();
+        batchCount = new AtomicLong();
+        droppedCount = new AtomicLong();
+        running = true;
+        thread = new Thread(this::run, "zuul-room-events");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Add a player to a room, telling the others there that the player
+     * has arrived. Nothing else may write to "out".
+     * @param room The room the player starts in.
+     * @param out Where the events of the player's rooms are written.
+     * @return The player's place in the events.
+     */
+    public Occupant join(Room room, PrintStream out)
+    {
+        return join(room, out, new ReentrantLock());
+    }
+
+    /**
+     * Add a player to a room, telling the others there that the player
+     * has arrived.
+     * @param room The room the player starts in.
+     * @param out Where the events of the player's rooms are written.
+     * @param outputLock Held by everything else that writes to "out"
+     *                   while it writes; events are written holding it.
+     * @return The player's place in the events, for Game to keep.
+     */
+    public Occupant join(Room room, PrintStream out, Lock outputLock)
+    {
+        Occupant occupant = new Occupant(playerCount.incrementAndGet(), out, outputLock);
+        occupant.moveTo(room);
+        return occupant;
+    }
+
+    /**
+     * Tell the players in a room of something that happened there
+     * without any player doing it.
+     * @param room The room.
+     * @param text What happened, such as "Fresh food has been put out."
+     */
+    public void announce(Room room, String text)
+    {
+        events.add(new Event(room.getId(), null, text));
+    }
+
+    /**
+     * @param room A room.
+     * @return The number of players in the room.
+     */
+    public int occupantsOf(Room room)
+    {
+        Set<Occupant> set = occupants.get(room.getId());
+        return set == null ? 0 : set.size();
+    }
+
+    /**
+     * @return The number of batches given to occupants so far.
+     */
+    public long getBatchCount()
+    {
+        return batchCount.get();
+    }
+
+    /**
+     * @return The number of batches dropped because an occupant was too
+     * far behind.
+     */
+    public long getDroppedCount()
+    {
+        return droppedCount.get();
+    }
+
+    /**
+     * Send the events still waiting and stop the threads.
+     */
+    public void close()
+    {
+        running = false;
+        LockSupport.unpark(thread);
+        try {
+            thread.join();
+        }
+        catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        deliverers.close();
+    }
+
+    /**
+     * @return The occupants of a room, making the set the first time.
+     */
+    private Set<Occupant> occupantSet(int room)
+    {
+        Set<Occupant> set = occupants.get(room);
+        if(set == null) {
+            occupants.compareAndSet(room, null, ConcurrentHashMap.newKeySet());
+            set = occupants.get(room);
+        }
+        return set;
+    }
+
+    /**
+     * The event thread: send the gathered events once per tick until
+     * closed.
+     */
+    private void run()
+    {
+        while(running) {
+            LockSupport.parkNanos(tick);
+            sendAll();
+        }
+        sendAll();
+    }
+
+    /**
+     * Make one batch of the waiting events of each room and give it to
+     * every occupant of the room.
+     */
+    private void sendAll()
+    {
+        HashMap<Integer, ArrayList<Event>> byRoom = new HashMap<>();
+        Event event;
+        while((event = events.poll()) != null) {
+            byRoom.computeIfAbsent(event.room, room -> new ArrayList<>()).add(event);
+        }
+        for(Map.Entry<Integer, ArrayList<Event>> entry : byRoom.entrySet()) {
+            Set<Occupant> set = occupants.get(entry.getKey());
+            if(set == null || set.isEmpty()) {
+                continue;
+            }
+            Batch batch = new Batch(entry.getValue());
+            for(Occupant occupant : set) {
+                occupant.deliver(batch);
+            }
+        }
+    }
+
+    /**
+     * Something one player did in a room.
+     */
+    private static class Event
+    {
+        final int room;
+        final Occupant actor;
+        final String text;
+
+        Event(int room, Occupant actor, String text)
+        {
+            this.room = room;
+            this.actor = actor;
+            this.text = text;
+        }
+    }
+
+    /**
+     * The events of one room in one tick, as the bytes sent to its
+     * occupants. The players who caused events are not told of their
+     * own, so for them only the other events' lines are written.
+     */
+    private static class Batch
+    {
+        private final byte[] bytes;
+        // Where the line of each event starts; the last entry is the end.
+        private final int[] starts;
+        private final Occupant[] actors;
+        private final Set<Occupant> actorSet;
+
+        Batch(ArrayList<Event> events)
+        {
+            ByteArrayOutputStream text = new ByteArrayOutputStream(events.size() * 32);
+            starts = new int[events.size() + 1];
+            actors = new Occupant[events.size()];
+            actorSet = Collections.newSetFromMap(new IdentityHashMap<>());
+            for(int i = 0; i < events.size(); i++) {
+                Event event = events.get(i);
+                starts[i] = text.size();
+                actors[i] = event.actor;
+                actorSet.add(event.actor);
+                text.writeBytes((event.text + "\n").getBytes(StandardCharsets.UTF_8));
+            }
+            starts[events.size()] = text.size();
+            bytes = text.toByteArray();
+        }
+
+        /**
+         * Write the events that the given occupant did not cause.
+         */
+        void writeTo(Occupant reader, PrintStream out)
+        {
+            if(!actorSet.contains(reader)) {
+                out.write(bytes, 0, bytes.length);
+                return;
+            }
+            // Write each run of other players' events at once.
+            int from = 0;
+            for(int i = 0; i <= actors.length; i++) {
+                if(i == actors.length || actors[i] == reader) {
+                    if(starts[i] > from) {
+                        out.write(bytes, from, starts[i] - from);
+                    }
+                    if(i < actors.length) {
+                        from = starts[i + 1];
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * One player in the shared world: the room the player is in, and the
+     * batches waiting to be written to the player.
+     */
+    public class Occupant
+    {
+        private final String name;
+        private final PrintStream out;
+        private final Lock outputLock;
+        private final ConcurrentLinkedQueue<Batch> mailbox;
+        private final AtomicInteger pending;
+        private final AtomicBoolean writing;
+        private volatile int room;
+
+        private Occupant(int number, PrintStream out, Lock outputLock)
+        {
+            name = "Player " + number;
+            this.out = out;
+            this.outputLock = outputLock;
+            mailbox = new ConcurrentLinkedQueue<>();
+            pending = new AtomicInteger();
+            writing = new AtomicBoolean();
+            room = -1;
+        }
+
+        /**
+         * @return The name the other players know this player by.
+         */
+        public String getName()
+        {
+            return name;
+        }
+
+        /**
+         * Move the player to another room, telling the occupants of both.
+         * @param next The room the player enters.
+         */
+        public void moveTo(Room next)
+        {
+            leaveRoom();
+            room = next.getId();
+            occupantSet(room).add(this);
+            announce("has arrived.");
+        }
+
+        /**
+         * Tell the others in the player's room what the player did.
+         * @param action What the player did, such as "picked up the apple."
+         */
+        public void announce(String action)
+        {
+            int current = room;
+            if(current >= 0) {
+                events.add(new Event(current, this, name + " " + action));
+            }
+        }
+
+        /**
+         * Take the player out of the world, telling the others in the
+         * player's room.
+         */
+        public void leave()
+        {
+            leaveRoom();
+            room = -1;
+        }
+
+        private void leaveRoom()
+        {
+            if(room >= 0) {
+                announce("has left.");
+                occupantSet(room).remove(this);
+            }
+        }
+
+        /**
+         * Put a batch in the mailbox and make sure a thread writes it.
+         */
+        private void deliver(Batch batch)
+        {
+            batchCount.incrementAndGet();
+            mailbox.add(batch);
+            if(pending.incrementAndGet() > MAX_PENDING && mailbox.poll() != null) {
+                pending.decrementAndGet();
+                droppedCount.incrementAndGet();
+            }
+            if(writing.compareAndSet(false, true)) {
+                deliverers.execute(this::write);
+            }
+        }
+
+        /**
+         * Write the waiting batches, on the occupant's own thread, between
+         * the game's own output.
+         */
+        private void write()
+        {
+            while(true) {
+                outputLock.lock();
+                try {
+                    Batch batch;
+                    while((batch = mailbox.poll()) != null) {
+                        pending.decrementAndGet();
+                        batch.writeTo(this, out);
+                    }
+                    out.flush();
+                }
+                finally {
+                    outputLock.unlock();
+                }
+                writing.set(false);
+                if(mailbox.isEmpty() || !writing.compareAndSet(false, true)) {
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,660 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * This class is part of the "World of Zuul" application.
+ * "World of Zuul" is a very simple, text based adventure game.
+ *
+ * A RoomGraph holds the exits of all rooms of a world in a few primitive
+ * arrays. Every room has an int id, its position in the world. The exits
+ * of room "id" are entries first[id] to first[id + 1] - 1 of two
+ * parallel arrays: the direction of each exit and the id of the room it
+ * leads to. The exits of a room are kept in Direction order.
+ *
+ * Rooms are thin views over the graph: a Room asks the graph for its
+ * exits by id. Exits are mostly set up once when the world is made, so
+ * changing an exit afterwards is allowed but copies the arrays.
+ * An ExitListener can be told of every change.
+ *
+ * A graph can also read its exits straight from buffers, such as the
+ * memory-mapped regions of a WorldImage, and create its Room objects
+ * only when each one is first asked for.
+ *
+ * A generated graph has no arrays at all: an ExitGenerator works out the
+ * exits of each room from its id, and the rooms are made on demand and
+ * kept in a RoomCache of bounded size, so the graph may have billions of
+ * rooms. Its exits cannot be changed.
+ *
+ * @author  Ryan Rutishauser
+ * @version 2026.10.18
+ */
+
+public class RoomGraph
+{
+    // Used to publish rooms that are created when first asked for.
+    private static final VarHandle ROOMS = MethodHandles.arrayElementVarHandle(Room[].class);
+
+    private Room[] rooms;
+    private int size;
+    private RoomFactory factory;         // creates missing rooms, or null.
+    private ExitGenerator generator;     // works out exits, or null.
+    private RoomCache cache;             // rooms of a generated graph.
+    private List<Room> roomView;
+    // The exit arrays; replaced as a whole when an exit is added or removed.
+    private volatile Adjacency adjacency;
+    // Counts the changes to the exits, so that results computed from them
+    // can tell when they are out of date.
+    private volatile int version;
+    private final CopyOnWriteArrayList<ExitListener> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Make the graph of the given rooms from the exits that were set on
+     * them. Each room gets its position in the list as its id.
+     * @param roomList The rooms, none of which may be part of a graph yet.
+     * @return The graph.
+     */
+    public static RoomGraph of(List<Room> roomList)
+    {
+        return new RoomGraph(roomList);
+    }
+
+    /**
+     * Create the graph of the given rooms from their exits. The rooms are
+     * handed the graph before it is complete, so only of() may call this.
+     */
+    private RoomGraph(List<Room> roomList)
+    {
+        rooms = roomList.toArray(new Room[0]);
+        size = rooms.length;
+        roomView = new RoomList();
+        for(int id = 0; id < rooms.length; id++) {
+            rooms[id].join(this, id);
+        }
+
+        int[] first = new int[rooms.length + 1];
+        for(int id = 0; id < rooms.length; id++) {
+            first[id + 1] = first[id] + countExits(rooms[id].getPendingExits());
+        }
+        byte[] direction = new byte[first[rooms.length]];
+        int[] target = new int[first[rooms.length]];
+        for(int id = 0; id < rooms.length; id++) {
+            Room[] exits = rooms[id].getPendingExits();
+            int next = first[id];
+            for(int d = 0; exits != null && d < exits.length; d++) {
+                if(exits[d] != null) {
+                    if(exits[d].getGraph() != this) {
+                        throw new IllegalArgumentException("Exit from "
+                            + rooms[id].getShortDescription() + " leads out of the world");
+                    }
+                    direction[next] = (byte) d;
+                    target[next] = exits[d].getId();
+                    next++;
+                }
+            }
+            rooms[id].clearPendingExits();
+        }
+        adjacency = new Adjacency(first, direction, target);
+    }
+
+    /**
+     * Make the graph of the given rooms from a list of exits given as
+     * parallel arrays, as a loader reading a world file collects them.
+     * Each room gets its position in the list as its id. If a room has
+     * two exits in the same direction, the later one is kept.
+     * @param roomList The rooms, none of which may be part of a graph yet.
+     * @param from The id of the room each exit leaves from.
+     * @param direction The direction ordinal of each exit.
+     * @param to The id of the room each exit leads to.
+     * @param count The number of exits in the arrays.
+     * @return The graph.
+     */
+    public static RoomGraph of(List<Room> roomList, int[] from, byte[] direction, int[] to,
+                               int count)
+    {
+        return new RoomGraph(roomList, from, direction, to, count);
+    }
+
+    /**
+     * Create the graph of the given rooms from a list of exits. The rooms
+     * are handed the graph before it is complete, so only of() may call
+     * this.
+     */
+    private RoomGraph(List<Room> roomList, int[] from, byte[] direction, int[] to, int count)
+    {
+        rooms = roomList.toArray(new Room[0]);
+        size = rooms.length;
+        roomView = new RoomList();
+        for(int id = 0; id < rooms.length; id++) {
+            rooms[id].join(this, id);
+        }
+
+        // Sort the exits by the room they leave from, keeping their order.
+        int[] first = new int[rooms.length + 1];
+        for(int i = 0; i < count; i++) {
+            first[from[i] + 1]++;
+        }
+        for(int id = 0; id < rooms.length; id++) {
+            first[id + 1] += first[id];
+        }
+        int[] next = Arrays.copyOf(first, rooms.length);
+        byte[] sortedDirection = new byte[count];
+        int[] sortedTarget = new int[count];
+        for(int i = 0; i < count; i++) {
+            int position = next[from[i]]++;
+            sortedDirection[position] = direction[i];
+            sortedTarget[position] = to[i];
+        }
+
+        // Put each room's exits in Direction order and drop the earlier of
+        // two exits in the same direction.
+        int kept = 0;
+        int start = 0;
+        for(int id = 0; id < rooms.length; id++) {
+            int end = first[id + 1];
+            for(int i = start + 1; i < end; i++) {
+                byte d = sortedDirection[i];
+                int t = sortedTarget[i];
+                int j = i - 1;
+                while(j >= start && sortedDirection[j] > d) {
+                    sortedDirection[j + 1] = sortedDirection[j];
+                    sortedTarget[j + 1] = sortedTarget[j];
+                    j--;
+                }
+                sortedDirection[j + 1] = d;
+                sortedTarget[j + 1] = t;
+            }
+            first[id] = kept;
+            for(int i = start; i < end; i++) {
+                if(i + 1 < end && sortedDirection[i + 1] == sortedDirection[i]) {
+                    continue;
+                }
+                sortedDirection[kept] = sortedDirection[i];
+                sortedTarget[kept] = sortedTarget[i];
+                kept++;
+            }
+            start = end;
+        }
+        first[rooms.length] = kept;
+        adjacency = new Adjacency(first, Arrays.copyOf(sortedDirection, kept),
+                                  Arrays.copyOf(sortedTarget, kept));
+    }
+
+    /**
+     * Create a graph whose exits are read from buffers and whose rooms
+     * are only created when they are first asked for. The buffers are
+     * laid out like the arrays described above and are never written;
+     * changing an exit copies them into arrays first.
+     * @param size The number of rooms.
+     * @param first The index of the first exit of each room, with one
+     *              extra entry holding the total number of exits.
+     * @param direction The direction ordinal of each exit.
+     * @param target The room id each exit leads to.
+     * @param factory Creates the room with a given id when needed.
+     */
+    public RoomGraph(int size, IntBuffer first, ByteBuffer direction, IntBuffer target,
+                     RoomFactory factory)
+    {
+        rooms = new Room[size];
+        this.size = size;
+        this.factory = factory;
+        roomView = new RoomList();
+        adjacency = new Adjacency(first, direction, target);
+    }
+
+    /**
+     * Create a graph from exit arrays that are already laid out as
+     * described above, such as a WorldGenerator fills them, whose rooms
+     * are only created when they are first asked for.
+     * @param first The index of the first exit of each room, with one
+     *              extra entry holding the total number of exits.
+     * @param direction The direction ordinal of each exit, in Direction
+     *                  order for each room.
+     * @param target The room id each exit leads to.
+     * @param factory Creates the room with a given id when needed.
+     */
+    public RoomGraph(int[] first, byte[] direction, int[] target, RoomFactory factory)
+    {
+        size = first.length - 1;
+        rooms = new Room[size];
+        this.factory = factory;
+        roomView = new RoomList();
+        adjacency = new Adjacency(first, direction, target);
+    }
+
+    /**
+     * Make a generated graph, whose exits are worked out and whose rooms
+     * are made when they are asked for.
+     * @param size The number of rooms.
+     * @param generator Works out the exits of each room.
+     * @param factory Creates the room with a given id when needed.
+     * @param capacity The number of rooms the cache keeps.
+     * @return The graph.
+     */
+    public static RoomGraph generated(int size, ExitGenerator generator, RoomFactory factory,
+                                      int capacity)
+    {
+        return new RoomGraph(size, generator, factory, capacity);
+    }
+
+    /**
+     * Create a generated graph. Its room cache is handed the graph before
+     * it is complete, so only generated() may call this.
+     */
+    private RoomGraph(int size, ExitGenerator generator, RoomFactory factory, int capacity)
+    {
+        this.size = size;
+        this.generator = generator;
+        this.factory = factory;
+        cache = new RoomCache(this, factory, capacity);
+        roomView = new RoomList();
+    }
+
+    /**
+     * @return The number of rooms in the graph.
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * @return true if the exits of this graph are worked out by an
+     * ExitGenerator. Such a graph is too large to walk as a whole.
+     */
+    public boolean isGenerated()
+    {
+        return generator != null;
+    }
+
+    /**
+     * @return The cache of the rooms of a generated graph, or null.
+     */
+    public RoomCache getCache()
+    {
+        return cache;
+    }
+
+    /**
+     * @param id The id of a room.
+     * @return The room with that id.
+     */
+    public Room getRoom(int id)
+    {
+        if(cache != null) {
+            return cache.get(id);
+        }
+        Room room = (Room) ROOMS.getAcquire(rooms, id);
+        if(room == null) {
+            room = createRoom(id);
+        }
+        return room;
+    }
+
+    /**
+     * Create a room that has not been asked for before. If two threads
+     * do this at once, both get the room that was stored first.
+     * @param id The id of the room.
+     * @return The room.
+     */
+    private Room createRoom(int id)
+    {
+        Room room = factory.createRoom(this, id);
+        Room existing = (Room) ROOMS.compareAndExchange(rooms, id, null, room);
+        return existing == null ? room : existing;
+    }
+
+    /**
+     * @return All rooms of the graph in id order, as a read-only list.
+     */
+    public List<Room> getRooms()
+    {
+        return roomView;
+    }
+
+    /**
+     * Return the id of the room reached by going from room "id" in the
+     * given direction.
+     * @param id The id of the room to leave.
+     * @param direction The direction to go in.
+     * @return The id of the room reached, or -1 if there is no exit.
+     */
+    public int getExit(int id, Direction direction)
+    {
+        if(generator != null) {
+            return (generator.exitMask(id) >> direction.ordinal() & 1) == 0
+                   ? -1 : generator.exitTarget(id, direction);
+        }
+        Adjacency a = adjacency;
+        int d = direction.ordinal();
+        int end = a.first(id + 1);
+        for(int i = a.first(id); i < end; i++) {
+            if(a.direction(i) == d) {
+                return a.target(i);
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @param id The id of a room.
+     * @return The number of exits of the room.
+     */
+    public int exitCount(int id)
+    {
+        if(generator != null) {
+            return Integer.bitCount(generator.exitMask(id));
+        }
+        Adjacency a = adjacency;
+        return a.first(id + 1) - a.first(id);
+    }
+
+    /**
+     * @param id The id of a room.
+     * @param n The number of the exit, from 0 to exitCount(id) - 1.
+     * @return The direction of that exit.
+     */
+    public Direction exitDirection(int id, int n)
+    {
+        if(generator != null) {
+            int mask = generator.exitMask(id);
+            for(int i = 0; i < n; i++) {
+                mask &= mask - 1;
+            }
+            return Direction.fromOrdinal(Integer.numberOfTrailingZeros(mask));
+        }
+        Adjacency a = adjacency;
+        return Direction.fromOrdinal(a.direction(a.first(id) + n));
+    }
+
+    /**
+     * @param id The id of a room.
+     * @param n The number of the exit, from 0 to exitCount(id) - 1.
+     * @return The id of the room that exit leads to.
+     */
+    public int exitTarget(int id, int n)
+    {
+        if(generator != null) {
+            return generator.exitTarget(id, exitDirection(id, n));
+        }
+        Adjacency a = adjacency;
+        return a.target(a.first(id) + n);
+    }
+
+    /**
+     * @return A number that changes whenever an exit is added, changed
+     * or removed.
+     */
+    public int getVersion()
+    {
+        return version;
+    }
+
+    /**
+     * Tell a listener of every exit that changes from now on.
+     * @param listener The listener.
+     */
+    public void addExitListener(ExitListener listener)
+    {
+        listeners.add(listener);
+    }
+
+    /**
+     * Add, change or remove an exit. The listeners are told of the change
+     * before another exit can change.
+     * @param id The id of the room the exit leaves from.
+     * @param direction The direction of the exit.
+     * @param target The id of the room it leads to, or -1 to remove it.
+     */
+    public synchronized void setExit(int id, Direction direction, int target)
+    {
+        if(generator != null) {
+            throw new UnsupportedOperationException("The exits of a generated world cannot change");
+        }
+        Adjacency a = adjacency.toArrays();
+        int d = direction.ordinal();
+        int position = a.first[id];
+        while(position < a.first[id + 1] && a.direction[position] < d) {
+            position++;
+        }
+        boolean exists = position < a.first[id + 1] && a.direction[position] == d;
+        int oldTarget = exists ? a.target[position] : -1;
+        if(oldTarget == target) {
+            return;
+        }
+
+        if(exists && target >= 0) {
+            int[] targets = a.target.clone();
+            targets[position] = target;
+            adjacency = new Adjacency(a.first, a.direction, targets);
+        }
+        else if(exists) {
+            adjacency = a.without(id, position);
+        }
+        else if(target >= 0) {
+            adjacency = a.with(id, position, (byte) d, target);
+        }
+        version++;
+        for(ExitListener listener : listeners) {
+            listener.exitChanged(id, direction, oldTarget, target);
+        }
+    }
+
+    /**
+     * @return The number of exits in an array of pending exits.
+     */
+    private static int countExits(Room[] exits)
+    {
+        int count = 0;
+        for(int d = 0; exits != null && d < exits.length; d++) {
+            if(exits[d] != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Creates the Room objects of a graph whose rooms are made on demand.
+     */
+    public interface RoomFactory
+    {
+        /**
+         * Create the room with the given id. The room must be made with
+         * the package-private Room constructor that takes its graph.
+         * @param graph The graph the room belongs to.
+         * @param id The id of the room.
+         * @return The new room.
+         */
+        Room createRoom(RoomGraph graph, int id);
+    }
+
+    /**
+     * Works out the exits of the rooms of a generated graph. It must give
+     * the same exits for a room every time it is asked.
+     */
+    public interface ExitGenerator
+    {
+        /**
+         * @param id The id of a room.
+         * @return The directions the room has exits in, as a mask with
+         * bit 1 &lt;&lt; ordinal set for each direction.
+         */
+        int exitMask(int id);
+
+        /**
+         * @param id The id of a room.
+         * @param direction A direction in the room's exit mask.
+         * @return The id of the room the exit leads to.
+         */
+        int exitTarget(int id, Direction direction);
+    }
+
+    /**
+     * Told when an exit of a graph is added, changed or removed.
+     */
+    public interface ExitListener
+    {
+        /**
+         * An exit has changed. The graph already holds the new exit.
+         * @param id The id of the room the exit leaves from.
+         * @param direction The direction of the exit.
+         * @param oldTarget The id of the room it led to, or -1 if it is new.
+         * @param newTarget The id of the room it leads to now, or -1 if it
+         *                  was removed.
+         */
+        void exitChanged(int id, Direction direction, int oldTarget, int newTarget);
+    }
+
+    /**
+     * The exit arrays of the graph. They are never changed once the
+     * graph has handed them out, so readers need no locking. The arrays
+     * may instead be read-only buffers, in which case the array fields
+     * are null.
+     */
+    private static class Adjacency
+    {
+        final int[] first;
+        final byte[] direction;
+        final int[] target;
+        final IntBuffer firstBuffer;
+        final ByteBuffer directionBuffer;
+        final IntBuffer targetBuffer;
+
+        /**
+         * @param first The index of the first exit of each room, with one
+         *              extra entry holding the total number of exits.
+         * @param direction The direction ordinal of each exit.
+         * @param target The room id each exit leads to.
+         */
+        Adjacency(int[] first, byte[] direction, int[] target)
+        {
+            this.first = first;
+            this.direction = direction;
+            this.target = target;
+            firstBuffer = null;
+            directionBuffer = null;
+            targetBuffer = null;
+        }
+
+        /**
+         * @param first The index of the first exit of each room, with one
+         *              extra entry holding the total number of exits.
+         * @param direction The direction ordinal of each exit.
+         * @param target The room id each exit leads to.
+         */
+        Adjacency(IntBuffer first, ByteBuffer direction, IntBuffer target)
+        {
+            this.first = null;
+            this.direction = null;
+            this.target = null;
+            firstBuffer = first;
+            directionBuffer = direction;
+            targetBuffer = target;
+        }
+
+        /**
+         * @return The index of the first exit of room "id".
+         */
+        int first(int id)
+        {
+            return first != null ? first[id] : firstBuffer.get(id);
+        }
+
+        /**
+         * @return The direction ordinal of exit "i".
+         */
+        int direction(int i)
+        {
+            return direction != null ? direction[i] : directionBuffer.get(i);
+        }
+
+        /**
+         * @return The room id exit "i" leads to.
+         */
+        int target(int i)
+        {
+            return target != null ? target[i] : targetBuffer.get(i);
+        }
+
+        /**
+         * @return These exits held in arrays, copied out of the buffers
+         * if they are not already.
+         */
+        Adjacency toArrays()
+        {
+            if(first != null) {
+                return this;
+            }
+            int[] newFirst = new int[firstBuffer.limit()];
+            firstBuffer.get(0, newFirst);
+            byte[] newDirection = new byte[directionBuffer.limit()];
+            directionBuffer.get(0, newDirection);
+            int[] newTarget = new int[targetBuffer.limit()];
+            targetBuffer.get(0, newTarget);
+            return new Adjacency(newFirst, newDirection, newTarget);
+        }
+
+        /**
+         * @return A copy of these arrays with one exit inserted.
+         */
+        Adjacency with(int id, int position, byte d, int to)
+        {
+            int[] newFirst = first.clone();
+            for(int i = id + 1; i < newFirst.length; i++) {
+                newFirst[i]++;
+            }
+            byte[] newDirection = new byte[direction.length + 1];
+            int[] newTarget = new int[target.length + 1];
+            System.arraycopy(direction, 0, newDirection, 0, position);
+            System.arraycopy(target, 0, newTarget, 0, position);
+            newDirection[position] = d;
+            newTarget[position] = to;
+            System.arraycopy(direction, position, newDirection, position + 1,
+                             direction.length - position);
+            System.arraycopy(target, position, newTarget, position + 1,
+                             target.length - position);
+            return new Adjacency(newFirst, newDirection, newTarget);
+        }
+
+        /**
+         * @return A copy of these arrays with one exit removed.
+         */
+        Adjacency without(int id, int position)
+        {
+            int[] newFirst = first.clone();
+            for(int i = id + 1; i < newFirst.length; i++) {
+                newFirst[i]--;
+            }
+            byte[] newDirection = Arrays.copyOf(direction, direction.length - 1);
+            int[] newTarget = Arrays.copyOf(target, target.length - 1);
+            System.arraycopy(direction, position + 1, newDirection, position,
+                             direction.length - position - 1);
+            System.arraycopy(target, position + 1, newTarget, position,
+                             target.length - position - 1);
+            return new Adjacency(newFirst, newDirection, newTarget);
+        }
+    }
+
+    /**
+     * A read-only list view of the rooms of the graph.
+     */
+    private class RoomList extends AbstractList<Room> implements RandomAccess
+    {
+        public Room get(int index)
+        {
+            return getRoom(index);
+        }
+
+        public int size()
+        {
+            return size;
+        }
+    }
+}
@@ -0,0 +1,157 @@
+import java.io.PrintStream;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class is part of the "World of Zuul" application.
+ * "World of Zuul" is a very simple, text based adventure game.
+ *
+ * RoomItems is what a game sees of the items in the rooms of its World,
+ * and the only way the game changes them. A game played on its own uses
+ * an ItemOverlay, in which its changes are private. Games played
+ * together on one world share a SharedItems, in which every player sees
+ * the changes of every other player.
+ *
+ * Items are also located through this interface: every item that is
+ * moved is recorded as being in a room or carried. An item that is gone
+ * is forgotten, so that the record does not grow with every item ever
+ * eaten; where the World's ItemIndex still names a room for it, that
+ * room no longer holds it.
+ *
+ * @author  Ryan Rutishauser
+ * @version 2026.10.18
+ */
+
+public interface RoomItems
+{
+    // Locations of items that are not in a room.
+    int CARRIED = -1;
+    int GONE = -2;
+    // Returned by locate for items that have not been moved.
+    int NOT_MOVED = -3;
+
+    /**
+     * @param room The room to look in.
+     * @return The number of items currently in the room.
+     */
+    int numberItem(Room room);
+
+    /**
+     * @param room The room to look in.
+     * @param name The name of an item.
+     * @return The number of items with that name in the room.
+     */
+    int count(Room room, String name);
+
+    /**
+     * Take every item out of a room; the player now carries them.
+     * @param room The room to empty.
+     * @return The items that were in the room.
+     */
+    List<Item> takeAll(Room room);
+
+    /**
+     * Take one item out of a room; the player now carries it.
+     * @param room The room to take it from.
+     * @param name The name of the item, in any case.
+     * @return The item, or null if the room holds no item of that name.
+     */
+    Item take(Room room, String name);
+
+    /**
+     * Place an item in a room.
+     * @param room The room the item is put in.
+     * @param item The item to put there.
+     */
+    void put(Room room, Item item);
+
+    /**
+     * Set the items of a room, for example when a saved game is
+     * restored. Items that were in the room before are gone.
+     * @param room The room.
+     * @param items The items now in the room.
+     */
+    void replace(Room room, List<Item> items);
+
+    /**
+     * Put fresh items in a room for those of its starting items that are
+     * no longer there, so that it holds as many items of each name as it
+     * started with.
+     * @param room The room.
+     * @return The number of items put in the room.
+     */
+    int restock(Room room);
+
+    /**
+     * Record that the player carries an item that was not taken from a
+     * room, for example in a restored game.
+     * @param item The item.
+     */
+    void carry(Item item);
+
+    /**
+     * Forget an item that no longer exists, for example because it was
+     * eaten.
+     * @param item The item.
+     */
+    void consume(Item item);
+
+    /**
+     * @param item An item.
+     * @return The id of the room the item is in, CARRIED, or NOT_MOVED if
+     * it has not been moved or is gone.
+     */
+    int locate(Item item);
+
+    /**
+     * @param room The room to look in.
+     * @param item An item.
+     * @return true if the item is in the room at this moment.
+     */
+    boolean contains(Room room, Item item);
+
+    /**
+     * @param name The name of an item.
+     * @return Where each item of that name that was moved and still
+     * exists is now, as for locate.
+     */
+    Map<Item, Integer> locateMoved(String name);
+
+    /**
+     * Prints description and weight of each item in the room.
+     * @param room The room whose items are printed.
+     * @param out Where the item list is printed.
+     */
+    void printItems(Room room, PrintStream out);
+
+    /**
+     * @param room The room to check.
+     * @return true if the items of the room have changed, so that the
+     * room's own item listing does not apply to it.
+     */
+    boolean isChanged(Room room);
+
+    /**
+     * @return The number of rooms whose items have changed.
+     */
+    int numberChanged();
+
+    /**
+     * @return true if other games see the same items, so that rules of
+     * the world such as putting food back are applied once for all of
+     * them instead of by every game.
+     */
+    boolean isShared();
+
+    /**
+     * Start remembering which rooms are changed, for takeDirty.
+     */
+    void trackChanges();
+
+    /**
+     * Return the items of every room changed since the last call, and
+     * start remembering afresh.
+     * @return A copy of the items of each changed room.
+     */
+    Map<Room, Item[]> takeDirty();
+}
@@ -0,0 +1,424 @@
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class is part of the "World of Zuul" application.
+ * "World of Zuul" is a very simple, text based adventure game.
+ *
+ * A RouteCache finds the shortest way between two rooms of a RoomGraph,
+ * going only through exits in the direction they lead, so a one-way exit
+ * such as the one into the locker is never walked backwards.
+ *
+ * In a world of at most TABLE_LIMIT rooms the first route asked for
+ * builds a next-hop table: for every pair of rooms, which exit of the
+ * first leads one step closer to the second. Every route is then read
+ * from the table in time proportional to its length.
+ *
+ * Larger worlds are searched when a route is asked for, from both ends
+ * at once: forward along the exits from the start and backwards along
+ * them from the goal, until the two searches meet. The routes found are
+ * kept in a cache of at most a given number of routes, dropping the one
+ * used longest ago, so bots that keep going between the same rooms
+ * rarely search at all.
+ *
+ * When an exit of the graph changes, the table and the cached routes
+ * are thrown away and made again as they are needed.
+ *
+ * @author  Ryan Rutishauser
+ * @version 2026.10.18
+ */
+
+public class RouteCache
+{
+    // Worlds with at most this many rooms get a next-hop table.
+    public static final int TABLE_LIMIT = 2048;
+    // Routes kept for larger worlds when no number is given.
+    public static final int DEFAULT_CAPACITY = 4096;
+    // Cached for a pair of rooms with no route between them.
+    private static final int[] NO_ROUTE = new int[0];
+
+    private final RoomGraph graph;
+    private final int capacity;
+    // The routes of larger worlds by (from << 32 | to), oldest use first.
+    private final LinkedHashMap<Long, int[]> routes;
+    // Search arrays not in use, so that each search need not allocate them.
+    private final ConcurrentLinkedQueue<Search> searches;
+    private volatile Tables tables;
+    private final AtomicLong hitCount;
+    private final AtomicLong searchCount;
+
+    /**
+     * Create a cache keeping DEFAULT_CAPACITY routes.
+     * @param graph The rooms and exits routes are found in.
+     */
+    public RouteCache(RoomGraph graph)
+    {
+        this(graph, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Create a cache.
+     * @param graph The rooms and exits routes are found in.
+     * @param capacity The most routes kept for a world too large for a
+     *                 next-hop table.
+     */
+    public RouteCache(RoomGraph graph, int capacity)
+    {
+        if(graph.isGenerated()) {
+            throw new IllegalArgumentException("A generated graph is too large to search");
+        }
+        this.graph = graph;
+        this.capacity = capacity;
+        routes = new LinkedHashMap<>(16, 0.75f, true) {
+            protected boolean removeEldestEntry(Map.Entry<Long, int[]> eldest)
+            {
+                return size() > RouteCache.this.capacity;
+            }
+        };
+        searches = new ConcurrentLinkedQueue<>();
+        hitCount = new AtomicLong();
+        searchCount = new AtomicLong();
+    }
+
+    /**
+     * Find a shortest route between two rooms.
+     * @param from The id of the room to start in.
+     * @param to The id of the room to get to.
+     * @return The ids of the rooms entered on the way, ending with "to",
+     * or null if "to" cannot be reached from "from". The array is empty
+     * if the rooms are the same, and must not be changed.
+     */
+    public int[] route(int from, int to)
+    {
+        if(from == to) {
+            return NO_ROUTE;
+        }
+        Tables t = current();
+        if(t.nextExit != null) {
+            hitCount.incrementAndGet();
+            return t.walk(from, to);
+        }
+        Long key = (long) from << 32 | to;
+        int[] route;
+        synchronized(routes) {
+            route = routes.get(key);
+        }
+        if(route != null) {
+            hitCount.incrementAndGet();
+            return route == NO_ROUTE ? null : route;
+        }
+        searchCount.incrementAndGet();
+        Search search = searches.poll();
+        if(search == null) {
+            search = new Search(graph.size());
+        }
+        route = search.run(t, from, to);
+        searches.add(search);
+        synchronized(routes) {
+            // A route found in a graph that has changed since is not kept.
+            if(t == tables) {
+                routes.put(key, route == null ? NO_ROUTE : route);
+            }
+        }
+        return route;
+    }
+
+    /**
+     * @return The number of routes answered from the table or the cache.
+     */
+    public long getHitCount()
+    {
+        return hitCount.get();
+    }
+
+    /**
+     * @return The number of routes that had to be searched for.
+     */
+    public long getSearchCount()
+    {
+        return searchCount.get();
+    }
+
+    /**
+     * @return The tables of the graph as it is now, made again if an exit
+     * has changed since they were made.
+     */
+    private Tables current()
+    {
+        Tables t = tables;
+        if(t == null || t.version != graph.getVersion()) {
+            synchronized(this) {
+                t = tables;
+                if(t == null || t.version != graph.getVersion()) {
+                    synchronized(routes) {
+                        routes.clear();
+                    }
+                    t = new Tables(graph);
+                    tables = t;
+                }
+            }
+        }
+        return t;
+    }
+
+    /**
+     * The exits of one version of the graph seen backwards, and for a
+     * small graph its next-hop table.
+     */
+    private static class Tables
+    {
+        final RoomGraph graph;
+        final int version;
+        final int size;
+        // The rooms with an exit into room "id" are source[first[id]] to
+        // source[first[id + 1] - 1].
+        final int[] first;
+        final int[] source;
+        // nextExit[from * size + to] is the number of the exit of "from"
+        // to take towards "to", or -1 if there is no way; null for large
+        // graphs.
+        final byte[] nextExit;
+
+        Tables(RoomGraph graph)
+        {
+            this.graph = graph;
+            version = graph.getVersion();
+            size = graph.size();
+            first = new int[size + 1];
+            for(int id = 0; id < size; id++) {
+                for(int n = graph.exitCount(id) - 1; n >= 0; n--) {
+                    first[graph.exitTarget(id, n) + 1]++;
+                }
+            }
+            for(int id = 0; id < size; id++) {
+                first[id + 1] += first[id];
+            }
+            source = new int[first[size]];
+            int[] next = Arrays.copyOf(first, size);
+            for(int id = 0; id < size; id++) {
+                for(int n = graph.exitCount(id) - 1; n >= 0; n--) {
+                    source[next[graph.exitTarget(id, n)]++] = id;
+                }
+            }
+            nextExit = size <= TABLE_LIMIT ? buildTable() : null;
+        }
+
+        /**
+         * Search backwards from every room once, noting for each room
+         * found which of its exits leads one step closer.
+         */
+        private byte[] buildTable()
+        {
+            byte[] table = new byte[size * size];
+            Arrays.fill(table, (byte) -1);
+            int[] queue = new int[size];
+            boolean[] seen = new boolean[size];
+            for(int to = 0; to < size; to++) {
+                Arrays.fill(seen, false);
+                seen[to] = true;
+                queue[0] = to;
+                int tail = 1;
+                for(int head = 0; head < tail; head++) {
+                    int room = queue[head];
+                    for(int i = first[room]; i < first[room + 1]; i++) {
+                        int before = source[i];
+                        if(!seen[before]) {
+                            seen[before] = true;
+                            table[before * size + to] = (byte) exitTo(before, room);
+                            queue[tail++] = before;
+                        }
+                    }
+                }
+            }
+            return table;
+        }
+
+        /**
+         * @return The number of the first exit of room "from" that leads
+         * to room "to", or -1 if there is none.
+         */
+        private int exitTo(int from, int to)
+        {
+            for(int n = 0; n < graph.exitCount(from); n++) {
+                if(graph.exitTarget(from, n) == to) {
+                    return n;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * Follow the next-hop table from one room to another.
+         */
+        int[] walk(int from, int to)
+        {
+            int length = 0;
+            for(int room = from; room != to; length++) {
+                int exit = nextExit[room * size + to];
+                // A route longer than the rooms means the graph changed.
+                if(exit < 0 || length == size) {
+                    return null;
+                }
+                room = graph.exitTarget(room, exit);
+            }
+            int[] route = new int[length];
+            int room = from;
+            for(int i = 0; i < length; i++) {
+                room = graph.exitTarget(room, nextExit[room * size + to]);
+                route[i] = room;
+            }
+            return route;
+        }
+    }
+
+    /**
+     * The arrays of one search from both ends. A room belongs to a side
+     * of the current search only if its mark equals that search's stamp,
+     * so the arrays need not be cleared between searches.
+     */
+    private static class Search
+    {
+        private final int[] markForward;
+        private final int[] markBackward;
+        private final int[] distanceForward;
+        private final int[] distanceBackward;
+        // The room each room was reached from, going forward, and the room
+        // each room leads to, going backwards.
+        private final int[] parent;
+        private final int[] child;
+        private int[] queueForward;
+        private int[] queueBackward;
+        private int stamp;
+        // The best meeting found so far: an exit from meetFrom, reached
+        // going forward, to meetTo, reached going backwards.
+        private int best;
+        private int meetFrom;
+        private int meetTo;
+
+        Search(int size)
+        {
+            markForward = new int[size];
+            markBackward = new int[size];
+            distanceForward = new int[size];
+            distanceBackward = new int[size];
+            parent = new int[size];
+            child = new int[size];
+            queueForward = new int[64];
+            queueBackward = new int[64];
+        }
+
+        /**
+         * Search for a shortest route, expanding a whole level of the
+         * smaller side at a time. The first level in which the sides
+         * meet holds the shortest route; all of its meetings are looked
+         * at to find it.
+         */
+        int[] run(Tables t, int from, int to)
+        {
+            if(++stamp == 0) {
+                Arrays.fill(markForward, 0);
+                Arrays.fill(markBackward, 0);
+                stamp = 1;
+            }
+            markForward[from] = stamp;
+            distanceForward[from] = 0;
+            markBackward[to] = stamp;
+            distanceBackward[to] = 0;
+            queueForward[0] = from;
+            queueBackward[0] = to;
+            int headForward = 0;
+            int tailForward = 1;
+            int headBackward = 0;
+            int tailBackward = 1;
+            best = Integer.MAX_VALUE;
+            while(best == Integer.MAX_VALUE
+                  && headForward < tailForward && headBackward < tailBackward) {
+                if(tailForward - headForward <= tailBackward - headBackward) {
+                    int end = tailForward;
+                    for(; headForward < end; headForward++) {
+                        tailForward = expandForward(t, queueForward[headForward], tailForward);
+                    }
+                }
+                else {
+                    int end = tailBackward;
+                    for(; headBackward < end; headBackward++) {
+                        tailBackward = expandBackward(t, queueBackward[headBackward], tailBackward);
+                    }
+                }
+            }
+            if(best == Integer.MAX_VALUE) {
+                return null;
+            }
+            int[] route = new int[best];
+            int i = distanceForward[meetFrom];
+            for(int room = meetFrom; room != from; room = parent[room]) {
+                route[--i] = room;
+            }
+            i = distanceForward[meetFrom];
+            for(int room = meetTo; ; room = child[room]) {
+                route[i++] = room;
+                if(room == to) {
+                    break;
+                }
+            }
+            return route;
+        }
+
+        /**
+         * Go forward through the exits of one room.
+         * @return The new end of the forward queue.
+         */
+        private int expandForward(Tables t, int room, int tail)
+        {
+            int distance = distanceForward[room] + 1;
+            for(int n = t.graph.exitCount(room) - 1; n >= 0; n--) {
+                int next = t.graph.exitTarget(room, n);
+                if(markBackward[next] == stamp && distance + distanceBackward[next] < best) {
+                    best = distance + distanceBackward[next];
+                    meetFrom = room;
+                    meetTo = next;
+                }
+                if(markForward[next] != stamp) {
+                    markForward[next] = stamp;
+                    distanceForward[next] = distance;
+                    parent[next] = room;
+                    if(tail == queueForward.length) {
+                        queueForward = Arrays.copyOf(queueForward, tail * 2);
+                    }
+                    queueForward[tail++] = next;
+                }
+            }
+            return tail;
+        }
+
+        /**
+         * Go backwards through the exits leading into one room.
+         * @return The new end of the backward queue.
+         */
+        private int expandBackward(Tables t, int room, int tail)
+        {
+            int distance = distanceBackward[room] + 1;
+            for(int i = t.first[room]; i < t.first[room + 1]; i++) {
+                int before = t.source[i];
+                if(markForward[before] == stamp && distanceForward[before] + distance < best) {
+                    best = distanceForward[before] + distance;
+                    meetFrom = before;
+                    meetTo = room;
+                }
+                if(markBackward[before] != stamp) {
+                    markBackward[before] = stamp;
+                    distanceBackward[before] = distance;
+                    child[before] = room;
+                    if(tail == queueBackward.length) {
+                        queueBackward = Arrays.copyOf(queueBackward, tail * 2);
+                    }
+                    queueBackward[tail++] = before;
+                }
+            }
+            return tail;
+        }
+    }
+}
@@ -0,0 +1,175 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * This class is part of the "World of Zuul" application.
+ * "World of Zuul" is a very simple, text based adventure game.
+ *
+ * RouteCheck makes random worlds of one-way exits, in which many rooms
+ * cannot reach each other, and checks the routes a RouteCache finds
+ * against a plain breadth-first search: a route must exist exactly when
+ * the search finds one, must be as short, and every step of it must be
+ * an exit. Between rounds of routes some exits are added, changed and
+ * removed, so that routes found before the change must not be used after
+ * it.
+ *
+ * One world is small enough for the next-hop table, the other is large
+ * enough to be searched from both ends. The cache is kept small so that
+ * routes are also dropped and found again.
+ *
+ * Run the main method with an optional seed, for example
+ * "java RouteCheck 1".
+ *
+ * @author  Ryan Rutishauser
+ * @version 2026.10.18
+ */
+
+public class RouteCheck
+{
+    // Rounds of routes, exits changed between rounds, and the chance of
+    // a room having an exit in a direction.
+    private static final int ROUNDS = 10;
+    private static final int CHANGES = 50;
+    private static final double EXIT_CHANCE = 0.3;
+    // Routes cached for the large world.
+    private static final int CAPACITY = 64;
+
+    /**
+     * Main method so that the check can be run outside of Bluej.
+     * @param args An optional seed.
+     */
+    public static void main(String[] args)
+    {
+        long seed = args.length > 0 ? Long.parseLong(args[0]) : 1;
+        SplittableRandom random = new SplittableRandom(seed);
+        boolean ok = check(1000, 1000, random) && check(20_000, 200, random);
+        System.out.println(ok ? "OK: every route matched the breadth-first search"
+                              : "FAILED");
+        System.exit(ok ? 0 : 1);
+    }
+
+    /**
+     * Check the routes of one random world.
+     * @param size The number of rooms.
+     * @param routes The number of routes asked for in each round.
+     * @return true if every route was right.
+     */
+    private static boolean check(int size, int routes, SplittableRandom random)
+    {
+        List<Room> rooms = new ArrayList<>(size);
+        for(int i = 0; i < size; i++) {
+            rooms.add(new Room("in room " + i));
+        }
+        for(Room room : rooms) {
+            for(int d = 0; d < Direction.count(); d++) {
+                if(random.nextDouble() < EXIT_CHANCE) {
+                    room.setExit(Direction.fromOrdinal(d).toString(),
+                                 rooms.get(random.nextInt(size)));
+                }
+            }
+        }
+        RoomGraph graph = RoomGraph.of(rooms);
+        RouteCache cache = new RouteCache(graph, CAPACITY);
+        int[] distance = new int[size];
+        int[] queue = new int[size];
+        // Routes start from a few rooms and often end in a few others, so
+        // that some are asked for again.
+        int[] starts = random.ints(10, 0, size).toArray();
+        int[] goals = random.ints(10, 0, size).toArray();
+
+        int found = 0;
+        for(int round = 0; round < ROUNDS; round++) {
+            for(int r = 0; r < routes; r++) {
+                int from = starts[random.nextInt(starts.length)];
+                int to = random.nextBoolean() ? goals[random.nextInt(goals.length)]
+                                              : random.nextInt(size);
+                int expected = distance(graph, from, to, distance, queue);
+                int[] route = cache.route(from, to);
+                String problem = null;
+                if(expected < 0) {
+                    if(route != null) {
+                        problem = "a route where there is none";
+                    }
+                }
+                else if(route == null) {
+                    problem = "no route where there is one of " + expected + " steps";
+                }
+                else if(route.length != expected) {
+                    problem = "a route of " + route.length + " steps instead of " + expected;
+                }
+                else if(!isPath(graph, from, to, route)) {
+                    problem = "a route that is not a path: " + Arrays.toString(route);
+                }
+                if(problem != null) {
+                    System.out.println("FAILED: " + size + " rooms, round " + round
+                                       + ", from " + from + " to " + to + ": " + problem);
+                    return false;
+                }
+                if(route != null) {
+                    found++;
+                }
+            }
+            for(int c = 0; c < CHANGES; c++) {
+                graph.setExit(random.nextInt(size), Direction.fromOrdinal(random.nextInt(Direction.count())),
+                              random.nextInt(3) == 0 ? -1 : random.nextInt(size));
+            }
+        }
+        System.out.printf("%d rooms: %d routes, %d found, %d answered from the %s, %d searches%n",
+                          size, ROUNDS * routes, found, cache.getHitCount(),
+                          size <= RouteCache.TABLE_LIMIT ? "table" : "cache",
+                          cache.getSearchCount());
+        return true;
+    }
+
+    /**
+     * @return The number of steps from "from" to "to" found by a plain
+     * breadth-first search, or -1 if there is no way.
+     */
+    private static int distance(RoomGraph graph, int from, int to, int[] distance, int[] queue)
+    {
+        if(from == to) {
+            return 0;
+        }
+        Arrays.fill(distance, -1);
+        distance[from] = 0;
+        queue[0] = from;
+        int head = 0;
+        int tail = 1;
+        while(head < tail) {
+            int id = queue[head++];
+            for(int n = 0; n < graph.exitCount(id); n++) {
+                int next = graph.exitTarget(id, n);
+                if(distance[next] < 0) {
+                    distance[next] = distance[id] + 1;
+                    if(next == to) {
+                        return distance[next];
+                    }
+                    queue[tail++] = next;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return true if each room of the route is reached by an exit of
+     * the room before it, and the route ends in "to".
+     */
+    private static boolean isPath(RoomGraph graph, int from, int to, int[] route)
+    {
+        int id = from;
+        for(int next : route) {
+            boolean exit = false;
+            for(int n = 0; n < graph.exitCount(id) && !exit; n++) {
+                exit = graph.exitTarget(id, n) == next;
+            }
+            if(!exit) {
+                return false;
+            }
+            id = next;
+        }
+        return id == to;
+    }
+}
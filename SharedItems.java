@@ -0,0 +1,371 @@
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Predicate;
+
+/**
+ * This class is part of the "World of Zuul" application.
+ * "World of Zuul" is a very simple, text based adventure game.
+ *
+ * SharedItems holds the items of the rooms of one World for many games
+ * played in it at the same time, each on its own thread. Every room's
+ * items are an array that is never changed: taking or putting an item
+ * builds a new array and swaps it in with compareAndSet, trying again if
+ * another player changed the room first. So two players taking the same
+ * item can never both get it, no lock is ever held, and players in
+ * different rooms never touch the same slot. A room whose slot is still
+ * null has the items the world gives it.
+ *
+ * The shared state is kept here, by room id, rather than in the rooms,
+ * because the rooms of a World are also shared by games that are played
+ * on their own, each with its own ItemOverlay.
+ *
+ * Checkpoints of a game in a shared world only save the player's own
+ * state; the rooms belong to everyone.
+ *
+ * @author  Ryan Rutishauser
+ * @version 2026.10.18
+ */
+
+public class SharedItems implements RoomItems
+{
+    private static final Item[] EMPTY = new Item[0];
+
+    // The items of each room, or null while the room is unchanged.
+    private World world;
+    private AtomicReferenceArray<Item[]> rooms;
+    private AtomicInteger changedRooms;
+    // Where each moved item is, by item name and then by item; gone
+    // items are removed.
+    private ConcurrentHashMap<String, ConcurrentHashMap<Item, Integer>> located;
+
+    /**
+     * Create the shared items of a world in which nothing has been moved.
+     * @param world The world that will be played in.
+     */
+    public SharedItems(World world)
+    {
+        this.world = world;
+        rooms = new AtomicReferenceArray<>(world.getGraph().size());
+        changedRooms = new AtomicInteger();
+        located = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * @param room The room to look in.
+     * @return The items in the room at this moment.
+     */
+    public Item[] itemsIn(Room room)
+    {
+        Item[] items = rooms.get(room.getId());
+        return items != null ? items : room.getItems().toArray(EMPTY);
+    }
+
+    /**
+     * Tell whether a room holds any items without looking at the Room
+     * itself, for code that works with room ids.
+     * @param id The id of a room.
+     * @return true if the room holds items at this moment.
+     */
+    public boolean hasItems(int id)
+    {
+        Item[] items = rooms.get(id);
+        return items != null ? items.length > 0 : world.getItemIndex().startsWithItems(id);
+    }
+
+    public int numberItem(Room room)
+    {
+        Item[] items = rooms.get(room.getId());
+        return items != null ? items.length : room.numberItem();
+    }
+
+    public int count(Room room, String name)
+    {
+        return count(itemsIn(room), name);
+    }
+
+    /**
+     * @return The number of items with the given name among some items.
+     */
+    private static int count(Item[] items, String name)
+    {
+        int count = 0;
+        for(Item item : items) {
+            if(item.getName().equalsIgnoreCase(name)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public List<Item> takeAll(Room room)
+    {
+        int id = room.getId();
+        while(true) {
+            Item[] current = rooms.get(id);
+            Item[] items = current != null ? current : room.getItems().toArray(EMPTY);
+            if(items.length == 0) {
+                return Collections.emptyList();
+            }
+            if(swap(id, current, EMPTY)) {
+                for(Item item : items) {
+                    moved(item, CARRIED);
+                }
+                return Arrays.asList(items);
+            }
+        }
+    }
+
+    public Item take(Room room, String name)
+    {
+        return takeFirst(room, item -> item.getName().equalsIgnoreCase(name));
+    }
+
+    /**
+     * Take the first item that can be eaten out of a room.
+     * @param room The room to take it from.
+     * @return The item, or null if the room holds no food.
+     */
+    public Item takeFood(Room room)
+    {
+        return takeFirst(room, Item::isEdible);
+    }
+
+    /**
+     * Take the first item of a room that passes a test.
+     * @return The item, or null if no item passes.
+     */
+    private Item takeFirst(Room room, Predicate<Item> test)
+    {
+        int id = room.getId();
+        while(true) {
+            Item[] current = rooms.get(id);
+            Item[] items = current != null ? current : room.getItems().toArray(EMPTY);
+            int at = 0;
+            while(at < items.length && !test.test(items[at])) {
+                at++;
+            }
+            if(at == items.length) {
+                return null;
+            }
+            Item[] rest = new Item[items.length - 1];
+            System.arraycopy(items, 0, rest, 0, at);
+            System.arraycopy(items, at + 1, rest, at, rest.length - at);
+            if(swap(id, current, rest)) {
+                moved(items[at], CARRIED);
+                return items[at];
+            }
+        }
+    }
+
+    public void put(Room room, Item item)
+    {
+        // Record the new place first: once the item is in the room,
+        // another player may take it at once.
+        moved(item, room.getId());
+        int id = room.getId();
+        while(true) {
+            Item[] current = rooms.get(id);
+            Item[] items = current != null ? current : room.getItems().toArray(EMPTY);
+            Item[] more = Arrays.copyOf(items, items.length + 1);
+            more[items.length] = item;
+            if(swap(id, current, more)) {
+                return;
+            }
+        }
+    }
+
+    public void replace(Room room, List<Item> items)
+    {
+        Item[] now = items.toArray(EMPTY);
+        for(Item item : now) {
+            moved(item, room.getId());
+        }
+        int id = room.getId();
+        while(true) {
+            Item[] current = rooms.get(id);
+            Item[] before = current != null ? current : room.getItems().toArray(EMPTY);
+            if(swap(id, current, now)) {
+                for(Item item : before) {
+                    if(!Arrays.asList(now).contains(item)) {
+                        forget(item);
+                    }
+                }
+                return;
+            }
+        }
+    }
+
+    public int restock(Room room)
+    {
+        int id = room.getId();
+        if(rooms.get(id) == null) {
+            return 0;   // an unchanged room still has all its items
+        }
+        Map<ItemType, Integer> start = ItemOverlay.startingItems(room);
+        while(true) {
+            Item[] current = rooms.get(id);
+            ArrayList<Item> added = new ArrayList<>();
+            for(Map.Entry<ItemType, Integer> entry : start.entrySet()) {
+                ItemType type = entry.getKey();
+                for(int i = count(current, type.getName()); i < entry.getValue(); i++) {
+                    added.add(new Item(type));
+                }
+            }
+            if(added.isEmpty()) {
+                return 0;
+            }
+            Item[] more = Arrays.copyOf(current, current.length + added.size());
+            for(int i = 0; i < added.size(); i++) {
+                more[current.length + i] = added.get(i);
+            }
+            if(swap(id, current, more)) {
+                // Another player may already have taken a new item.
+                for(Item item : added) {
+                    located.compute(item.getName(), (name, items) -> {
+                        if(items == null) {
+                            items = new ConcurrentHashMap<>();
+                        }
+                        items.putIfAbsent(item, id);
+                        return items;
+                    });
+                }
+                return added.size();
+            }
+        }
+    }
+
+    public void carry(Item item)
+    {
+        moved(item, CARRIED);
+    }
+
+    public void consume(Item item)
+    {
+        forget(item);
+    }
+
+    public int locate(Item item)
+    {
+        ConcurrentHashMap<Item, Integer> items = located.get(item.getName());
+        if(items != null) {
+            Integer location = items.get(item);
+            if(location != null) {
+                return location;
+            }
+        }
+        return NOT_MOVED;
+    }
+
+    public boolean contains(Room room, Item item)
+    {
+        for(Item i : itemsIn(room)) {
+            if(i == item) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public Map<Item, Integer> locateMoved(String name)
+    {
+        ConcurrentHashMap<Item, Integer> items = located.get(name);
+        if(items == null) {
+            return Collections.emptyMap();
+        }
+        return new HashMap<>(items);
+    }
+
+    public void printItems(Room room, PrintStream out)
+    {
+        if(!isChanged(room)) {
+            room.printItem(out);
+            return;
+        }
+        for(Item i : rooms.get(room.getId())) {
+            out.println(i.getDescription() + ". The weight of the " +
+            "item is " + i.getWeight());
+        }
+    }
+
+    public boolean isChanged(Room room)
+    {
+        return rooms.get(room.getId()) != null;
+    }
+
+    public boolean isShared()
+    {
+        return true;
+    }
+
+    public int numberChanged()
+    {
+        return changedRooms.get();
+    }
+
+    /**
+     * Does nothing: the rooms of a shared world are not saved with the
+     * checkpoints of one player.
+     */
+    public void trackChanges()
+    {
+    }
+
+    /**
+     * @return An empty map, as the rooms of a shared world are not saved
+     * with the checkpoints of one player.
+     */
+    public Map<Room, Item[]> takeDirty()
+    {
+        return Collections.emptyMap();
+    }
+
+    /**
+     * Swap in new items for a room if nobody changed it in the meantime.
+     * @return true if the swap was made.
+     */
+    private boolean swap(int id, Item[] current, Item[] items)
+    {
+        if(!rooms.compareAndSet(id, current, items)) {
+            return false;
+        }
+        if(current == null) {
+            changedRooms.incrementAndGet();
+        }
+        return true;
+    }
+
+    /**
+     * Record where an item is now. The map of a name is only changed
+     * inside compute, so that forget cannot drop it while an item is
+     * being added to it.
+     */
+    private void moved(Item item, int location)
+    {
+        located.compute(item.getName(), (name, items) -> {
+            if(items == null) {
+                items = new ConcurrentHashMap<>();
+            }
+            items.put(item, location);
+            return items;
+        });
+    }
+
+    /**
+     * Forget a gone item, and the map of its name once it is empty.
+     */
+    private void forget(Item item)
+    {
+        located.computeIfPresent(item.getName(), (name, items) -> {
+            items.remove(item);
+            return items.isEmpty() ? null : items;
+        });
+    }
+}
@@ -0,0 +1,315 @@
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * This class is part of the "World of Zuul" application.
+ * "World of Zuul" is a very simple, text based adventure game.
+ *
+ * SharedWorldStress has many players pick up, drop and eat items in one
+ * shared world at the same time, each on its own thread, and then checks
+ * that no item was lost or doubled: every item is in exactly one room or
+ * inventory, unless it was eaten, and the health the players gained adds
+ * up to the items eaten. The world is small and full of items, so that
+ * players keep taking from the same rooms at once.
+ *
+ * Run the main method with an optional number of players and commands
+ * per player, for example "java SharedWorldStress 16 1000000".
+ *
+ * With "-events", as in "java SharedWorldStress -events 5000", it
+ * instead fills one room with that many players, a few of whom read
+ * their output very slowly, and has a few others act in the room as
+ * fast as they can for a few seconds. It reports how fast the actions
+ * were announced and how many batches were delivered, which grows with
+ * the ticks and the players but not with the number of actions.
+ *
+ * With "-ticks", as in "java SharedWorldStress -ticks 100000", it has
+ * that many games on the campus pass time with a TickScheduler ticking
+ * every 100 ms with a budget of 20 ms, while a few threads keep giving
+ * them commands, and reports how long the ticks took and how often they
+ * went over their budget.
+ *
+ * @author  Ryan Rutishauser
+ * @version 2026.10.18
+ */
+
+public class SharedWorldStress
+{
+    // Rooms in the world, and items each room starts with.
+    private static final int ROOMS = 16;
+    private static final int ITEMS_PER_ROOM = 200;
+    // The food among the items.
+    private static final ItemType APPLE = ItemType.of("This is an apple. This can be eaten", 1,
+                                                      true, ItemType.FOOD_HEALTH);
+    private static final String[] COMMANDS = {
+        "get", "get apple", "get pebble", "get apple", "get pebble",
+        "drop apple", "drop pebble", "drop pebble", "drop apple",
+        "eat", "go north", "go south", "go east", "go west",
+    };
+
+    /**
+     * Main method so that the test can be run outside of Bluej.
+     * @param args An optional number of players, then an optional number
+     *             of commands each player gives.
+     */
+    public static void main(String[] args) throws InterruptedException
+    {
+        if(args.length > 0 && args[0].equals("-events")) {
+            measureEvents(args.length > 1 ? Integer.parseInt(args[1]) : 5000);
+            return;
+        }
+        if(args.length > 0 && args[0].equals("-ticks")) {
+            measureTicks(args.length > 1 ? Integer.parseInt(args[1]) : 100_000);
+            return;
+        }
+        int players = args.length > 0 ? Integer.parseInt(args[0])
+                                      : Runtime.getRuntime().availableProcessors();
+        int commands = args.length > 1 ? Integer.parseInt(args[1]) : 500_000;
+
+        World world = Benchmark.gridWorld(ROOMS);
+        int total = 0;
+        for(Room room : world.getRooms()) {
+            room.removeItems();
+            for(int i = 0; i < ITEMS_PER_ROOM; i++) {
+                room.setItem(i % 4 == 0 ? new Item(APPLE)
+                                        : new Item("This is a pebble", 1));
+                total++;
+            }
+        }
+
+        SharedItems items = new SharedItems(world);
+        List<Game> games = new ArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+        PrintStream out = new PrintStream(OutputStream.nullOutputStream());
+        for(int p = 0; p < players; p++) {
+            Game game = new Game(world, items, InputStream.nullInputStream(), out);
+            games.add(game);
+            long seed = p;
+            threads.add(new Thread(() -> play(game, commands, seed)));
+        }
+        long start = System.nanoTime();
+        for(Thread thread : threads) {
+            thread.start();
+        }
+        for(Thread thread : threads) {
+            thread.join();
+        }
+        long time = System.nanoTime() - start;
+
+        System.out.printf("%d players, %d commands each: %.0f commands/s%n",
+                          players, commands, (double) players * commands * 1e9 / time);
+        System.exit(check(world, items, games, total) ? 0 : 1);
+    }
+
+    /**
+     * Fill one room with listeners and have a few players act in it.
+     * @param listeners The number of players that only listen.
+     */
+    private static void measureEvents(int listeners) throws InterruptedException
+    {
+        int actors = 4;
+        long seconds = 3;
+        World world = Benchmark.gridWorld(ROOMS);
+        Room hot = world.getStartRoom();
+        RoomEvents events = new RoomEvents(world);
+        AtomicLong written = new AtomicLong();
+        for(int i = 0; i < listeners; i++) {
+            boolean slow = i < 10;
+            events.join(hot, new PrintStream(new OutputStream() {
+                public void write(int b)
+                {
+                    written.incrementAndGet();
+                }
+
+                public void write(byte[] b, int off, int len)
+                {
+                    if(slow) {
+                        try {
+                            Thread.sleep(100);
+                        }
+                        catch(InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+                    written.addAndGet(len);
+                }
+            }));
+        }
+
+        // One game that walks in and out of the room, to see its arrival.
+        Game walker = new Game(world, new SharedItems(world), InputStream.nullInputStream(),
+                               new PrintStream(OutputStream.nullOutputStream()));
+        walker.setRoomEvents(events);
+        ByteArrayOutputStream heard = new ByteArrayOutputStream();
+        events.join(hot, new PrintStream(heard, true));
+
+        long end = System.nanoTime() + seconds * 1_000_000_000L;
+        AtomicLong announced = new AtomicLong();
+        AtomicLong announceTime = new AtomicLong();
+        List<Thread> threads = new ArrayList<>();
+        for(int a = 0; a < actors; a++) {
+            RoomEvents.Occupant actor = events.join(hot, new PrintStream(OutputStream.nullOutputStream()));
+            threads.add(new Thread(() -> {
+                // Act in bursts, as players do, rather than flood the room.
+                long count = 0;
+                long time = 0;
+                while(System.nanoTime() < end) {
+                    long start = System.nanoTime();
+                    for(int i = 0; i < 100; i++) {
+                        actor.announce("picked up the pebble.");
+                    }
+                    time += System.nanoTime() - start;
+                    count += 100;
+                    LockSupport.parkNanos(1_000_000);
+                }
+                announceTime.addAndGet(time);
+                announced.addAndGet(count);
+            }));
+        }
+        for(Thread thread : threads) {
+            thread.start();
+        }
+        walker.processCommand(new Command(CommandWord.GO, "east"));
+        walker.processCommand(new Command(CommandWord.GO, "west"));
+        for(Thread thread : threads) {
+            thread.join();
+        }
+        walker.setRoomEvents(null);
+        events.close();
+
+        System.out.printf("%d listeners, %d actors, %d s%n", listeners, actors, seconds);
+        System.out.printf("Announced: %d actions, %.0f ns each for the actor%n",
+                          announced.get(), (double) announceTime.get() / announced.get());
+        System.out.printf("Delivered: %d batches, %.1f per listener, %d MB%n",
+                          events.getBatchCount(),
+                          (double) events.getBatchCount() / listeners,
+                          written.get() >> 20);
+        System.out.println("Dropped for slow listeners: " + events.getDroppedCount());
+        String text = heard.toString();
+        boolean ok = text.contains("has arrived.") && text.contains("has left.");
+        System.out.println(ok ? "OK: the walker was seen to come and go"
+                              : "FAILED: the walker was not seen");
+        System.exit(ok ? 0 : 1);
+    }
+
+    /**
+     * Let time pass in many games while some of them are given commands.
+     * @param sessions The number of games.
+     */
+    private static void measureTicks(int sessions) throws InterruptedException
+    {
+        int players = 4;
+        long seconds = 5;
+        World world = World.campus();
+        PrintStream out = new PrintStream(OutputStream.nullOutputStream());
+        Game[] games = new Game[sessions];
+        TickScheduler ticks = new TickScheduler(Runtime.getRuntime().availableProcessors(), 100, 20);
+        for(int i = 0; i < sessions; i++) {
+            games[i] = new Game(world, InputStream.nullInputStream(), out);
+            ticks.add(games[i]);
+        }
+        ticks.start();
+
+        long end = System.nanoTime() + seconds * 1_000_000_000L;
+        AtomicLong commands = new AtomicLong();
+        List<Thread> threads = new ArrayList<>();
+        for(int p = 0; p < players; p++) {
+            long seed = p;
+            threads.add(new Thread(() -> {
+                SplittableRandom random = new SplittableRandom(seed);
+                Command[] parsed = { new Command(CommandWord.GO, "south"),
+                                     new Command(CommandWord.GO, "west"),
+                                     new Command(CommandWord.GO, "east"),
+                                     new Command(CommandWord.GO, "north"),
+                                     new Command(CommandWord.GET, null),
+                                     new Command(CommandWord.EAT, null) };
+                long count = 0;
+                while(System.nanoTime() < end) {
+                    for(int i = 0; i < 100; i++) {
+                        games[random.nextInt(games.length)]
+                            .processCommand(parsed[random.nextInt(parsed.length)]);
+                    }
+                    count += 100;
+                    LockSupport.parkNanos(1_000_000);
+                }
+                commands.addAndGet(count);
+            }));
+        }
+        for(Thread thread : threads) {
+            thread.start();
+        }
+        for(Thread thread : threads) {
+            thread.join();
+        }
+        ticks.close();
+
+        System.out.printf("%d sessions, %d ticks in %d s, %d commands%n",
+                          sessions, ticks.getTickCount(), seconds, commands.get());
+        System.out.printf("Tick time: last %.1f ms, longest %.1f ms, budget 20 ms%n",
+                          ticks.getLastTickTime() / 1e6, ticks.getMaxTickTime() / 1e6);
+        System.out.println("Overruns: " + ticks.getOverrunCount()
+                           + ", sessions deferred: " + ticks.getDeferredCount()
+                           + ", busy: " + ticks.getBusyCount()
+                           + ", late batches: " + ticks.getLateBatchCount());
+    }
+
+    /**
+     * Give random commands to a game.
+     */
+    private static void play(Game game, int commands, long seed)
+    {
+        SplittableRandom random = new SplittableRandom(seed);
+        CommandWords words = new CommandWords();
+        Command[] parsed = new Command[COMMANDS.length];
+        for(int i = 0; i < COMMANDS.length; i++) {
+            String[] parts = COMMANDS[i].split(" ");
+            parsed[i] = new Command(words.getCommandWord(parts[0]),
+                                    parts.length > 1 ? parts[1] : null);
+        }
+        for(int i = 0; i < commands; i++) {
+            game.processCommand(parsed[random.nextInt(parsed.length)]);
+        }
+    }
+
+    /**
+     * Check that every item is in exactly one place, and print the result.
+     * @return true if no item was lost or doubled.
+     */
+    private static boolean check(World world, SharedItems items, List<Game> games, int total)
+    {
+        IdentityHashMap<Item, Integer> seen = new IdentityHashMap<>();
+        int doubled = 0;
+        int misplaced = 0;
+        for(Room room : world.getRooms()) {
+            for(Item item : items.itemsIn(room)) {
+                doubled += seen.put(item, room.getId()) != null ? 1 : 0;
+                int location = items.locate(item);
+                misplaced += location != room.getId() && location != RoomItems.NOT_MOVED ? 1 : 0;
+            }
+        }
+        int eaten = 0;
+        for(Game game : games) {
+            for(Item item : game.getInventory()) {
+                doubled += seen.put(item, RoomItems.CARRIED) != null ? 1 : 0;
+                misplaced += items.locate(item) != RoomItems.CARRIED ? 1 : 0;
+            }
+            eaten += game.getHealth() / APPLE.getHealth();
+        }
+        int counted = seen.size() + eaten;
+        System.out.println("Items: " + total + " at the start, " + seen.size()
+                           + " in rooms and inventories, " + eaten + " eaten");
+        System.out.println("Rooms changed: " + items.numberChanged() + " of " + ROOMS);
+        boolean ok = counted == total && doubled == 0 && misplaced == 0;
+        System.out.println(ok ? "OK: no item was lost or doubled"
+                              : "FAILED: " + doubled + " doubled, " + misplaced
+                                + " misplaced, " + (total - counted) + " lost");
+        return ok;
+    }
+}
@@ -0,0 +1,155 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+/**
+ * This class is part of the "World of Zuul" application.
+ * "World of Zuul" is a very simple, text based adventure game.
+ *
+ * SnapshotCheck plays a long random game with a GameSnapshot taking a
+ * checkpoint after every command, so that the file goes through many
+ * deltas and compactions. Every few commands it waits for the snapshot
+ * to be written and restores it into a new game, which must be in the
+ * same state as the game that was saved: the same room, health, seed,
+ * inventory and items in the rooms.
+ *
+ * Each time it also cuts copies of the file off at random places, as a
+ * crash would, and damages single bytes of others, and checks that each
+ * such copy restores to one of the states the game was saved in. Only
+ * copies whose first record is lost may be refused.
+ *
+ * Run the main method with an optional number of commands and seed, for
+ * example "java SnapshotCheck 5000 1".
+ *
+ * @author  Ryan Rutishauser
+ * @version 2026.10.18
+ */
+
+public class SnapshotCheck
+{
+    // Rooms in the world, commands between restores, and the number of
+    // cut and of damaged copies made at each restore.
+    private static final int ROOMS = 100;
+    private static final int RESTORE_EVERY = 25;
+    private static final int CUTS = 3;
+    // The food put in every room.
+    private static final ItemType APPLE = ItemType.of("This is an apple. This can be eaten", 1,
+                                                      true, ItemType.FOOD_HEALTH);
+    private static final Command[] COMMANDS = {
+        new Command(CommandWord.GO, "north"), new Command(CommandWord.GO, "south"),
+        new Command(CommandWord.GO, "east"), new Command(CommandWord.GO, "west"),
+        new Command(CommandWord.GET, null), new Command(CommandWord.GET, "pebble"),
+        new Command(CommandWord.GET, "apple"), new Command(CommandWord.DROP, "pebble"),
+        new Command(CommandWord.DROP, "apple"), new Command(CommandWord.DROP, "pebble"),
+        new Command(CommandWord.EAT, null), new Command(CommandWord.TRANSPORT, null),
+    };
+
+    /**
+     * Main method so that the check can be run outside of Bluej.
+     * @param args An optional number of commands, then an optional seed.
+     */
+    public static void main(String[] args) throws IOException
+    {
+        int commands = args.length > 0 ? Integer.parseInt(args[0]) : 5000;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : 1;
+        SplittableRandom random = new SplittableRandom(seed);
+        World world = Benchmark.gridWorld(ROOMS);
+        for(Room room : world.getRooms()) {
+            for(int i = 0; i < 3; i++) {
+                room.setItem(new Item(APPLE));
+            }
+        }
+        PrintStream out = BatchRunner.discardingOutput();
+        Path file = Files.createTempFile("zuul-check", ".snapshot");
+        Path copy = Files.createTempFile("zuul-check", ".snapshot");
+
+        // Every state the game was saved in.
+        Set<String> saved = new HashSet<>();
+        boolean ok = true;
+        int restores = 0;
+        int copies = 0;
+        int refused = 0;
+        Game game = new Game(world, InputStream.nullInputStream(), out);
+        try(Checkpointer checkpointer = new Checkpointer(1, false)) {
+            GameSnapshot snapshot = checkpointer.open(file, world);
+            game.setSnapshot(snapshot, 1);
+            for(int i = 1; i <= commands && ok; i++) {
+                game.processCommand(COMMANDS[random.nextInt(COMMANDS.length)]);
+                saved.add(JournalCheck.state(game));
+                if(i % RESTORE_EVERY != 0) {
+                    continue;
+                }
+                snapshot.flush();
+                Game restored = new Game(world, InputStream.nullInputStream(), out);
+                GameSnapshot.restore(file, restored);
+                restores++;
+                if(!JournalCheck.state(restored).equals(JournalCheck.state(game))) {
+                    System.out.println("FAILED: after " + i + " commands the snapshot restores to\n"
+                                       + JournalCheck.state(restored) + "\ninstead of\n"
+                                       + JournalCheck.state(game));
+                    ok = false;
+                }
+
+                byte[] bytes = Files.readAllBytes(file);
+                // A copy that holds its first record whole must restore.
+                int firstRecord = 18 + ByteBuffer.wrap(bytes).getInt(10);
+                for(int c = 0; c < 2 * CUTS && ok; c++) {
+                    byte[] damaged;
+                    String what;
+                    boolean mayRefuse;
+                    if(c < CUTS) {
+                        int length = random.nextInt(bytes.length);
+                        damaged = Arrays.copyOf(bytes, length);
+                        what = "cut at " + length + " of " + bytes.length + " bytes";
+                        mayRefuse = length < firstRecord;
+                    }
+                    else {
+                        int at = random.nextInt(bytes.length);
+                        damaged = bytes.clone();
+                        damaged[at] ^= (byte) (1 + random.nextInt(255));
+                        what = "damaged at byte " + at + " of " + bytes.length;
+                        mayRefuse = at < firstRecord;
+                    }
+                    Files.write(copy, damaged);
+                    copies++;
+                    restored = new Game(world, InputStream.nullInputStream(), out);
+                    try {
+                        GameSnapshot.restore(copy, restored);
+                    }
+                    catch(IOException e) {
+                        if(!mayRefuse) {
+                            System.out.println("FAILED: " + what + ", the snapshot is refused: "
+                                               + e.getMessage());
+                            ok = false;
+                        }
+                        refused++;
+                        continue;
+                    }
+                    if(!saved.contains(JournalCheck.state(restored))) {
+                        System.out.println("FAILED: " + what + ", the snapshot restores to\n"
+                                           + JournalCheck.state(restored));
+                        ok = false;
+                    }
+                }
+            }
+            snapshot.close();
+        }
+        Files.delete(file);
+        Files.delete(copy);
+
+        System.out.printf("%d commands, %d restores, %d cut or damaged copies%n",
+                          commands, restores, copies);
+        if(ok) {
+            System.out.println("OK: every restore matched, and " + (copies - refused)
+                               + " cut or damaged copies restored a saved state");
+        }
+        System.exit(ok ? 0 : 1);
+    }
+}
@@ -0,0 +1,419 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class is part of the "World of Zuul" application.
+ * "World of Zuul" is a very simple, text based adventure game.
+ *
+ * A TickScheduler makes time pass in every live game at once. One
+ * thread starts a tick at a fixed rate; the tick splits the games into
+ * batches of BATCH_SIZE and hands the batches to a fixed pool of
+ * workers, which call Game.tryPassTime on each game. No game has a timer
+ * of its own.
+ *
+ * Each tick has a time budget. A worker that finds the budget used up
+ * leaves its remaining games for the next tick, and a game that is busy
+ * with a command is left for the next tick too; such games then pass all
+ * the ticks they missed at once, so no time is lost. A tick that takes
+ * longer than its budget counts as an overrun. Each tick starts its walk
+ * through the games at a different place, so the games left over when
+ * the budget runs out are not always the same ones.
+ *
+ * The tick only waits for its batches until the budget is used up. A
+ * batch still running then is late, and while it runs the following
+ * ticks are skipped and counted as overruns, rather than pass time twice
+ * in its games. Time must therefore never wait for a client: a server
+ * has its games queue what passing time prints, with
+ * Game.queueTimeOutput.
+ *
+ * Work that belongs to the world rather than to one game, such as the
+ * steps of an NpcSimulation or the respawning of a shared world's food,
+ * is run once a tick on a clock of its own. It has no share of the
+ * games' budget, so slow world work never leaves games for later; a
+ * round of world work that takes longer than a tick only delays the
+ * next round.
+ *
+ * The games are kept in an array in the order they were added, so that
+ * a tick walks through them in order instead of through a hash table.
+ *
+ * @author  Ryan Rutishauser
+ * @version 2026.10.18
+ */
+
+public class TickScheduler implements AutoCloseable
+{
+    // The tick used when none is given (milliseconds).
+    public static final long DEFAULT_TICK = 1000;
+    // Games handed to a worker at a time.
+    public static final int BATCH_SIZE = 256;
+    // Games passed between looks at the clock.
+    private static final int CLOCK_CHECK = 64;
+    // How far the start of the walk through the games moves each tick.
+    private static final long ROTATION = 0x9E3779B97F4A7C15L;
+
+    private final long tick;
+    private final long budget;
+    private boolean started;
+    // The games time passes in, the first "count" entries of "all".
+    private Session[] all;
+    private int count;
+    private final HashMap<Game, Session> sessions;
+    private final CopyOnWriteArrayList<Runnable> worldTasks;
+    private final ExecutorService workers;
+    private final ScheduledExecutorService clock;
+    private final ScheduledExecutorService worldClock;
+    private final AtomicLong tickCount;
+    private final AtomicLong overrunCount;
+    private final AtomicLong deferredCount;
+    private final AtomicLong busyCount;
+    private final AtomicLong worldOverrunCount;
+    private final AtomicLong lateBatchCount;
+    // Batches still running after their tick; only used by the clock.
+    private final List<Future<Void>> late;
+    private volatile long lastTickTime;
+    private volatile long maxTickTime;
+    private volatile long maxWorldTime;
+
+    /**
+     * Create a scheduler ticking every DEFAULT_TICK milliseconds with a
+     * budget of a fifth of the tick. It ticks once started.
+     * @param threads The number of worker threads.
+     */
+    public TickScheduler(int threads)
+    {
+        this(threads, DEFAULT_TICK, DEFAULT_TICK / 5);
+    }
+
+    /**
+     * Create a scheduler. It ticks once started.
+     * @param threads The number of worker threads.
+     * @param tick The time between ticks, in milliseconds.
+     * @param budget The time a tick may take, in milliseconds.
+     */
+    public TickScheduler(int threads, long tick, long budget)
+    {
+        this.tick = tick;
+        this.budget = TimeUnit.MILLISECONDS.toNanos(budget);
+        all = new Session[64];
+        sessions = new HashMap<>();
+        worldTasks = new CopyOnWriteArrayList<>();
+        tickCount = new AtomicLong();
+        overrunCount = new AtomicLong();
+        deferredCount = new AtomicLong();
+        busyCount = new AtomicLong();
+        worldOverrunCount = new AtomicLong();
+        lateBatchCount = new AtomicLong();
+        late = new ArrayList<>();
+        AtomicInteger count = new AtomicInteger();
+        workers = Executors.newFixedThreadPool(threads, task -> {
+            Thread thread = new Thread(task, "zuul-tick-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        clock = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "zuul-clock");
+            thread.setDaemon(true);
+            return thread;
+        });
+        worldClock = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "zuul-world-clock");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Start ticking, the first tick one tick from now.
+     */
+    public synchronized void start()
+    {
+        if(started) {
+            throw new IllegalStateException("The scheduler has already been started");
+        }
+        started = true;
+        clock.scheduleAtFixedRate(this::tick, tick, tick, TimeUnit.MILLISECONDS);
+        worldClock.scheduleAtFixedRate(this::runWorldTasks, tick, tick, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Let time pass in a game from the next tick on.
+     * @param game The game.
+     */
+    public synchronized void add(Game game)
+    {
+        if(sessions.containsKey(game)) {
+            return;
+        }
+        if(count == all.length) {
+            all = Arrays.copyOf(all, count * 2);
+        }
+        Session session = new Session(game, tickCount.get(), count);
+        all[count++] = session;
+        sessions.put(game, session);
+    }
+
+    /**
+     * Run a task once every tick, on the world's own clock. Its time does
+     * not count against the games' budget.
+     * @param task The task.
+     */
+    public void everyTick(Runnable task)
+    {
+        worldTasks.add(task);
+    }
+
+    /**
+     * Stop time passing in a game, for example because it has ended.
+     * @param game The game.
+     */
+    public synchronized void remove(Game game)
+    {
+        Session session = sessions.remove(game);
+        if(session == null) {
+            return;
+        }
+        // Move the last game into the hole.
+        Session last = all[--count];
+        all[session.index] = last;
+        last.index = session.index;
+        all[count] = null;
+    }
+
+    /**
+     * @return The number of games time passes in.
+     */
+    public synchronized int getSessionCount()
+    {
+        return count;
+    }
+
+    /**
+     * @return The number of ticks so far.
+     */
+    public long getTickCount()
+    {
+        return tickCount.get();
+    }
+
+    /**
+     * @return The number of ticks that took longer than their budget.
+     */
+    public long getOverrunCount()
+    {
+        return overrunCount.get();
+    }
+
+    /**
+     * @return The number of batches of games that were still running
+     * when the budget of their tick was used up.
+     */
+    public long getLateBatchCount()
+    {
+        return lateBatchCount.get();
+    }
+
+    /**
+     * @return The number of times a game was left for a later tick
+     * because the budget of a tick was used up.
+     */
+    public long getDeferredCount()
+    {
+        return deferredCount.get();
+    }
+
+    /**
+     * @return The number of times a game was left for a later tick
+     * because it was processing a command.
+     */
+    public long getBusyCount()
+    {
+        return busyCount.get();
+    }
+
+    /**
+     * @return How long the last tick took, in nanoseconds.
+     */
+    public long getLastTickTime()
+    {
+        return lastTickTime;
+    }
+
+    /**
+     * @return How long the longest tick took, in nanoseconds.
+     */
+    public long getMaxTickTime()
+    {
+        return maxTickTime;
+    }
+
+    /**
+     * @return The number of rounds of world tasks that took longer than
+     * a tick.
+     */
+    public long getWorldOverrunCount()
+    {
+        return worldOverrunCount.get();
+    }
+
+    /**
+     * @return How long the longest round of world tasks took, in
+     * nanoseconds.
+     */
+    public long getMaxWorldTime()
+    {
+        return maxWorldTime;
+    }
+
+    /**
+     * Stop ticking. A tick that is running is finished first.
+     */
+    public void close()
+    {
+        clock.shutdown();
+        worldClock.shutdown();
+        try {
+            clock.awaitTermination(1, TimeUnit.MINUTES);
+            worldClock.awaitTermination(1, TimeUnit.MINUTES);
+        }
+        catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        workers.shutdown();
+    }
+
+    /**
+     * Run one tick: pass time in every game, batch by batch, on the
+     * workers, and wait for them until the budget is used up.
+     */
+    void tick()
+    {
+        long start = System.nanoTime();
+        long deadline = start + budget;
+        long now = tickCount.incrementAndGet();
+        // A late batch still holds its games: running them again now could
+        // pass their time twice. They catch up once it has finished.
+        late.removeIf(Future::isDone);
+        if(!late.isEmpty()) {
+            overrunCount.incrementAndGet();
+            return;
+        }
+        // Start at a different game every tick: stepping by a large odd
+        // number puts every game near the front as often as the others.
+        Session[] live;
+        synchronized(this) {
+            live = new Session[count];
+            int offset = (int) Math.floorMod(now * ROTATION, (long) Math.max(count, 1));
+            System.arraycopy(all, offset, live, 0, count - offset);
+            System.arraycopy(all, 0, live, count - offset, offset);
+        }
+        List<Future<Void>> batches = new ArrayList<>();
+        for(int from = 0; from < live.length; from += BATCH_SIZE) {
+            int first = from;
+            int last = Math.min(from + BATCH_SIZE, live.length);
+            Callable<Void> batch = () -> {
+                runBatch(live, first, last, now, deadline);
+                return null;
+            };
+            batches.add(workers.submit(batch));
+        }
+        for(Future<Void> batch : batches) {
+            try {
+                batch.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            }
+            catch(TimeoutException e) {
+                late.add(batch);
+            }
+            catch(ExecutionException e) {
+                // A game that failed only loses this tick.
+            }
+            catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        lateBatchCount.addAndGet(late.size());
+        long time = System.nanoTime() - start;
+        lastTickTime = time;
+        if(time > maxTickTime) {
+            maxTickTime = time;
+        }
+        if(time > budget || !late.isEmpty()) {
+            overrunCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * Run one round of the world tasks, on the world's clock.
+     */
+    private void runWorldTasks()
+    {
+        long start = System.nanoTime();
+        for(Runnable task : worldTasks) {
+            task.run();
+        }
+        long time = System.nanoTime() - start;
+        if(time > maxWorldTime) {
+            maxWorldTime = time;
+        }
+        if(time > TimeUnit.MILLISECONDS.toNanos(tick)) {
+            worldOverrunCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * Pass time in a batch of games, leaving the rest for the next tick
+     * once the deadline is reached.
+     */
+    private void runBatch(Session[] live, int first, int last, long now, long deadline)
+    {
+        for(int i = first; i < last; i++) {
+            Session session = live[i];
+            if((i - first) % CLOCK_CHECK == 0 && System.nanoTime() > deadline) {
+                deferredCount.addAndGet(last - i);
+                return;
+            }
+            long elapsed = now - session.lastTick;
+            if(elapsed <= 0) {
+                continue;
+            }
+            if(session.game.tryPassTime((int) elapsed)) {
+                session.lastTick = now;
+            }
+            else {
+                busyCount.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * A game and the last tick that passed in it.
+     */
+    private static class Session
+    {
+        final Game game;
+        // Only read and written by the tick that has the game's batch.
+        long lastTick;
+        // Where the session is in "all"; changed under the scheduler's lock.
+        int index;
+
+        Session(Game game, long lastTick, int index)
+        {
+            this.game = game;
+            this.lastTick = lastTick;
+            this.index = index;
+        }
+    }
+}
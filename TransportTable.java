@@ -0,0 +1,378 @@
+import java.util.Arrays;
+import java.util.concurrent.locks.StampedLock;
+import java.util.random.RandomGenerator;
+
+/**
+ * This class is part of the "World of Zuul" application.
+ * "World of Zuul" is a very simple, text based adventure game.
+ *
+ * A TransportTable holds the rooms the transporter may send a player to,
+ * and draws one of them at random in constant time. Rooms can be
+ * excluded from the table, for example rooms no player should land in,
+ * and each room can be given a weight that makes it more or less likely
+ * to be drawn. Both can be changed while the game runs; each change only
+ * updates the entries of that room.
+ *
+ * While every room is a destination with the same weight the table needs
+ * no arrays at all. Once a room is excluded the table keeps the ids of
+ * the eligible rooms in an array, plus each room's position in it, so
+ * that a room can be removed or added again by swapping. Once weights
+ * differ, draws use an alias table (Walker's method), which is rebuilt
+ * before the next draw after the weights or the eligible rooms change.
+ *
+ * Draws only take an optimistic read of the table's lock, so many games
+ * can transport players at the same time. Each draw takes one number
+ * from the player's generator and uses it again if the draw has to be
+ * repeated because another thread changed the table, so a game takes the
+ * same numbers from its generator however the threads interleave, and a
+ * journal of it replays the same way.
+ *
+ * @author  Ryan Rutishauser
+ * @version 2026.10.18
+ */
+
+public class TransportTable
+{
+    // Returned by draw when the draw has to be repeated.
+    private static final int STALE = -2;
+
+    private final StampedLock lock;
+    private int roomCount;
+    // Ids of the eligible rooms, or null while every room is eligible.
+    private int[] eligible;
+    private int eligibleCount;
+    // Position of each room in "eligible", or -1 if it is excluded.
+    private int[] position;
+    // Weight of each room, or null while all weights are 1.
+    private double[] weights;
+    // Alias table over "eligible", valid while "aliasStale" is false.
+    private double[] aliasChance;
+    private int[] alias;
+    private boolean aliasStale;
+
+    /**
+     * Create a table in which every room of a world is a destination
+     * with weight 1.
+     * @param roomCount The number of rooms of the world.
+     */
+    public TransportTable(int roomCount)
+    {
+        lock = new StampedLock();
+        this.roomCount = roomCount;
+        eligibleCount = roomCount;
+    }
+
+    /**
+     * Draw a destination for a player. The room the player is in is
+     * never drawn.
+     * @param random The source of randomness of the player's game.
+     * @param currentId The id of the room the player is in.
+     * @return The id of the destination, or -1 if there is none.
+     */
+    public int sample(RandomGenerator random, int currentId)
+    {
+        long bits = random.nextLong();
+        while(true) {
+            long stamp = lock.tryOptimisticRead();
+            int count = eligibleCount;
+            int id = draw(bits);
+            if(!lock.validate(stamp)) {
+                // Drawn again from the same number under the read lock.
+                stamp = lock.readLock();
+                try {
+                    count = eligibleCount;
+                    id = draw(bits);
+                }
+                finally {
+                    lock.unlockRead(stamp);
+                }
+            }
+            if(id == STALE) {
+                rebuildAlias();
+            }
+            else if(id < 0 || (id == currentId && count == 1)) {
+                return -1;
+            }
+            else if(id != currentId) {
+                return id;
+            }
+            else {
+                bits = random.nextLong();
+            }
+        }
+    }
+
+    /**
+     * Stop a room from being drawn. A room created after the table is
+     * added to it first, so that it stays excluded.
+     * @param id The id of the room.
+     */
+    public void exclude(int id)
+    {
+        checkId(id);
+        long stamp = lock.writeLock();
+        try {
+            if(id >= roomCount) {
+                grow(id + 1);
+            }
+            makeExplicit();
+            int at = position[id];
+            if(at >= 0) {
+                int last = eligible[--eligibleCount];
+                eligible[at] = last;
+                position[last] = at;
+                position[id] = -1;
+                aliasStale = weights != null;
+            }
+        }
+        finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Let a room be drawn again, or add a room that was created after the
+     * table. Rooms are added with weight 1.
+     * @param id The id of the room.
+     */
+    public void include(int id)
+    {
+        checkId(id);
+        long stamp = lock.writeLock();
+        try {
+            if(id >= roomCount) {
+                grow(id + 1);
+            }
+            if(eligible == null) {
+                return;
+            }
+            if(position[id] < 0) {
+                eligible[eligibleCount] = id;
+                position[id] = eligibleCount++;
+                aliasStale = weights != null;
+            }
+        }
+        finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Change how likely a room is to be drawn.
+     * @param id The id of the room.
+     * @param weight The room's weight; rooms are drawn in proportion to
+     *               it. A weight of 0 excludes the room.
+     */
+    public void setWeight(int id, double weight)
+    {
+        if(weight <= 0) {
+            exclude(id);
+            return;
+        }
+        checkId(id);
+        long stamp = lock.writeLock();
+        try {
+            if(id >= roomCount) {
+                grow(id + 1);
+            }
+            if(weights == null) {
+                if(weight == 1) {
+                    return;
+                }
+                weights = new double[roomCount];
+                Arrays.fill(weights, 1);
+            }
+            weights[id] = weight;
+            aliasStale = true;
+        }
+        finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * @param id The id of a room.
+     * @return true if the room can be drawn.
+     */
+    public boolean isEligible(int id)
+    {
+        long stamp = lock.readLock();
+        try {
+            return id >= 0 && id < roomCount && (eligible == null || position[id] >= 0);
+        }
+        finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * @return The number of rooms that can be drawn.
+     */
+    public int getEligibleCount()
+    {
+        long stamp = lock.readLock();
+        try {
+            return eligibleCount;
+        }
+        finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Draw an eligible room without locking. The result is only used if
+     * the caller's optimistic read is still valid afterwards.
+     * @param bits A random number: its high half picks a position, its
+     *             low half decides between the position and its alias.
+     * @return The id drawn, -1 if no room is eligible, or STALE if the
+     *         alias table must be rebuilt first or the table changed.
+     */
+    private int draw(long bits)
+    {
+        int[] rooms = eligible;
+        int count = eligibleCount;
+        if(count <= 0) {
+            return -1;
+        }
+        int index = (int) (((bits >>> 32) * count) >>> 32);
+        if(weights != null) {
+            double[] chance = aliasChance;
+            int[] other = alias;
+            if(aliasStale || chance == null || chance.length < count || other.length < count) {
+                return STALE;
+            }
+            if((bits & 0xFFFFFFFFL) * 0x1.0p-32 >= chance[index]) {
+                index = other[index];
+            }
+        }
+        if(rooms == null) {
+            return index;
+        }
+        if(index >= rooms.length) {
+            return STALE;
+        }
+        return rooms[index];
+    }
+
+    /**
+     * Rebuild the alias table from the current weights with Vose's
+     * version of Walker's method.
+     */
+    private void rebuildAlias()
+    {
+        long stamp = lock.writeLock();
+        try {
+            if(!aliasStale) {
+                return;
+            }
+            int count = eligibleCount;
+            double total = 0;
+            for(int i = 0; i < count; i++) {
+                total += weights[roomAt(i)];
+            }
+            double[] chance = new double[count];
+            int[] other = new int[count];
+            int[] small = new int[count];
+            int[] large = new int[count];
+            int smallCount = 0;
+            int largeCount = 0;
+            for(int i = 0; i < count; i++) {
+                chance[i] = weights[roomAt(i)] * count / total;
+                if(chance[i] < 1) {
+                    small[smallCount++] = i;
+                }
+                else {
+                    large[largeCount++] = i;
+                }
+            }
+            while(smallCount > 0 && largeCount > 0) {
+                int less = small[--smallCount];
+                int more = large[--largeCount];
+                other[less] = more;
+                chance[more] = chance[more] + chance[less] - 1;
+                if(chance[more] < 1) {
+                    small[smallCount++] = more;
+                }
+                else {
+                    large[largeCount++] = more;
+                }
+            }
+            while(largeCount > 0) {
+                chance[large[--largeCount]] = 1;
+            }
+            while(smallCount > 0) {
+                chance[small[--smallCount]] = 1;
+            }
+            aliasChance = chance;
+            alias = other;
+            aliasStale = false;
+        }
+        finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Reject an id that no room can have.
+     */
+    private static void checkId(int id)
+    {
+        if(id < 0) {
+            throw new IllegalArgumentException("No room has the id " + id);
+        }
+    }
+
+    /**
+     * @return The id of the room at position "i" of the eligible rooms.
+     */
+    private int roomAt(int i)
+    {
+        return eligible == null ? i : eligible[i];
+    }
+
+    /**
+     * Create the eligible array and position index, which are not kept
+     * while every room is eligible.
+     */
+    private void makeExplicit()
+    {
+        if(eligible != null) {
+            return;
+        }
+        eligible = new int[roomCount];
+        position = new int[roomCount];
+        for(int i = 0; i < roomCount; i++) {
+            eligible[i] = i;
+            position[i] = i;
+        }
+    }
+
+    /**
+     * Make room for rooms up to the given count. New rooms are eligible.
+     * @param count The new number of rooms.
+     */
+    private void grow(int count)
+    {
+        int capacity = Math.max(count, roomCount + roomCount / 2);
+        if(eligible == null) {
+            eligibleCount = count;
+        }
+        else {
+            eligible = Arrays.copyOf(eligible, capacity);
+            int old = position.length;
+            position = Arrays.copyOf(position, capacity);
+            Arrays.fill(position, old, capacity, -1);
+            for(int id = roomCount; id < count; id++) {
+                eligible[eligibleCount] = id;
+                position[id] = eligibleCount++;
+            }
+        }
+        if(weights != null) {
+            int old = weights.length;
+            weights = Arrays.copyOf(weights, capacity);
+            Arrays.fill(weights, old, capacity, 1);
+        }
+        roomCount = count;
+        aliasStale = weights != null;
+    }
+}
@@ -0,0 +1,285 @@
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * This class is part of the "World of Zuul" application.
+ * "World of Zuul" is a very simple, text based adventure game.
+ *
+ * A World is the map a game is played on: all rooms, their exits and
+ * the items they start with. Rooms are numbered in the order they are
+ * given and their exits are held by a RoomGraph. A world is built once
+ * and then shared, unchanged, by every game played on it. What a player
+ * changes, such as the items taken from a room, is kept by that player's
+ * game in an ItemOverlay and never written back to the world.
+ *
+ * @author  Ryan Rutishauser
+ * @version 2026.10.18
+ */
+
+public class World
+{
+    private RoomGraph graph;
+    private Room startRoom;
+    private BitSet noEscape;
+    private int[] respawnRooms;
+    // The name of each room by id, or null if the rooms have no names.
+    private String[] roomNames;
+    private volatile HashMap<String, Integer> roomIds;
+    private volatile TransportTable transportTable;
+    private volatile ItemIndex itemIndex;
+    private volatile RouteCache routeCache;
+    private volatile GraphAnalysis analysis;
+
+    /**
+     * Create a world from rooms that have already been linked together.
+     * @param rooms All rooms of the world.
+     * @param startRoom The room every game starts in.
+     * @param locker The room that cannot be escaped, or null if none.
+     */
+    public World(List<Room> rooms, Room startRoom, Room locker)
+    {
+        graph = RoomGraph.of(rooms);
+        this.startRoom = startRoom;
+        noEscape = new BitSet();
+        if(locker != null) {
+            noEscape.set(locker.getId());
+        }
+        respawnRooms = new int[0];
+    }
+
+    /**
+     * Create a world from a graph of rooms.
+     * @param graph The rooms and their exits.
+     * @param startRoom The room every game starts in.
+     * @param noEscape The ids of the rooms that cannot be escaped.
+     */
+    public World(RoomGraph graph, Room startRoom, BitSet noEscape)
+    {
+        this(graph, startRoom, noEscape, new BitSet());
+    }
+
+    /**
+     * Create a world from a graph of rooms, some of which get back the
+     * items they start with as time passes.
+     * @param graph The rooms and their exits.
+     * @param startRoom The room every game starts in.
+     * @param noEscape The ids of the rooms that cannot be escaped.
+     * @param respawn The ids of the rooms whose items come back.
+     */
+    public World(RoomGraph graph, Room startRoom, BitSet noEscape, BitSet respawn)
+    {
+        this(graph, startRoom, noEscape, respawn, null);
+    }
+
+    /**
+     * Create a world from a graph of rooms that have names, as the rooms
+     * of a world file do.
+     * @param graph The rooms and their exits.
+     * @param startRoom The room every game starts in.
+     * @param noEscape The ids of the rooms that cannot be escaped.
+     * @param respawn The ids of the rooms whose items come back.
+     * @param names The name of each room by id, or null if the rooms have
+     *              no names.
+     */
+    public World(RoomGraph graph, Room startRoom, BitSet noEscape, BitSet respawn,
+                 List<String> names)
+    {
+        this.graph = graph;
+        this.startRoom = startRoom;
+        this.noEscape = (BitSet) noEscape.clone();
+        respawnRooms = respawn.stream().toArray();
+        if(names != null) {
+            roomNames = names.toArray(new String[0]);
+        }
+    }
+
+    /**
+     * @return The shared campus world. It is loaded from the world file
+     * shipped with the game the first time it is asked for, and the same
+     * world is returned afterwards.
+     */
+    public static World campus()
+    {
+        return CampusHolder.CAMPUS;
+    }
+
+    /**
+     * @return All rooms of this world.
+     */
+    public List<Room> getRooms()
+    {
+        return graph.getRooms();
+    }
+
+    /**
+     * @return The graph holding the exits of all rooms of this world.
+     */
+    public RoomGraph getGraph()
+    {
+        return graph;
+    }
+
+    /**
+     * @return The room every game starts in.
+     */
+    public Room getStartRoom()
+    {
+        return startRoom;
+    }
+
+    /**
+     * @return The rooms the transporter can send players to in this
+     * world. It is made the first time it is asked for, with every room
+     * as a destination from which the start room can be reached again.
+     * In a generated world, which is too large to analyse, every room is
+     * a destination.
+     */
+    public TransportTable getTransportTable()
+    {
+        TransportTable table = transportTable;
+        if(table == null) {
+            synchronized(this) {
+                table = transportTable;
+                if(table == null) {
+                    table = new TransportTable(graph.size());
+                    if(!graph.isGenerated()) {
+                        getAnalysis().attach(table);
+                    }
+                    transportTable = table;
+                }
+            }
+        }
+        return table;
+    }
+
+    /**
+     * @return Which rooms of this world can be reached and which are
+     * traps. The analysis is made the first time it is asked for and
+     * kept up to date as exits change.
+     */
+    public GraphAnalysis getAnalysis()
+    {
+        GraphAnalysis result = analysis;
+        if(result == null) {
+            synchronized(this) {
+                result = analysis;
+                if(result == null) {
+                    result = GraphAnalysis.of(graph, startRoom.getId());
+                    analysis = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return The routes between the rooms of this world. The cache is
+     * made the first time it is asked for.
+     */
+    public RouteCache getRouteCache()
+    {
+        RouteCache cache = routeCache;
+        if(cache == null) {
+            synchronized(this) {
+                cache = routeCache;
+                if(cache == null) {
+                    cache = new RouteCache(graph);
+                    routeCache = cache;
+                }
+            }
+        }
+        return cache;
+    }
+
+    /**
+     * Find a room by the name it has in the world file. Rooms of a world
+     * made without names are known by their id instead, such as "42".
+     * @param name The name of a room.
+     * @return The room, or null if there is no room of that name.
+     */
+    public Room findRoom(String name)
+    {
+        if(roomNames == null) {
+            try {
+                int id = Integer.parseInt(name);
+                return id >= 0 && id < graph.size() ? graph.getRoom(id) : null;
+            }
+            catch(NumberFormatException e) {
+                return null;
+            }
+        }
+        HashMap<String, Integer> ids = roomIds;
+        if(ids == null) {
+            synchronized(this) {
+                ids = roomIds;
+                if(ids == null) {
+                    ids = new HashMap<>();
+                    for(int id = 0; id < roomNames.length; id++) {
+                        ids.put(roomNames[id], id);
+                    }
+                    roomIds = ids;
+                }
+            }
+        }
+        Integer id = ids.get(name);
+        return id == null ? null : graph.getRoom(id);
+    }
+
+    /**
+     * @param room A room of this world.
+     * @return The name findRoom knows the room by.
+     */
+    public String getRoomName(Room room)
+    {
+        return roomNames == null ? String.valueOf(room.getId()) : roomNames[room.getId()];
+    }
+
+    /**
+     * @return Where the items of this world start. The index is built the
+     * first time it is asked for.
+     * @throws IllegalArgumentException If the world is generated, which
+     *         is too large to index.
+     */
+    public ItemIndex getItemIndex()
+    {
+        ItemIndex index = itemIndex;
+        if(index == null) {
+            synchronized(this) {
+                index = itemIndex;
+                if(index == null) {
+                    index = new ItemIndex(this);
+                    itemIndex = index;
+                }
+            }
+        }
+        return index;
+    }
+
+    /**
+     * @param room A room of this world.
+     * @return true if the room cannot be escaped, like the locker.
+     */
+    public boolean isNoEscape(Room room)
+    {
+        return noEscape.get(room.getId());
+    }
+
+    /**
+     * @return The ids of the rooms whose items come back after they are
+     * taken, like the food in the cafeteria. The array must not be
+     * changed.
+     */
+    public int[] getRespawnRooms()
+    {
+        return respawnRooms;
+    }
+
+    /**
+     * Holds the campus world so that it is only built when first used.
+     */
+    private static class CampusHolder
+    {
+        static final World CAMPUS = WorldLoader.loadCampus();
+    }
+}
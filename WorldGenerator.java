@@ -0,0 +1,580 @@
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.stream.IntStream;
+
+/**
+ * This class is part of the "World of Zuul" application.
+ * "World of Zuul" is a very simple, text based adventure game.
+ *
+ * A WorldGenerator makes synthetic worlds of a given size for load and
+ * scaling tests, in one of four shapes:
+ *
+ *     grid         rooms in a square, joined to their neighbours
+ *     tree         every room leads down to its children and up again
+ *     small-world  a ring with a few one-way shortcuts across it
+ *     hub          a ring whose rooms lead up to a few crowded hubs
+ *
+ * The degree sets how many exits a room gets, as far as the shape
+ * allows: the average number of exits of a grid room, the most exits of
+ * a tree room, and how many of the links to second neighbours (for a
+ * small world) or to a hub (for a hub world) are made. The item density
+ * is the share of rooms that start with an item, and the trap share is
+ * the share of rooms that get a trap: an extra room that, like the
+ * locker, is entered by a one-way exit from its room and has no exits,
+ * and is marked noescape. The rooms keep their own exits, so traps never
+ * cut the world apart, and the traps are numbered after the other rooms.
+ * Every room of every shape can be reached from the start room: a grid
+ * room is always joined to its neighbours in its row, and the first
+ * column joins the rows, while the other joins between rows are made by
+ * chance.
+ *
+ * Everything about a room follows from the seed and the room's id, so
+ * rooms are worked out in any order and by many threads at once. build()
+ * fills the exit arrays of a RoomGraph on a ForkJoinPool, one range of
+ * rooms per task, and makes each Room only when it is first asked for.
+ * write() streams the world as a world file: ranges of rooms are turned
+ * into text in parallel and written in order, with only a few ranges in
+ * memory at a time.
+ *
+ * Run the main method to measure how fast a world is made, for example
+ * "java WorldGenerator grid 10000000", and add "-out big.world" to
+ * write it. "java Game -synthetic grid 100000 42" plays in such a world.
+ *
+ * @author  Ryan Rutishauser
+ * @version 2026.10.18
+ */
+
+public class WorldGenerator implements RoomGraph.RoomFactory
+{
+    /**
+     * The shapes a world can have.
+     */
+    public enum Shape
+    {
+        GRID, TREE, SMALL_WORLD, HUB;
+
+        /**
+         * @param name A shape as it is typed, such as "small-world".
+         * @return The shape.
+         */
+        public static Shape fromString(String name)
+        {
+            return valueOf(name.toUpperCase().replace('-', '_'));
+        }
+    }
+
+    public static final double DEFAULT_DEGREE = 3;
+    public static final double DEFAULT_ITEM_DENSITY = 0.1;
+    public static final double DEFAULT_TRAP_SHARE = 0.001;
+    // Rooms worked out by one task.
+    private static final int LEAF = 1 << 16;
+    // Share of small world rooms with a shortcut.
+    private static final double SHORTCUTS = 0.1;
+    // The questions asked about a room, each with its own random number.
+    private static final int JOIN_EAST = 0;
+    private static final int JOIN_SOUTH = 1;
+    private static final int LINK = 2;
+    private static final int FAR = 3;
+    private static final int TRAP = 4;
+    private static final int ITEM = 5;
+    private static final int QUESTIONS = 6;
+    // The exits of a tree room to its children, in order.
+    private static final Direction[] CHILDREN = {
+        Direction.NORTH, Direction.EAST, Direction.SOUTH, Direction.WEST, Direction.DOWN,
+    };
+    private static final ItemType APPLE = ItemType.of("This is an apple. This can be eaten", 1,
+                                                      true, ItemType.FOOD_HEALTH);
+    private static final ItemType PEBBLE = ItemType.of("This is a pebble", 1);
+
+    private final Shape shape;
+    private final int size;
+    private final long seed;
+    private double degree;
+    private double itemDensity;
+    private double trapShare;
+    private ForkJoinPool pool;
+    // The rooms that have a trap, in increasing order; the trap of
+    // owner[i] is room size + i. Worked out by findTraps.
+    private int[] owner;
+
+    /**
+     * Main method so that making worlds can be measured outside of Bluej.
+     * @param args A shape, a number of rooms and an optional seed, then
+     *             any of "-degree d", "-items f", "-traps f" and
+     *             "-out file".
+     */
+    public static void main(String[] args) throws IOException
+    {
+        if(args.length < 2) {
+            System.out.println("Usage: WorldGenerator grid|tree|small-world|hub <rooms> [seed]"
+                               + " [-degree d] [-items f] [-traps f] [-out file]");
+            return;
+        }
+        Shape shape = Shape.fromString(args[0]);
+        int size = Integer.parseInt(args[1]);
+        long seed = 42;
+        String out = null;
+        double degree = DEFAULT_DEGREE;
+        double items = DEFAULT_ITEM_DENSITY;
+        double traps = DEFAULT_TRAP_SHARE;
+        for(int i = 2; i < args.length; i++) {
+            switch(args[i]) {
+                case "-degree": degree = Double.parseDouble(args[++i]); break;
+                case "-items":  items = Double.parseDouble(args[++i]); break;
+                case "-traps":  traps = Double.parseDouble(args[++i]); break;
+                case "-out":    out = args[++i]; break;
+                default:        seed = Long.parseLong(args[i]); break;
+            }
+        }
+        WorldGenerator generator = new WorldGenerator(shape, size, seed);
+        generator.setDegree(degree);
+        generator.setItemDensity(items);
+        generator.setTrapShare(traps);
+        System.out.println("Using " + generator.pool.getParallelism() + " threads");
+
+        long start = System.nanoTime();
+        World world = generator.build();
+        double seconds = (System.nanoTime() - start) / 1e9;
+        RoomGraph graph = world.getGraph();
+        long exits = 0;
+        for(int id = 0; id < graph.size(); id++) {
+            exits += graph.exitCount(id);
+        }
+        System.out.printf("Built %,d rooms with %,d exits and %,d traps in %.2f s (%,.0f rooms/s)%n",
+                          size, exits, graph.size() - size, seconds, size / seconds);
+        if(out != null) {
+            start = System.nanoTime();
+            try(OutputStream stream = Files.newOutputStream(Paths.get(out))) {
+                generator.write(stream);
+            }
+            seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("Wrote %s, %,d MB, in %.2f s%n", out,
+                              Files.size(Paths.get(out)) >> 20, seconds);
+        }
+    }
+
+    /**
+     * Create a generator with the default degree, item density and trap
+     * share, working on the common ForkJoinPool.
+     * @param shape The shape of the world.
+     * @param size The number of rooms, at least one.
+     * @param seed The seed the whole world follows from.
+     */
+    public WorldGenerator(Shape shape, int size, long seed)
+    {
+        if(size < 1) {
+            throw new IllegalArgumentException("A world needs at least one room");
+        }
+        this.shape = shape;
+        this.size = size;
+        this.seed = seed;
+        degree = DEFAULT_DEGREE;
+        itemDensity = DEFAULT_ITEM_DENSITY;
+        trapShare = DEFAULT_TRAP_SHARE;
+        pool = ForkJoinPool.commonPool();
+    }
+
+    /**
+     * @param degree How many exits a room gets, as described above.
+     */
+    public void setDegree(double degree)
+    {
+        this.degree = degree;
+    }
+
+    /**
+     * @param itemDensity The share of rooms that start with an item.
+     */
+    public void setItemDensity(double itemDensity)
+    {
+        this.itemDensity = itemDensity;
+    }
+
+    /**
+     * @param trapShare The share of rooms that get a trap.
+     */
+    public void setTrapShare(double trapShare)
+    {
+        this.trapShare = trapShare;
+        owner = null;
+    }
+
+    /**
+     * @param pool The threads that make the world.
+     */
+    public void setPool(ForkJoinPool pool)
+    {
+        this.pool = pool;
+    }
+
+    /**
+     * Make the world. Room 0 is the start room and never has a trap.
+     * @return The world, whose rooms are made when first asked for.
+     */
+    public World build()
+    {
+        findTraps();
+        int total = size + owner.length;
+        // first[id + 1] is counted, then added up into the start of the
+        // exits of each room, and then the exits are filled in.
+        int[] first = new int[total + 1];
+        pool.invoke(new Fill(0, total, first, null, null));
+        Arrays.parallelPrefix(first, Integer::sum);
+        byte[] direction = new byte[first[total]];
+        int[] target = new int[first[total]];
+        pool.invoke(new Fill(0, total, first, direction, target));
+
+        BitSet noEscape = new BitSet(total);
+        noEscape.set(size, total);
+        RoomGraph graph = new RoomGraph(first, direction, target, this);
+        return new World(graph, graph.getRoom(0), noEscape);
+    }
+
+    /**
+     * Write the world as a world file that WorldLoader reads back as the
+     * same world, with each room named by its id.
+     * @param out Where the file is written; it is not closed.
+     */
+    public void write(OutputStream out) throws IOException
+    {
+        findTraps();
+        int total = size + owner.length;
+        OutputStream buffered = new BufferedOutputStream(out, 1 << 16);
+        String header = "# A " + shape.name().toLowerCase().replace('_', '-') + " world of "
+                        + size + " rooms and " + owner.length + " traps made by WorldGenerator"
+                        + " with seed " + seed + ",\n"
+                        + "# degree " + degree + ", item density " + itemDensity
+                        + " and trap share " + trapShare + ".\n\nstart 0\n\n";
+        buffered.write(header.getBytes(StandardCharsets.US_ASCII));
+        // Enough ranges in flight to keep every thread busy while the
+        // oldest one is written.
+        int window = pool.getParallelism() * 2;
+        ArrayDeque<ForkJoinTask<byte[]>> pending = new ArrayDeque<>();
+        for(int begin = 0; begin < total; begin += LEAF) {
+            int from = begin;
+            int to = Math.min(total, begin + LEAF);
+            pending.add(pool.submit(() -> text(from, to)));
+            if(pending.size() > window) {
+                buffered.write(pending.remove().join());
+            }
+        }
+        while(!pending.isEmpty()) {
+            buffered.write(pending.remove().join());
+        }
+        buffered.flush();
+    }
+
+    /**
+     * Make a room, stocked by chance.
+     */
+    public Room createRoom(RoomGraph graph, int id)
+    {
+        Room room = new Room(description(id), graph, id);
+        ItemType type = itemType(id);
+        if(type != null) {
+            room.setItem(new Item(type));
+        }
+        return room;
+    }
+
+    /**
+     * Work out which rooms get a trap, once: the rooms other than the
+     * start room picked by the trap share that have a direction left
+     * for the trap's exit.
+     */
+    private void findTraps()
+    {
+        if(owner == null) {
+            owner = pool.submit(() -> IntStream.range(1, size).parallel()
+                                               .filter(id -> trapExit(id) >= 0)
+                                               .toArray()).join();
+        }
+    }
+
+    /**
+     * @return The direction ordinal of the exit from a room to its trap,
+     * or -1 if the room gets no trap.
+     */
+    private int trapExit(int id)
+    {
+        if(id == 0 || id >= size || chance(id, TRAP) >= trapShare) {
+            return -1;
+        }
+        int[] target = new int[Direction.count()];
+        shapeExits(id, target);
+        for(int d = 0; d < target.length; d++) {
+            if(target[d] < 0) {
+                return d;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return What a room is called in the world: traps are pits.
+     */
+    private String description(int id)
+    {
+        return id < size ? "in room " + id : "in a pit below room " + owner[id - size];
+    }
+
+    /**
+     * Work out the exits of a room, with the exit to its trap. A trap
+     * has none.
+     * @param id The id of the room.
+     * @param target Filled with the room each exit leads to by direction
+     *               ordinal, or -1 where there is no exit.
+     * @return The number of exits.
+     */
+    private int exits(int id, int[] target)
+    {
+        if(id >= size) {
+            Arrays.fill(target, -1);
+            return 0;
+        }
+        shapeExits(id, target);
+        if(id != 0 && chance(id, TRAP) < trapShare) {
+            int trap = Arrays.binarySearch(owner, id);
+            if(trap >= 0) {
+                target[trapExit(id)] = size + trap;
+            }
+        }
+        int count = 0;
+        for(int d = 0; d < target.length; d++) {
+            if(target[d] >= 0) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Work out the exits a room has from the shape of the world.
+     * @param id The id of the room.
+     * @param target Filled with the room each exit leads to by direction
+     *               ordinal, or -1 where there is no exit.
+     */
+    private void shapeExits(int id, int[] target)
+    {
+        Arrays.fill(target, -1);
+        switch(shape) {
+            case GRID:
+                grid(id, target);
+                break;
+
+            case TREE:
+                tree(id, target);
+                break;
+
+            case SMALL_WORLD:
+                ring(id, target, (degree - 2) / 2);
+                if(chance(id, LINK) < SHORTCUTS) {
+                    target[Direction.UP.ordinal()] = (int) (chance(id, FAR) * size);
+                }
+                break;
+
+            case HUB:
+                ring(id, target, 0);
+                int hubs = Math.max(1, (int) Math.sqrt(size));
+                if(id < hubs) {
+                    target[Direction.DOWN.ordinal()] = (int) (chance(id, FAR) * size);
+                }
+                else if(chance(id, LINK) < degree - 2) {
+                    // Cubing the chance crowds the links onto the first hubs.
+                    double u = chance(id, FAR);
+                    target[Direction.UP.ordinal()] = (int) (u * u * u * hubs);
+                }
+                break;
+        }
+        for(int d = 0; d < target.length; d++) {
+            if(target[d] == id) {
+                target[d] = -1;
+            }
+        }
+    }
+
+    /**
+     * A room of a grid is joined to its east and west neighbours, so
+     * that each row is walked through, and the rooms of the first column
+     * to their north and south ones, so that the rows are joined. The
+     * other rooms are joined to their south neighbour by chance, and
+     * through the north neighbour's join to it, as often as it takes for
+     * the degree.
+     */
+    private void grid(int id, int[] target)
+    {
+        int width = (int) Math.ceil(Math.sqrt(size));
+        int x = id % width;
+        double joined = (degree - 2) / 2;
+        if(x + 1 < width && id + 1 < size) {
+            target[Direction.EAST.ordinal()] = id + 1;
+        }
+        if(x > 0) {
+            target[Direction.WEST.ordinal()] = id - 1;
+        }
+        if(id + width < size && (x == 0 || chance(id, JOIN_SOUTH) < joined)) {
+            target[Direction.SOUTH.ordinal()] = id + width;
+        }
+        if(id >= width && (x == 0 || chance(id - width, JOIN_SOUTH) < joined)) {
+            target[Direction.NORTH.ordinal()] = id - width;
+        }
+    }
+
+    /**
+     * A room of a tree has up to degree - 1 children, numbered in
+     * breadth first order, and leads up to its parent.
+     */
+    private void tree(int id, int[] target)
+    {
+        int children = (int) Math.max(1, Math.min(CHILDREN.length, Math.round(degree) - 1));
+        if(id > 0) {
+            target[Direction.UP.ordinal()] = (id - 1) / children;
+        }
+        for(int i = 0; i < children; i++) {
+            long child = (long) id * children + 1 + i;
+            if(child < size) {
+                target[CHILDREN[i].ordinal()] = (int) child;
+            }
+        }
+    }
+
+    /**
+     * A room of a ring leads east and west to its neighbours, and north
+     * and south to its second neighbours if they are joined by chance.
+     */
+    private void ring(int id, int[] target, double joined)
+    {
+        target[Direction.EAST.ordinal()] = (id + 1) % size;
+        target[Direction.WEST.ordinal()] = (id + size - 1) % size;
+        if(chance(id, JOIN_EAST) < joined) {
+            target[Direction.NORTH.ordinal()] = (id + 2) % size;
+        }
+        int before = (id + size - 2) % size;
+        if(chance(before, JOIN_EAST) < joined) {
+            target[Direction.SOUTH.ordinal()] = before;
+        }
+    }
+
+    /**
+     * @return The kind of item a room starts with, or null. Traps start
+     * empty.
+     */
+    private ItemType itemType(int id)
+    {
+        if(id >= size) {
+            return null;
+        }
+        double item = chance(id, ITEM);
+        if(item >= itemDensity) {
+            return null;
+        }
+        return item < itemDensity / 2 ? APPLE : PEBBLE;
+    }
+
+    /**
+     * @return A random number from 0 up to 1 for one question about a
+     * room, the same every time it is asked.
+     */
+    private double chance(int id, int question)
+    {
+        long z = seed + ((long) id * QUESTIONS + question) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        z = z ^ (z >>> 31);
+        return (z >>> 11) * 0x1.0p-53;
+    }
+
+    /**
+     * @return The lines of the world file for a range of rooms.
+     */
+    private byte[] text(int from, int to)
+    {
+        StringBuilder text = new StringBuilder((to - from) * 64);
+        int[] target = new int[Direction.count()];
+        for(int id = from; id < to; id++) {
+            text.append("room ").append(id).append(' ').append(description(id)).append('\n');
+            ItemType type = itemType(id);
+            if(type != null) {
+                text.append("item ").append(id).append(' ').append(type.getWeight()).append(' ');
+                if(type.isEdible()) {
+                    text.append(type.getHealth());
+                }
+                else {
+                    text.append('-');
+                }
+                text.append(' ').append(type.getDescription()).append('\n');
+            }
+            exits(id, target);
+            for(int d = 0; d < target.length; d++) {
+                if(target[d] >= 0) {
+                    text.append("exit ").append(id).append(' ').append(Direction.fromOrdinal(d))
+                        .append(' ').append(target[d]).append('\n');
+                }
+            }
+            if(id >= size) {
+                text.append("noescape ").append(id).append('\n');
+            }
+        }
+        return text.toString().getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Counts or fills in the exits of a range of rooms, split in halves
+     * until small. Counting leaves the number of exits of room "id" in
+     * first[id + 1]; filling needs the finished first array.
+     */
+    private class Fill extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+        private final int[] first;
+        private final byte[] direction;
+        private final int[] target;
+
+        Fill(int from, int to, int[] first, byte[] direction, int[] target)
+        {
+            this.from = from;
+            this.to = to;
+            this.first = first;
+            this.direction = direction;
+            this.target = target;
+        }
+
+        protected void compute()
+        {
+            if(to - from > LEAF) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new Fill(from, middle, first, direction, target),
+                          new Fill(middle, to, first, direction, target));
+                return;
+            }
+            int[] exit = new int[Direction.count()];
+            for(int id = from; id < to; id++) {
+                int count = exits(id, exit);
+                if(direction == null) {
+                    first[id + 1] = count;
+                    continue;
+                }
+                int i = first[id];
+                for(int d = 0; d < exit.length; d++) {
+                    if(exit[d] >= 0) {
+                        direction[i] = (byte) d;
+                        target[i++] = exit[d];
+                    }
+                }
+            }
+        }
+    }
+}
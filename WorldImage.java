@@ -0,0 +1,413 @@
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * This class is part of the "World of Zuul" application.
+ * "World of Zuul" is a very simple, text based adventure game.
+ *
+ * A WorldImage is a world compiled into a binary file that can be opened
+ * without parsing it. The file holds a header followed by these
+ * sections, all in big-endian byte order:
+ *
+ *     room table     per room: description offset and length in the
+ *                    string pool, index of its first item, item count
+ *     exit offsets   int per room, plus one: where each room's exits start
+ *     exit directions  byte per exit (padded to a multiple of four)
+ *     exit targets   int per exit: the id of the room the exit leads to
+ *     item table     per item: description offset and length, weight,
+ *                    and the health eating it gives or -1 if it cannot
+ *                    be eaten
+ *     noescape rooms int per room that cannot be left
+ *     string pool    UTF-8 text of all descriptions, each stored once
+ *
+ * The header starts with a magic number and a format version and ends
+ * with a CRC32C checksum of everything after the header.
+ *
+ * Opening an image maps the file into memory with FileChannel.map and
+ * only checks the header, so it takes the same short time for any size
+ * of world. Exits are read from the mapped file, and each Room object is
+ * made from its entry in the room table the first time it is needed.
+ * The checksum can be verified on open or later with verify().
+ * Images are limited to 2 GB, the largest region one map can hold.
+ *
+ * @author  Ryan Rutishauser
+ * @version 2026.10.18
+ */
+
+public class WorldImage implements RoomGraph.RoomFactory
+{
+    // "ZUUL" in ASCII.
+    public static final int MAGIC = 0x5A55554C;
+    // Changed whenever the layout of the file changes.
+    public static final int VERSION = 2;
+
+    private static final int HEADER_SIZE = 128;
+    private static final int CHECKSUM_POSITION = 104;
+    private static final int ROOM_ENTRY = 16;
+    private static final int ITEM_ENTRY = 16;
+
+    private MappedByteBuffer image;
+    private int roomCount;
+    private int exitCount;
+    private int itemCount;
+    private int startRoom;
+    private int noEscapeCount;
+    private long roomTable;
+    private long exitFirst;
+    private long exitDirection;
+    private long exitTarget;
+    private long itemTable;
+    private long noEscapeTable;
+    private long stringPool;
+    private long stringPoolLength;
+    private long fileLength;
+    private long checksum;
+    // Item types last read, by string offset and weight.
+    private ConcurrentHashMap<Long, ItemType> itemTypes = new ConcurrentHashMap<>();
+
+    /**
+     * Main method so that world files can be compiled outside of Bluej.
+     * With a world file and an image file, the world is compiled into
+     * the image; with "verify" and an image file, the image is checked.
+     * @param args Either a world file and an image file to write, or
+     *             "verify" and an image file.
+     */
+    public static void main(String[] args) throws IOException
+    {
+        if(args[0].equals("verify")) {
+            long start = System.nanoTime();
+            WorldImage image = WorldImage.open(Paths.get(args[1]), true);
+            System.out.printf("%s is valid: %d rooms, %d exits, %d items (%.3f s)%n",
+                              args[1], image.roomCount, image.exitCount, image.itemCount,
+                              (System.nanoTime() - start) / 1e9);
+            return;
+        }
+        WorldLoader loader = new WorldLoader();
+        World world = loader.load(Paths.get(args[0]));
+        System.out.println(loader.getReport(world));
+        long start = System.nanoTime();
+        compile(world, Paths.get(args[1]));
+        System.out.printf("Wrote %s in %.3f s%n", args[1], (System.nanoTime() - start) / 1e9);
+    }
+
+    /**
+     * Write a world as a binary image.
+     * @param world The world to compile.
+     * @param file The image file to write.
+     */
+    public static void compile(World world, Path file) throws IOException
+    {
+        RoomGraph graph = world.getGraph();
+        List<Room> rooms = world.getRooms();
+        int roomCount = rooms.size();
+
+        // Put every description in the string pool once.
+        ByteArrayOutputStream pool = new ByteArrayOutputStream();
+        HashMap<String, Integer> pooled = new HashMap<>();
+        int[] roomText = new int[roomCount * 2];
+        int exitCount = 0;
+        int itemCount = 0;
+        int noEscapeCount = 0;
+        for(int id = 0; id < roomCount; id++) {
+            Room room = rooms.get(id);
+            addString(pool, pooled, room.getShortDescription(), roomText, id * 2);
+            exitCount += graph.exitCount(id);
+            itemCount += room.getItems().size();
+            if(world.isNoEscape(room)) {
+                noEscapeCount++;
+            }
+        }
+        int[] itemText = new int[itemCount * 2];
+        int item = 0;
+        for(Room room : rooms) {
+            for(Item i : room.getItems()) {
+                addString(pool, pooled, i.getDescription(), itemText, item * 2);
+                item++;
+            }
+        }
+
+        // Work out where each section starts.
+        long roomTable = HEADER_SIZE;
+        long exitFirst = roomTable + (long) roomCount * ROOM_ENTRY;
+        long exitDirection = exitFirst + (roomCount + 1L) * 4;
+        long exitTarget = exitDirection + ((exitCount + 3L) & ~3L);
+        long itemTable = exitTarget + exitCount * 4L;
+        long noEscapeTable = itemTable + (long) itemCount * ITEM_ENTRY;
+        long stringPool = noEscapeTable + noEscapeCount * 4L;
+        long fileLength = stringPool + pool.size();
+        if(fileLength > Integer.MAX_VALUE) {
+            throw new IOException("World is too large for one image");
+        }
+
+        try(FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putInt(VERSION).putInt(roomCount).putInt(exitCount)
+                  .putInt(itemCount).putInt(world.getStartRoom().getId())
+                  .putInt(noEscapeCount).putInt(0)
+                  .putLong(roomTable).putLong(exitFirst).putLong(exitDirection)
+                  .putLong(exitTarget).putLong(itemTable).putLong(noEscapeTable)
+                  .putLong(stringPool).putLong(pool.size()).putLong(fileLength);
+            header.clear();
+            channel.write(header);
+
+            CRC32C crc = new CRC32C();
+            OutputStream body = new CheckedOutputStream(new BufferedOutputStream(
+                Channels.newOutputStream(channel), 64 * 1024), crc);
+            DataOutputStream out = new DataOutputStream(body);
+
+            int firstItem = 0;
+            for(int id = 0; id < roomCount; id++) {
+                int items = rooms.get(id).getItems().size();
+                out.writeInt(roomText[id * 2]);
+                out.writeInt(roomText[id * 2 + 1]);
+                out.writeInt(firstItem);
+                out.writeInt(items);
+                firstItem += items;
+            }
+            int first = 0;
+            for(int id = 0; id < roomCount; id++) {
+                out.writeInt(first);
+                first += graph.exitCount(id);
+            }
+            out.writeInt(first);
+            for(int id = 0; id < roomCount; id++) {
+                for(int n = 0; n < graph.exitCount(id); n++) {
+                    out.writeByte(graph.exitDirection(id, n).ordinal());
+                }
+            }
+            for(int pad = exitCount; (pad & 3) != 0; pad++) {
+                out.writeByte(0);
+            }
+            for(int id = 0; id < roomCount; id++) {
+                for(int n = 0; n < graph.exitCount(id); n++) {
+                    out.writeInt(graph.exitTarget(id, n));
+                }
+            }
+            item = 0;
+            for(Room room : rooms) {
+                for(Item i : room.getItems()) {
+                    out.writeInt(itemText[item * 2]);
+                    out.writeInt(itemText[item * 2 + 1]);
+                    out.writeInt(i.getWeight());
+                    out.writeInt(i.isEdible() ? i.getType().getHealth() : -1);
+                    item++;
+                }
+            }
+            for(Room room : rooms) {
+                if(world.isNoEscape(room)) {
+                    out.writeInt(room.getId());
+                }
+            }
+            pool.writeTo(out);
+            out.flush();
+
+            ByteBuffer sum = ByteBuffer.allocate(8).putLong(crc.getValue());
+            sum.flip();
+            channel.write(sum, CHECKSUM_POSITION);
+        }
+    }
+
+    /**
+     * Open a world image by mapping it into memory.
+     * @param file The image file.
+     * @param verifyChecksum true to check the whole file against its
+     *        checksum before using it. This reads every byte of the file.
+     * @return The opened image.
+     * @throws IOException If the file cannot be read or is not a valid
+     *         image of this version.
+     */
+    public static WorldImage open(Path file, boolean verifyChecksum) throws IOException
+    {
+        WorldImage image = new WorldImage();
+        try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if(channel.size() < HEADER_SIZE || channel.size() > Integer.MAX_VALUE) {
+                throw new IOException(file + " is not a world image");
+            }
+            image.image = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        image.readHeader(file);
+        if(verifyChecksum) {
+            image.verify();
+        }
+        return image;
+    }
+
+    /**
+     * Open a world image without verifying its checksum, and make a
+     * world that reads from it.
+     * @param file The image file.
+     * @return The world.
+     */
+    public static World openWorld(Path file) throws IOException
+    {
+        return open(file, false).toWorld();
+    }
+
+    /**
+     * Create a world whose exits are read from this image and whose
+     * rooms are made from it when they are first needed.
+     * @return The world.
+     */
+    public World toWorld()
+    {
+        RoomGraph graph = new RoomGraph(roomCount, intSection(exitFirst, roomCount + 1),
+                                        byteSection(exitDirection, exitCount),
+                                        intSection(exitTarget, exitCount), this);
+        BitSet noEscape = new BitSet();
+        for(int i = 0; i < noEscapeCount; i++) {
+            noEscape.set(image.getInt((int) noEscapeTable + i * 4));
+        }
+        return new World(graph, graph.getRoom(startRoom), noEscape);
+    }
+
+    /**
+     * Check the whole image against the checksum in its header.
+     * @throws IOException If the image has been changed or damaged.
+     */
+    public void verify() throws IOException
+    {
+        CRC32C crc = new CRC32C();
+        crc.update(image.slice(HEADER_SIZE, (int) (fileLength - HEADER_SIZE)));
+        if(crc.getValue() != checksum) {
+            throw new IOException("World image checksum does not match");
+        }
+    }
+
+    /**
+     * Make the room with the given id from its entry in the room table.
+     * @param graph The graph the room belongs to.
+     * @param id The id of the room.
+     * @return The new room.
+     */
+    public Room createRoom(RoomGraph graph, int id)
+    {
+        int entry = (int) roomTable + id * ROOM_ENTRY;
+        Room room = new Room(readString(image.getInt(entry), image.getInt(entry + 4)),
+                             graph, id);
+        int firstItem = image.getInt(entry + 8);
+        int items = image.getInt(entry + 12);
+        for(int i = firstItem; i < firstItem + items; i++) {
+            int item = (int) itemTable + i * ITEM_ENTRY;
+            room.setItem(new Item(itemType(item)));
+        }
+        return room;
+    }
+
+    /**
+     * Read the header and check that it describes a file of this size.
+     * @param file The file, for error messages.
+     */
+    private void readHeader(Path file) throws IOException
+    {
+        if(image.getInt(0) != MAGIC) {
+            throw new IOException(file + " is not a world image");
+        }
+        if(image.getInt(4) != VERSION) {
+            throw new IOException(file + " has image version " + image.getInt(4)
+                                  + ", expected " + VERSION);
+        }
+        roomCount = image.getInt(8);
+        exitCount = image.getInt(12);
+        itemCount = image.getInt(16);
+        startRoom = image.getInt(20);
+        noEscapeCount = image.getInt(24);
+        roomTable = image.getLong(32);
+        exitFirst = image.getLong(40);
+        exitDirection = image.getLong(48);
+        exitTarget = image.getLong(56);
+        itemTable = image.getLong(64);
+        noEscapeTable = image.getLong(72);
+        stringPool = image.getLong(80);
+        stringPoolLength = image.getLong(88);
+        fileLength = image.getLong(96);
+        checksum = image.getLong(CHECKSUM_POSITION);
+        if(fileLength != image.capacity() || stringPool + stringPoolLength != fileLength
+           || startRoom < 0 || startRoom >= roomCount) {
+            throw new IOException(file + " is truncated or damaged");
+        }
+    }
+
+    /**
+     * @return A view of part of the image as ints.
+     */
+    private IntBuffer intSection(long offset, int count)
+    {
+        return image.slice((int) offset, count * 4).order(ByteOrder.BIG_ENDIAN).asIntBuffer();
+    }
+
+    /**
+     * @return A view of part of the image as bytes.
+     */
+    private ByteBuffer byteSection(long offset, int count)
+    {
+        return image.slice((int) offset, count);
+    }
+
+    /**
+     * @return The type of the item whose entry starts at "item". Each
+     * description is only read from the string pool once for a weight,
+     * unless items of that description and weight differ as food.
+     */
+    private ItemType itemType(int item)
+    {
+        int offset = image.getInt(item);
+        int weight = image.getInt(item + 8);
+        int food = image.getInt(item + 12);
+        Long key = ((long) offset << 32) | (weight & 0xFFFFFFFFL);
+        ItemType type = itemTypes.get(key);
+        if(type == null || type.isEdible() != food >= 0 || (food >= 0 && type.getHealth() != food)) {
+            type = ItemType.of(readString(offset, image.getInt(item + 4)), weight,
+                               food >= 0, Math.max(food, 0));
+            itemTypes.put(key, type);
+        }
+        return type;
+    }
+
+    /**
+     * @return A string read from the string pool.
+     */
+    private String readString(int offset, int length)
+    {
+        byte[] bytes = new byte[length];
+        image.get((int) stringPool + offset, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Add a string to the pool unless it is already there, and record
+     * its offset and length.
+     */
+    private static void addString(ByteArrayOutputStream pool, HashMap<String, Integer> pooled,
+                                  String text, int[] where, int index)
+    {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        Integer offset = pooled.get(text);
+        if(offset == null) {
+            offset = pool.size();
+            pooled.put(text, offset);
+            pool.write(bytes, 0, bytes.length);
+        }
+        where[index] = offset;
+        where[index + 1] = bytes.length;
+    }
+}
@@ -0,0 +1,427 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * This class is part of the "World of Zuul" application.
+ * "World of Zuul" is a very simple, text based adventure game.
+ *
+ * A WorldLoader reads a world from a text world file. The file is read
+ * once, line by line, and never held in memory as a whole. Each line is
+ * one of:
+ *
+ *     room &lt;name&gt; &lt;description&gt;
+ *     exit &lt;room&gt; &lt;direction&gt; &lt;room&gt;
+ *     item &lt;room&gt; &lt;weight&gt; &lt;food&gt; &lt;description&gt;
+ *     start &lt;room&gt;
+ *     noescape &lt;room&gt;
+ *     respawn &lt;room&gt;
+ *
+ * Blank lines and lines starting with # are ignored. Every room name
+ * gets an id the first time it is seen, so an exit may lead to a room
+ * that is only defined further down; exits are collected as plain int
+ * arrays and turned into the world's RoomGraph at the end. Items must
+ * follow the room they are in. The food of an item is the health eating
+ * it gives, or "-" if it cannot be eaten.
+ *
+ * After loading, the loader can report how long the load took, and
+ * warns about rooms that cannot be reached from the start room and
+ * about traps, groups of rooms with no way out, that are not marked
+ * "noescape". The world's GraphAnalysis finds them.
+ *
+ * @author  Ryan Rutishauser
+ * @version 2026.10.18
+ */
+
+public class WorldLoader
+{
+    // The world shipped with the game, found next to the classes.
+    public static final String CAMPUS_RESOURCE = "campus.world";
+    // Rooms listed by name in each kind of warning.
+    private static final int MAX_WARNINGS = 20;
+
+    private HashMap<String, Integer> ids;
+    private ArrayList<String> names;
+    private ArrayList<Room> rooms;
+    private int[] exitFrom;
+    private byte[] exitDirection;
+    private int[] exitTo;
+    private int exitCount;
+    private String startName;
+    private BitSet noEscape;
+    private BitSet respawn;
+    private int lineNumber;
+    private long loadTime;
+    private List<String> warnings;
+
+    /**
+     * Main method so that a world file can be checked outside of Bluej.
+     * It loads the file and reports its size and how fast it loaded.
+     * @param args The world file to load.
+     */
+    public static void main(String[] args) throws IOException
+    {
+        WorldLoader loader = new WorldLoader();
+        World world = loader.load(Paths.get(args[0]));
+        System.out.println(loader.getReport(world));
+        for(String warning : loader.getWarnings()) {
+            System.out.println("Warning: " + warning);
+        }
+    }
+
+    /**
+     * Create a loader.
+     */
+    public WorldLoader()
+    {
+    }
+
+    /**
+     * Load the campus world that is shipped with the game.
+     * @return The campus world.
+     */
+    public static World loadCampus()
+    {
+        try(InputStream in = WorldLoader.class.getResourceAsStream(CAMPUS_RESOURCE)) {
+            if(in == null) {
+                throw new IllegalStateException(CAMPUS_RESOURCE + " is missing");
+            }
+            return new WorldLoader().load(new InputStreamReader(in, StandardCharsets.UTF_8));
+        }
+        catch(IOException e) {
+            throw new IllegalStateException("Cannot load " + CAMPUS_RESOURCE, e);
+        }
+    }
+
+    /**
+     * Load a world from a file.
+     * @param file The world file.
+     * @return The world.
+     * @throws IOException If the file cannot be read or is not a valid
+     *         world file.
+     */
+    public World load(Path file) throws IOException
+    {
+        try(Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            return load(reader);
+        }
+    }
+
+    /**
+     * Load a world from a reader.
+     * @param source Where the world definition is read from.
+     * @return The world.
+     * @throws IOException If the input cannot be read or is not a valid
+     *         world definition.
+     */
+    public World load(Reader source) throws IOException
+    {
+        long start = System.nanoTime();
+        ids = new HashMap<>();
+        names = new ArrayList<>();
+        rooms = new ArrayList<>();
+        exitFrom = new int[1024];
+        exitDirection = new byte[1024];
+        exitTo = new int[1024];
+        exitCount = 0;
+        startName = null;
+        noEscape = new BitSet();
+        respawn = new BitSet();
+        lineNumber = 0;
+
+        BufferedReader reader = new BufferedReader(source, 64 * 1024);
+        String line;
+        while((line = reader.readLine()) != null) {
+            lineNumber++;
+            readLine(line.trim());
+        }
+
+        World world = finish();
+        warnings = check(world);
+        loadTime = System.nanoTime() - start;
+        ids = null;
+        names = null;
+        rooms = null;
+        exitFrom = null;
+        exitDirection = null;
+        exitTo = null;
+        return world;
+    }
+
+    /**
+     * @return How long the last load took, in nanoseconds.
+     */
+    public long getLoadTime()
+    {
+        return loadTime;
+    }
+
+    /**
+     * @return The warnings about the world that was loaded last.
+     */
+    public List<String> getWarnings()
+    {
+        return warnings;
+    }
+
+    /**
+     * @param world The world that was loaded last.
+     * @return A line reporting the world's size and the load speed.
+     */
+    public String getReport(World world)
+    {
+        int count = world.getRooms().size();
+        double seconds = loadTime / 1e9;
+        return String.format("Loaded %d rooms in %.3f s (%.0f rooms/s)",
+                             count, seconds, count / seconds);
+    }
+
+    /**
+     * Read one line of the world definition.
+     * @param line The line, without surrounding white space.
+     */
+    private void readLine(String line) throws IOException
+    {
+        if(line.isEmpty() || line.charAt(0) == '#') {
+            return;
+        }
+        String type = firstWord(line);
+        switch(type) {
+            case "room":
+                String[] room = split(line, 3);
+                defineRoom(room[1], room[2]);
+                break;
+
+            case "exit":
+                String[] exit = split(line, 4);
+                addExit(exit[1], exit[2], exit[3]);
+                break;
+
+            case "item":
+                String[] item = split(line, 5);
+                addItem(item[1], item[2], item[3], item[4]);
+                break;
+
+            case "start":
+                startName = split(line, 2)[1];
+                break;
+
+            case "noescape":
+                noEscape.set(idOf(split(line, 2)[1]));
+                break;
+
+            case "respawn":
+                respawn.set(idOf(split(line, 2)[1]));
+                break;
+
+            default:
+                throw error("unknown line type '" + type + "'");
+        }
+    }
+
+    /**
+     * Create a room. Its id may already have been given out by an exit
+     * that leads to it.
+     */
+    private void defineRoom(String name, String description) throws IOException
+    {
+        int id = idOf(name);
+        if(rooms.get(id) != null) {
+            throw error("room '" + name + "' is defined twice");
+        }
+        rooms.set(id, new Room(description));
+    }
+
+    /**
+     * Record an exit between two rooms, either of which may not be
+     * defined yet.
+     */
+    private void addExit(String fromName, String directionName, String toName)
+        throws IOException
+    {
+        Direction direction = Direction.fromString(directionName);
+        if(direction == null) {
+            throw error("unknown direction '" + directionName + "'");
+        }
+        if(exitCount == exitFrom.length) {
+            int size = exitFrom.length * 2;
+            exitFrom = Arrays.copyOf(exitFrom, size);
+            exitDirection = Arrays.copyOf(exitDirection, size);
+            exitTo = Arrays.copyOf(exitTo, size);
+        }
+        exitFrom[exitCount] = idOf(fromName);
+        exitDirection[exitCount] = (byte) direction.ordinal();
+        exitTo[exitCount] = idOf(toName);
+        exitCount++;
+    }
+
+    /**
+     * Place an item in a room that has already been defined.
+     */
+    private void addItem(String roomName, String weight, String food, String description)
+        throws IOException
+    {
+        Integer id = ids.get(roomName);
+        if(id == null || rooms.get(id) == null) {
+            throw error("item placed in room '" + roomName + "' before it is defined");
+        }
+        int itemWeight;
+        try {
+            itemWeight = Integer.parseInt(weight);
+        }
+        catch(NumberFormatException e) {
+            throw error("weight '" + weight + "' is not a number");
+        }
+        boolean edible = !food.equals("-");
+        int health = 0;
+        if(edible) {
+            try {
+                health = Integer.parseInt(food);
+            }
+            catch(NumberFormatException e) {
+                throw error("food '" + food + "' is neither a number nor '-'");
+            }
+        }
+        rooms.get(id).setItem(new Item(ItemType.of(description, itemWeight, edible, health)));
+    }
+
+    /**
+     * Return the id of a room name, giving it the next free id if the
+     * name has not been seen before.
+     */
+    private int idOf(String name)
+    {
+        Integer id = ids.get(name);
+        if(id == null) {
+            id = names.size();
+            ids.put(name, id);
+            names.add(name);
+            rooms.add(null);
+        }
+        return id;
+    }
+
+    /**
+     * Find the rooms a builder probably did not mean to make: rooms no
+     * player can get to, and traps none of whose rooms is marked
+     * "noescape". At most MAX_WARNINGS of each are listed.
+     * @return The warnings.
+     */
+    private List<String> check(World world)
+    {
+        GraphAnalysis analysis = world.getAnalysis();
+        List<String> found = new ArrayList<>();
+        int[] unreachable = analysis.getUnreachableRooms();
+        for(int i = 0; i < unreachable.length && i < MAX_WARNINGS; i++) {
+            found.add("room '" + names.get(unreachable[i])
+                      + "' cannot be reached from the start room");
+        }
+        if(unreachable.length > MAX_WARNINGS) {
+            found.add((unreachable.length - MAX_WARNINGS)
+                      + " more rooms cannot be reached from the start room");
+        }
+        int unmarked = 0;
+        for(int[] trap : analysis.getTraps()) {
+            boolean marked = false;
+            for(int id : trap) {
+                marked |= noEscape.get(id);
+            }
+            if(marked) {
+                continue;
+            }
+            if(++unmarked <= MAX_WARNINGS) {
+                found.add(trap.length == 1
+                          ? "room '" + names.get(trap[0]) + "' has no way out"
+                            + " and is not marked noescape"
+                          : "the " + trap.length + " rooms around '" + names.get(trap[0])
+                            + "' have no way out and none is marked noescape");
+            }
+        }
+        if(unmarked > MAX_WARNINGS) {
+            found.add((unmarked - MAX_WARNINGS) + " more traps are not marked noescape");
+        }
+        return found;
+    }
+
+    /**
+     * Check that all rooms used were defined and build the world.
+     */
+    private World finish() throws IOException
+    {
+        for(int id = 0; id < rooms.size(); id++) {
+            if(rooms.get(id) == null) {
+                throw new IOException("Room '" + names.get(id)
+                                      + "' is used but never defined");
+            }
+        }
+        if(startName == null || !ids.containsKey(startName)) {
+            throw new IOException("No start room is given");
+        }
+        RoomGraph graph = RoomGraph.of(rooms, exitFrom, exitDirection, exitTo, exitCount);
+        return new World(graph, rooms.get(ids.get(startName)), noEscape, respawn, names);
+    }
+
+    /**
+     * @return The first word of a line.
+     */
+    private static String firstWord(String line)
+    {
+        int end = 0;
+        while(end < line.length() && !Character.isWhitespace(line.charAt(end))) {
+            end++;
+        }
+        return line.substring(0, end);
+    }
+
+    /**
+     * Split a line into the given number of words. The last word is the
+     * rest of the line, so it may hold spaces.
+     * @param line The line, without surrounding white space.
+     * @param count The number of words the line must have.
+     * @return The words.
+     */
+    private String[] split(String line, int count) throws IOException
+    {
+        String[] words = new String[count];
+        int position = 0;
+        for(int i = 0; i < count; i++) {
+            while(position < line.length() && Character.isWhitespace(line.charAt(position))) {
+                position++;
+            }
+            if(position == line.length()) {
+                throw error("'" + words[0] + "' needs " + (count - 1) + " values");
+            }
+            int end = position;
+            if(i == count - 1) {
+                end = line.length();
+            }
+            else {
+                while(end < line.length() && !Character.isWhitespace(line.charAt(end))) {
+                    end++;
+                }
+            }
+            words[i] = line.substring(position, end);
+            position = end;
+        }
+        return words;
+    }
+
+    /**
+     * @return An exception reporting a problem on the current line.
+     */
+    private IOException error(String message)
+    {
+        return new IOException("Line " + lineNumber + ": " + message);
+    }
+}